@@ -0,0 +1,84 @@
+package com.example.bookmanage;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * ベンチマークで使用する書籍管理システムのアプリケーションコンテキスト<br />
+ * 
+ * 組み込みサーバは起動せず(server.port=-1)、WebApplicationContextとH2のインメモリDBのみを起動する。
+ * ベンチマーク中のログ出力を抑止するため、ログレベルはWARNにする。
+ */
+@State(Scope.Benchmark)
+public class BookManageBenchmarkContext {
+
+    /**
+     * ベンチマークで使用するユーザ
+     */
+    public static final String USER = "benchmark";
+
+    /**
+     * アプリケーションコンテキスト
+     */
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        // application.propertiesより優先するため、コマンドライン引数として指定する
+        context = new SpringApplicationBuilder(BookmanageApplication.class)
+                .run(
+                        "--server.port=-1",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.bookmanage.web=WARN",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * 指定した型のBeanを返却する。
+     * 
+     * @param <T> Beanの型
+     * @param type Beanの型
+     * @return Bean
+     */
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * アプリケーションコンテキストを返却する。
+     * 
+     * @return アプリケーションコンテキスト
+     */
+    public ConfigurableApplicationContext getContext() {
+        return context;
+    }
+
+    /**
+     * 呼び出したスレッドにベンチマーク用のユーザ(管理者)を認証済みとして設定する。<br />
+     * 作成ユーザ・更新ユーザの設定や画面のsec:authenticationで参照される。
+     */
+    public static void authenticate() {
+        List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new User(USER, "N/A", authorities), "N/A", authorities));
+    }
+
+}
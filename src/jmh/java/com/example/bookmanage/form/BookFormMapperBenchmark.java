@@ -0,0 +1,95 @@
+package com.example.bookmanage.form;
+
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.bookmanage.domain.Book;
+
+/**
+ * フォーム情報と書籍の変換のベンチマーク<br />
+ * 
+ * 変更前の実装(呼び出しごとにModelMapperを生成)、ModelMapperを共有した場合、BookFormMapperを比較する。
+ * 1回あたりの割り当て量は、gcプロファイラのgc.alloc.rate.normで確認する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookFormMapperBenchmark {
+
+    /**
+     * 変換元の書籍
+     */
+    private Book book;
+
+    /**
+     * 変換元のフォーム情報
+     */
+    private BookManageForm form;
+
+    /**
+     * 共有するModelMapper(型の対応は初回の変換で解析済み)
+     */
+    private ModelMapper sharedModelMapper;
+
+    @Setup
+    public void setup() {
+        book = Book.builder().id(1L).title("ベンチマークのタイトル").author("ベンチマークの著者").build();
+        book.setVersion(3);
+        form = BookManageForm.builder().title("ベンチマークのタイトル").author("ベンチマークの著者").newBook(true).build();
+
+        sharedModelMapper = new ModelMapper();
+        sharedModelMapper.map(book, new BookManageForm());
+        sharedModelMapper.map(form, Book.class);
+    }
+
+    @Benchmark
+    public BookManageForm toForm_newModelMapper() {
+        BookManageForm result = new BookManageForm();
+        new ModelMapper().map(book, result);
+        return result;
+    }
+
+    @Benchmark
+    public BookManageForm toForm_sharedModelMapper() {
+        BookManageForm result = new BookManageForm();
+        sharedModelMapper.map(book, result);
+        return result;
+    }
+
+    @Benchmark
+    public BookManageForm toForm_bookFormMapper() {
+        BookManageForm result = new BookManageForm();
+        BookFormMapper.copyToForm(book, result);
+        return result;
+    }
+
+    @Benchmark
+    public Book toBook_newModelMapper() {
+        return new ModelMapper().map(form, Book.class);
+    }
+
+    @Benchmark
+    public Book toBook_sharedModelMapper() {
+        return sharedModelMapper.map(form, Book.class);
+    }
+
+    @Benchmark
+    public Book toBook_bookFormMapper() {
+        return BookFormMapper.toBook(form);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.example.bookmanage.form;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import com.example.bookmanage.WebMvcConfig;
+
+/**
+ * フォーム情報の入力チェック(Bean Validation)のベンチマーク<br />
+ * 
+ * WebMvcConfigと同じValidatorを使い、MVCと同様にBindingResultへ検証結果を設定する。
+ * エラーがない場合と、全項目がエラー(メッセージの解決を含む)の場合を比較する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookManageFormValidationBenchmark {
+
+    /**
+     * Validator
+     */
+    private LocalValidatorFactoryBean validator;
+
+    /**
+     * 入力内容に不備がないフォーム情報
+     */
+    private BookManageForm validForm;
+
+    /**
+     * 全項目の入力内容に不備があるフォーム情報
+     */
+    private BookManageForm invalidForm;
+
+    @Setup
+    public void setup() {
+        validator = new WebMvcConfig().validator();
+        validator.afterPropertiesSet();
+
+        validForm = BookManageForm.builder().title("ベンチマークのタイトル").author("ベンチマークの著者").newBook(true).build();
+        invalidForm = BookManageForm.builder().title("").author(repeat('著', 21)).newBook(true).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validator.close();
+    }
+
+    @Benchmark
+    public BindingResult validate_valid() {
+        return validate(validForm);
+    }
+
+    @Benchmark
+    public BindingResult validate_invalid() {
+        return validate(invalidForm);
+    }
+
+    /**
+     * フォーム情報を検証する。
+     * 
+     * @param form フォーム情報
+     * @return 検証結果
+     */
+    private BindingResult validate(BookManageForm form) {
+        BindingResult result = new BeanPropertyBindingResult(form, "bookManageForm");
+        validator.validate(form, result);
+        return result;
+    }
+
+    /**
+     * 指定した文字を繰り返した文字列を返却する。
+     * 
+     * @param c 文字
+     * @param count 繰り返す回数
+     * @return 文字列
+     */
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+}
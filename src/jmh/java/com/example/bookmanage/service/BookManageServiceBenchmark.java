@@ -0,0 +1,128 @@
+package com.example.bookmanage.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.bookmanage.BookManageBenchmarkContext;
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.exception.BookNotFoundException;
+import com.example.bookmanage.form.BookListCondition;
+import com.example.bookmanage.form.BookManageForm;
+
+/**
+ * 書籍管理サービスのCRUDのベンチマーク(H2のインメモリDB)<br />
+ * 
+ * 事前に{@value #PRELOADED}件の書籍を登録し、トランザクション・2次キャッシュ・変更通知を含めた1回の呼び出しを計測する。
+ * 一覧(initForm)は書籍の変更がないため、一覧のキャッシュにヒットした状態を計測する。
+ * 認証情報はスレッドに設定するため、スレッド単位の状態とする。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookManageServiceBenchmark {
+
+    /**
+     * 事前に登録する書籍の件数
+     */
+    static final int PRELOADED = 1000;
+
+    /**
+     * 書籍管理サービス
+     */
+    private BookManageService service;
+
+    /**
+     * 事前に登録した書籍のID
+     */
+    private long[] ids;
+
+    /**
+     * 次に読み込む書籍の位置
+     */
+    private int cursor;
+
+    /**
+     * 更新する書籍
+     */
+    private Book updating;
+
+    /**
+     * 検索語を指定した一覧の表示条件
+     */
+    private BookListCondition searchCondition;
+
+    @Setup(Level.Trial)
+    public void setup(BookManageBenchmarkContext context) {
+        BookManageBenchmarkContext.authenticate();
+        service = context.getBean(BookManageService.class);
+
+        ids = new long[PRELOADED];
+        for (int i = 0; i < PRELOADED; i++) {
+            ids[i] = service.createBook(form("ベンチマークのタイトル" + i, "ベンチマークの著者" + (i % 50))).getId();
+        }
+        updating = service.createBook(form("更新するタイトル", "更新する著者"));
+        searchCondition = BookListCondition.builder().q("タイトル12").build();
+    }
+
+    @Benchmark
+    public BookManageForm initForm() {
+        return service.initForm();
+    }
+
+    @Benchmark
+    public BookManageForm initForm_search() {
+        return service.initForm(searchCondition);
+    }
+
+    @Benchmark
+    public BookManageForm readOneBook() throws BookNotFoundException {
+        long id = ids[cursor];
+        cursor = (cursor + 1) % ids.length;
+        return service.readOneBook(id);
+    }
+
+    @Benchmark
+    public Book createBook() {
+        return service.createBook(form("登録するタイトル", "登録する著者"));
+    }
+
+    @Benchmark
+    public Book updateBook() throws BookNotFoundException {
+        BookManageForm form = form("更新後のタイトル" + (updating.getVersion() % 2), "更新後の著者");
+        form.setVersion(updating.getVersion());
+        updating = service.updateBook(updating.getId(), form);
+        return updating;
+    }
+
+    @Benchmark
+    public void createAndDeleteBook() throws BookNotFoundException {
+        Book created = service.createBook(form("削除するタイトル", "削除する著者"));
+        service.deleteBook(created.getId(), created.getVersion());
+    }
+
+    /**
+     * 新規登録のフォーム情報を作成する。
+     * 
+     * @param title タイトル
+     * @param author 著者
+     * @return フォーム情報
+     */
+    private static BookManageForm form(String title, String author) {
+        return BookManageForm.builder().title(title).author(author).newBook(true).build();
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.example.bookmanage.web;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.util.StopWatch;
+
+import com.example.bookmanage.metrics.MethodTimers;
+import com.example.bookmanage.service.BookCatalogVersion;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BookManageAspectの1回あたりのオーバーヘッドのベンチマーク<br />
+ * 
+ * 処理時間がほぼ0のBookCatalogVersion.current()を対象に、以下を比較する。
+ * Aspectなしの直接呼び出し、プロキシのみ、何もしないAspect、変更前の実装(StopWatchとlog.trace、TRACEは無効)、
+ * タイマーへの記録(BookManageAspect)。タイマーは複数スレッドからの同時記録も計測する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookManageAspectBenchmark {
+
+    /**
+     * Aspectを適用しない対象
+     */
+    private BookCatalogVersion target;
+
+    /**
+     * Aspectを適用しないプロキシ
+     */
+    private BookCatalogVersion plainProxy;
+
+    /**
+     * 何もしないAspectを適用したプロキシ
+     */
+    private BookCatalogVersion noopProxy;
+
+    /**
+     * 変更前の実装のAspectを適用したプロキシ
+     */
+    private BookCatalogVersion stopWatchProxy;
+
+    /**
+     * タイマーに記録するAspectを適用したプロキシ
+     */
+    private BookCatalogVersion timerProxy;
+
+    @Setup
+    public void setup() {
+        target = new BookCatalogVersion();
+        plainProxy = proxy(null);
+        stopWatchProxy = proxy(new StopWatchAspect());
+        noopProxy = proxy(new NoopAspect());
+        timerProxy = proxy(new BookManageAspect(new MethodTimers()));
+    }
+
+    /**
+     * 対象のプロキシを作成する。
+     * 
+     * @param aspect 適用するAspect(nullの場合は適用しない)
+     * @return プロキシ
+     */
+    private BookCatalogVersion proxy(Object aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        if (aspect != null) {
+            factory.addAspect(aspect);
+        }
+        return factory.getProxy();
+    }
+
+    @Benchmark
+    public long direct() {
+        return target.current();
+    }
+
+    @Benchmark
+    public long proxyOnly() {
+        return plainProxy.current();
+    }
+
+    @Benchmark
+    public long noopAspect() {
+        return noopProxy.current();
+    }
+
+    @Benchmark
+    public long stopWatchAndTraceLog() {
+        return stopWatchProxy.current();
+    }
+
+    @Benchmark
+    public long methodTimer() {
+        return timerProxy.current();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long methodTimer_4threads() {
+        return timerProxy.current();
+    }
+
+    /**
+     * 何もしないAspect(Aspectの呼び出し自体のオーバーヘッド)
+     */
+    @Aspect
+    public static class NoopAspect {
+
+        @Around("execution(* com.example.bookmanage.service.*.*(..))")
+        public Object inServiceLayer(ProceedingJoinPoint pjp) throws Throwable {
+            return pjp.proceed();
+        }
+
+    }
+
+    /**
+     * 変更前の実装のAspect(StopWatchで計測し、log.traceで出力する)
+     */
+    @Slf4j
+    @Aspect
+    public static class StopWatchAspect {
+
+        @Around("execution(* com.example.bookmanage.service.*.*(..))")
+        public Object inServiceLayer(ProceedingJoinPoint pjp) throws Throwable {
+            StopWatch stopWatch = new StopWatch();
+            stopWatch.start();
+            Object result;
+            try {
+                result = pjp.proceed();
+            } finally {
+                stopWatch.stop();
+                log.trace("{} : {} ms", pjp.getSignature(), stopWatch.getTotalTimeMillis());
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.example.bookmanage.web;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
+
+import com.example.bookmanage.BookManageBenchmarkContext;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.form.BookListCondition;
+import com.example.bookmanage.form.BookListPage;
+import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.form.BookSortKey;
+
+/**
+ * 書籍一覧画面(books.html)の描画のベンチマーク<br />
+ * 
+ * アプリケーションと同じThymeleafViewResolverでビューを解決し、一覧の件数ごとに1回の描画を計測する。
+ * 出力は破棄し、レスポンスのバッファの拡張は計測に含めない。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BooksTemplateBenchmark {
+
+    /**
+     * 一覧に表示する書籍の件数
+     */
+    @Param({ "100", "10000", "100000" })
+    private int rows;
+
+    /**
+     * 書籍一覧画面のビュー
+     */
+    private View view;
+
+    /**
+     * 描画するモデル
+     */
+    private Map<String, Object> model;
+
+    /**
+     * リクエスト
+     */
+    private MockHttpServletRequest request;
+
+    @Setup(Level.Trial)
+    public void setup(BookManageBenchmarkContext context) throws Exception {
+        BookManageBenchmarkContext.authenticate();
+        view = context.getBean(ThymeleafViewResolver.class).resolveViewName("books", Locale.JAPANESE);
+
+        List<BookSummary> books = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            books.add(new BookSummary(id, "ベンチマークのタイトル" + id, "ベンチマークの著者" + (id % 50), 0));
+        }
+        BookManageForm form = new BookManageForm();
+        form.setNewBook(true);
+        form.setBooks(books);
+        form.setPage(BookListPage.builder()
+                .sort(BookSortKey.ID)
+                .condition(new BookListCondition())
+                .nextId((long) rows)
+                .build());
+
+        model = new HashMap<>();
+        model.put("bookManageForm", form);
+        model.put("userName", BookManageBenchmarkContext.USER);
+
+        request = new MockHttpServletRequest(new MockServletContext(), "GET", "/books");
+        request.addPreferredLocale(Locale.JAPANESE);
+        request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, context.getContext());
+        request.setAttribute(CsrfToken.class.getName(),
+                new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "benchmark-csrf-token"));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse render() throws Exception {
+        MockHttpServletResponse response = new DiscardingResponse();
+        view.render(model, request, response);
+        return response;
+    }
+
+    /**
+     * 出力を破棄するレスポンス
+     */
+    private static class DiscardingResponse extends MockHttpServletResponse {
+
+        /**
+         * 出力を破棄するWriter
+         */
+        private final PrintWriter writer = new PrintWriter(new Writer() {
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                // 破棄する
+            }
+
+            @Override
+            public void flush() {
+                // 何もしない
+            }
+
+            @Override
+            public void close() {
+                // 何もしない
+            }
+
+        });
+
+        @Override
+        public PrintWriter getWriter() {
+            return writer;
+        }
+
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.example.bookmanage.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.Value;
+
+/**
+ * 負荷試験で操作する書籍のIDとバージョンを保持するプール<br />
+ * 
+ * 更新・削除中の書籍は他のリクエストで使用しない。
+ * 更新に成功した場合はバージョンを進め、削除した書籍と更新に失敗した書籍はプールから除外する。
+ */
+final class BookIdPool {
+
+    /**
+     * 更新・削除中を表すバージョン
+     */
+    private static final long BUSY = -1;
+
+    /**
+     * 除外済みを表すバージョン
+     */
+    private static final long REMOVED = -2;
+
+    /**
+     * 空きを探す回数の上限
+     */
+    private static final int MAX_ATTEMPTS = 16;
+
+    /**
+     * 書籍のID
+     */
+    private final long[] ids;
+
+    /**
+     * 書籍のバージョン(更新・削除中、除外済みの場合は負の値)
+     */
+    private final AtomicLongArray versions;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param ids 書籍のID
+     * @param versions 書籍のバージョン
+     */
+    BookIdPool(long[] ids, long[] versions) {
+        this.ids = ids.clone();
+        this.versions = new AtomicLongArray(versions);
+    }
+
+    /**
+     * 表示する書籍のIDを返却する。
+     * 
+     * @param random 乱数
+     * @return 書籍のID(使用できる書籍がない場合、null)
+     */
+    Long pick(Random random) {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            int slot = random.nextInt(ids.length);
+            if (versions.get(slot) >= 0) {
+                return ids[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 更新・削除する書籍を取得し、他のリクエストで使用しないようにする。
+     * 
+     * @param random 乱数
+     * @return 取得した書籍(使用できる書籍がない場合、null)
+     */
+    Lease acquire(Random random) {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            int slot = random.nextInt(ids.length);
+            long version = versions.get(slot);
+            if (version >= 0 && versions.compareAndSet(slot, version, BUSY)) {
+                return new Lease(slot, ids[slot], version);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 取得した書籍を指定したバージョンでプールに戻す。
+     * 
+     * @param lease 取得した書籍
+     * @param version バージョン
+     */
+    void release(Lease lease, long version) {
+        versions.set(lease.getSlot(), version);
+    }
+
+    /**
+     * 取得した書籍をプールから除外する。
+     * 
+     * @param lease 取得した書籍
+     */
+    void remove(Lease lease) {
+        versions.set(lease.getSlot(), REMOVED);
+    }
+
+    /**
+     * 更新・削除のために取得した書籍
+     */
+    @Value
+    static class Lease {
+
+        /**
+         * プール内の位置
+         */
+        private int slot;
+
+        /**
+         * 書籍のID
+         */
+        private long id;
+
+        /**
+         * 取得時のバージョン
+         */
+        private long version;
+
+    }
+
+}
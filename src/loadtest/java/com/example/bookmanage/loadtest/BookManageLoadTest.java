@@ -0,0 +1,424 @@
+package com.example.bookmanage.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import com.example.bookmanage.BookmanageApplication;
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.service.BookManageService;
+
+/**
+ * 書籍管理システムの負荷試験(./gradlew loadTest で実行する)<br />
+ * 
+ * BookmanageApplicationをランダムなポートで起動し、事前に書籍を登録してから、
+ * ログイン済みのセッションで一覧・表示・登録・更新・削除を指定した割合で実行する。
+ * 
+ * リクエストは応答を待たずに一定の到着率で発行し(オープンモデル)、応答時間は予定の発行時刻から計測する。
+ * アプリケーションが遅延した場合も後続のリクエストの発行は遅れず、待ち時間が応答時間に含まれるため、
+ * Coordinated Omissionによるパーセンタイルの過小評価が起きない。
+ * 参考として、実際に送信してからの時間(サービス時間)も出力する。
+ * 
+ * 登録した書籍のIDは画面から取得できないため、更新・削除・表示は事前に登録した書籍のみを対象とする。
+ */
+public class BookManageLoadTest {
+
+    /**
+     * ログインするユーザ
+     */
+    private static final String USERNAME = "user";
+
+    /**
+     * ログインするユーザのパスワード
+     */
+    private static final String PASSWORD = "user";
+
+    /**
+     * 操作を選択する乱数のシード
+     */
+    private static final long SEED = 20200101L;
+
+    /**
+     * 設定
+     */
+    private final LoadTestSettings settings;
+
+    /**
+     * ログイン済みのセッション
+     */
+    private final List<LoadTestSession> sessions;
+
+    /**
+     * 操作する書籍のプール
+     */
+    private final BookIdPool pool;
+
+    /**
+     * 操作ごとの応答時間(予定の発行時刻から、マイクロ秒)
+     */
+    private final Map<LoadTestOperation, Recorder> responseTimes = new EnumMap<>(LoadTestOperation.class);
+
+    /**
+     * 全操作のサービス時間(実際に送信してから、マイクロ秒)
+     */
+    private final Recorder serviceTimes = new Recorder(3);
+
+    /**
+     * 操作ごとのエラー件数
+     */
+    private final Map<LoadTestOperation, LongAdder> errors = new EnumMap<>(LoadTestOperation.class);
+
+    /**
+     * 操作ごとの対象の書籍がなく実行しなかった件数
+     */
+    private final Map<LoadTestOperation, LongAdder> skipped = new EnumMap<>(LoadTestOperation.class);
+
+    /**
+     * 計測対象のリクエストが最後に完了した時刻
+     */
+    private final LongAccumulator lastCompleted = new LongAccumulator(Long::max, Long.MIN_VALUE);
+
+    /**
+     * 登録する書籍の連番
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * コンストラクタ
+     * 
+     * @param settings 設定
+     * @param sessions ログイン済みのセッション
+     * @param pool 操作する書籍のプール
+     */
+    BookManageLoadTest(LoadTestSettings settings, List<LoadTestSession> sessions, BookIdPool pool) {
+        this.settings = settings;
+        this.sessions = sessions;
+        this.pool = pool;
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            responseTimes.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+            skipped.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        // HttpURLConnectionのKeep-Aliveで保持する接続数(既定は5)
+        System.setProperty("http.maxConnections", String.valueOf(settings.getMaxConcurrency()));
+
+        // application.propertiesより優先するため、コマンドライン引数として指定する(引数で上書きできる)
+        List<String> applicationArgs = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.bookmanage.web=WARN"));
+        applicationArgs.addAll(Arrays.asList(args));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BookmanageApplication.class)
+                .run(applicationArgs.toArray(new String[0]))) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port;
+
+            BookIdPool pool = preload(context.getBean(BookManageService.class), settings.getBooks());
+
+            List<LoadTestSession> sessions = new ArrayList<>(settings.getUsers());
+            for (int i = 0; i < settings.getUsers(); i++) {
+                sessions.add(LoadTestSession.login(baseUrl, USERNAME, PASSWORD));
+            }
+
+            new BookManageLoadTest(settings, Collections.unmodifiableList(sessions), pool).run(System.out);
+        }
+    }
+
+    /**
+     * 負荷試験の対象の書籍を登録する。
+     * 
+     * @param service 書籍管理サービス
+     * @param count 件数
+     * @return 登録した書籍のプール
+     */
+    private static BookIdPool preload(BookManageService service, int count) {
+        List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList("ROLE_USER");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new User(USERNAME, PASSWORD, authorities), PASSWORD, authorities));
+        try {
+            long[] ids = new long[count];
+            long[] versions = new long[count];
+            for (int i = 0; i < count; i++) {
+                Book book = service.createBook(BookManageForm.builder()
+                        .title("負荷試験のタイトル" + i)
+                        .author("負荷試験の著者" + (i % 50))
+                        .newBook(true)
+                        .build());
+                ids[i] = book.getId();
+                versions[i] = book.getVersion();
+            }
+            return new BookIdPool(ids, versions);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    /**
+     * 負荷をかけ、結果を出力する。
+     * 
+     * @param out 結果の出力先
+     * @throws InterruptedException 待機中に割り込まれた場合に発生する
+     * @throws IOException 結果の出力に失敗した場合に発生する
+     */
+    void run(PrintStream out) throws InterruptedException, IOException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getMaxConcurrency(),
+                settings.getMaxConcurrency(), 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        Random random = new Random(SEED);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / settings.getRate());
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(settings.getDurationSeconds());
+
+        out.printf("目標到着率 %.1f req/s、ウォームアップ %d 秒、計測 %d 秒、セッション %d、同時実行の上限 %d、割合 %s%n",
+                settings.getRate(), settings.getWarmupSeconds(), settings.getDurationSeconds(),
+                settings.getUsers(), settings.getMaxConcurrency(), settings.getMix());
+
+        // 予定の発行時刻に達したリクエストを、前のリクエストの完了を待たずに発行する
+        long scheduled = 0;
+        for (long intended = start; intended < end; intended = start + ++scheduled * interval) {
+            long delay = intended - System.nanoTime();
+            while (delay > 0) {
+                LockSupport.parkNanos(delay);
+                delay = intended - System.nanoTime();
+            }
+            LoadTestOperation operation = settings.nextOperation(random);
+            LoadTestSession session = sessions.get((int) (scheduled % sessions.size()));
+            boolean measured = intended >= measureStart;
+            long intendedStart = intended;
+            executor.execute(() -> execute(operation, session, intendedStart, measured));
+        }
+        shutdown(executor);
+
+        report(out, lastCompleted.get() - measureStart);
+    }
+
+    /**
+     * 操作を実行し、計測対象(ウォームアップ後に発行を予定したリクエスト)の場合は応答時間を記録する。
+     * 
+     * @param operation 操作
+     * @param session セッション
+     * @param intendedStart 予定の発行時刻
+     * @param measured 計測対象か否か
+     */
+    private void execute(LoadTestOperation operation, LoadTestSession session, long intendedStart,
+            boolean measured) {
+        long actualStart = System.nanoTime();
+        Boolean succeeded;
+        try {
+            succeeded = send(operation, session, ThreadLocalRandom.current());
+        } catch (IOException e) {
+            succeeded = false;
+        }
+        long completed = System.nanoTime();
+        if (!measured) {
+            return;
+        }
+        if (succeeded == null) {
+            skipped.get(operation).increment();
+            return;
+        }
+        if (!succeeded) {
+            errors.get(operation).increment();
+        }
+        responseTimes.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(completed - intendedStart));
+        serviceTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(completed - actualStart));
+        lastCompleted.accumulate(completed);
+    }
+
+    /**
+     * 操作のリクエストを送信する。
+     * 
+     * @param operation 操作
+     * @param session セッション
+     * @param random 乱数
+     * @return 成功した場合、true(対象の書籍がなく送信しなかった場合、null)
+     * @throws IOException 通信に失敗した場合に発生する
+     */
+    private Boolean send(LoadTestOperation operation, LoadTestSession session, Random random) throws IOException {
+        switch (operation) {
+        case LIST:
+            return session.get("/books").getStatus() == HttpURLConnection.HTTP_OK;
+        case READ: {
+            Long id = pool.pick(random);
+            if (id == null) {
+                return null;
+            }
+            return session.get("/books/" + id).getStatus() == HttpURLConnection.HTTP_OK;
+        }
+        case CREATE: {
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("title", "負荷試験の新規書籍" + sequence.incrementAndGet());
+            params.put("author", "負荷試験の著者");
+            params.put("newBook", "true");
+            return session.post("/books", params).redirectsTo("/books");
+        }
+        case UPDATE: {
+            BookIdPool.Lease lease = pool.acquire(random);
+            if (lease == null) {
+                return null;
+            }
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("_method", "put");
+            params.put("title", "負荷試験の更新後の書籍" + lease.getVersion());
+            params.put("author", "負荷試験の著者");
+            params.put("version", String.valueOf(lease.getVersion()));
+            boolean updated = false;
+            try {
+                updated = session.post("/books/" + lease.getId(), params).redirectsTo("/books");
+            } finally {
+                if (updated) {
+                    pool.release(lease, lease.getVersion() + 1);
+                } else {
+                    // バージョンが不明になるため、以降は使用しない
+                    pool.remove(lease);
+                }
+            }
+            return updated;
+        }
+        case DELETE: {
+            BookIdPool.Lease lease = pool.acquire(random);
+            if (lease == null) {
+                return null;
+            }
+            pool.remove(lease);
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("_method", "delete");
+            return session.post("/books/" + lease.getId(), params).redirectsTo("/books");
+        }
+        default:
+            throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    /**
+     * 発行済みのリクエストの完了を待つ。
+     * 
+     * @param executor リクエストを実行するExecutor
+     * @throws InterruptedException 待機中に割り込まれた場合に発生する
+     */
+    private static void shutdown(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 操作ごとのパーセンタイルとスループットを出力する。<br />
+     * 応答時間の分布(HdrHistogramのhgrm形式)は設定したディレクトリに出力する。
+     * 
+     * @param out 出力先
+     * @param elapsedNanos 計測時間(ナノ秒)
+     * @throws IOException 分布の出力に失敗した場合に発生する
+     */
+    private void report(PrintStream out, long elapsedNanos) throws IOException {
+        Histogram total = new Histogram(3);
+        out.printf("%-18s %8s %7s %7s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "skipped", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        long totalErrors = 0;
+        long totalSkipped = 0;
+        Map<LoadTestOperation, Histogram> histograms = new EnumMap<>(LoadTestOperation.class);
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            Histogram histogram = responseTimes.get(operation).getIntervalHistogram();
+            histograms.put(operation, histogram);
+            total.add(histogram);
+            totalErrors += errors.get(operation).sum();
+            totalSkipped += skipped.get(operation).sum();
+            printRow(out, operation.getLabel(), histogram, errors.get(operation).sum(), skipped.get(operation).sum());
+        }
+        printRow(out, "total", total, totalErrors, totalSkipped);
+
+        Histogram service = serviceTimes.getIntervalHistogram();
+        out.printf("サービス時間(待ち時間を除く): p50 %.2f ms、p99 %.2f ms、p999 %.2f ms%n",
+                millis(service.getValueAtPercentile(50)), millis(service.getValueAtPercentile(99)),
+                millis(service.getValueAtPercentile(99.9)));
+        double seconds = elapsedNanos > 0 ? elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1) : Double.NaN;
+        out.printf("スループット: %.1f req/s(目標 %.1f req/s)%n", total.getTotalCount() / seconds, settings.getRate());
+
+        File dir = new File(settings.getReportDir());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("出力先のディレクトリを作成できません: " + dir);
+        }
+        for (Map.Entry<LoadTestOperation, Histogram> entry : histograms.entrySet()) {
+            writeDistribution(new File(dir, entry.getKey().name().toLowerCase() + ".hgrm"), entry.getValue());
+        }
+        writeDistribution(new File(dir, "total.hgrm"), total);
+        writeDistribution(new File(dir, "service-time.hgrm"), service);
+        out.println("応答時間の分布: " + dir.getAbsolutePath());
+    }
+
+    /**
+     * 操作の結果を1行出力する。
+     * 
+     * @param out 出力先
+     * @param label 操作
+     * @param histogram 応答時間
+     * @param errors エラー件数
+     * @param skipped 実行しなかった件数
+     */
+    private static void printRow(PrintStream out, String label, Histogram histogram, long errors, long skipped) {
+        out.printf("%-18s %8d %7d %7d %10.2f %10.2f %10.2f %10.2f%n",
+                label, histogram.getTotalCount(), errors, skipped,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+    }
+
+    /**
+     * 応答時間の分布をミリ秒単位で出力する。
+     * 
+     * @param file 出力先のファイル
+     * @param histogram 応答時間
+     * @throws IOException 出力に失敗した場合に発生する
+     */
+    private static void writeDistribution(File file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(file, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    /**
+     * マイクロ秒をミリ秒に変換する。
+     * 
+     * @param micros マイクロ秒
+     * @return ミリ秒
+     */
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.example.bookmanage.loadtest;
+
+import java.util.Locale;
+
+/**
+ * 負荷試験で実行する操作
+ */
+enum LoadTestOperation {
+
+    /**
+     * 一覧の表示
+     */
+    LIST("GET /books"),
+
+    /**
+     * 1件の表示
+     */
+    READ("GET /books/{id}"),
+
+    /**
+     * 新規登録
+     */
+    CREATE("POST /books"),
+
+    /**
+     * 更新
+     */
+    UPDATE("PUT /books/{id}"),
+
+    /**
+     * 削除
+     */
+    DELETE("DELETE /books/{id}");
+
+    /**
+     * 結果に表示するリクエスト
+     */
+    private final String label;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param label 結果に表示するリクエスト
+     */
+    LoadTestOperation(String label) {
+        this.label = label;
+    }
+
+    /**
+     * 結果に表示するリクエストを返却する。
+     * 
+     * @return 結果に表示するリクエスト
+     */
+    String getLabel() {
+        return label;
+    }
+
+    /**
+     * 操作の割合の指定(list:40,read:40,...)で使用する名前から操作を返却する。
+     * 
+     * @param name 名前(大文字・小文字は区別しない)
+     * @return 操作
+     */
+    static LoadTestOperation of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.example.bookmanage.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Value;
+
+/**
+ * ログイン済みのHTTPセッション<br />
+ * 
+ * /authenticate でログインし、セッションIDのクッキーとCSRFトークンを保持する。
+ * ログイン後はクッキーとトークンが変わらないため、複数のスレッドから同時に使用できる。
+ * リダイレクトは追跡せず、302とLocationで処理結果を判定する。
+ */
+final class LoadTestSession {
+
+    /**
+     * セッションIDのクッキー名
+     */
+    private static final String SESSION_COOKIE = "JSESSIONID";
+
+    /**
+     * 画面のhidden項目からCSRFトークンを取得する正規表現
+     */
+    private static final Pattern CSRF_TOKEN = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+    /**
+     * 接続・読み込みのタイムアウト(ミリ秒)
+     */
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * アプリケーションのURL(末尾の/なし)
+     */
+    private final String baseUrl;
+
+    /**
+     * セッションIDのクッキー
+     */
+    private String sessionCookie;
+
+    /**
+     * CSRFトークン
+     */
+    private String csrfToken;
+
+    /**
+     * ログインが完了したか否か
+     */
+    private boolean loggedIn;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param baseUrl アプリケーションのURL(末尾の/なし)
+     */
+    private LoadTestSession(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * ログイン画面でCSRFトークンを取得してログインし、ログイン後のCSRFトークンを取得する。
+     * 
+     * @param baseUrl アプリケーションのURL(末尾の/なし)
+     * @param username ユーザ名
+     * @param password パスワード
+     * @return ログイン済みのセッション
+     * @throws IOException ログインに失敗した場合に発生する
+     */
+    static LoadTestSession login(String baseUrl, String username, String password) throws IOException {
+        LoadTestSession session = new LoadTestSession(baseUrl);
+        session.csrfToken = session.csrfTokenOf(session.get("/login"));
+
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("username", username);
+        params.put("password", password);
+        Response response = session.post("/authenticate", params);
+        if (response.getStatus() != HttpURLConnection.HTTP_MOVED_TEMP || !response.redirectsTo("/books")) {
+            throw new IOException("ログインに失敗しました: " + response.getStatus() + " " + response.getLocation());
+        }
+
+        // ログインでセッションIDとCSRFトークンが変わるため、取得し直す
+        session.csrfToken = session.csrfTokenOf(session.get("/books"));
+        session.loggedIn = true;
+        return session;
+    }
+
+    /**
+     * GETリクエストを送信する。
+     * 
+     * @param path パス
+     * @return レスポンス
+     * @throws IOException 通信に失敗した場合に発生する
+     */
+    Response get(String path) throws IOException {
+        HttpURLConnection connection = open(path, "GET");
+        return read(connection);
+    }
+
+    /**
+     * フォームをPOSTする。CSRFトークンは自動で付加する。<br />
+     * PUT・DELETEは画面と同様に_methodで指定する。
+     * 
+     * @param path パス
+     * @param params パラメータ
+     * @return レスポンス
+     * @throws IOException 通信に失敗した場合に発生する
+     */
+    Response post(String path, Map<String, String> params) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            appendParam(form, param.getKey(), param.getValue());
+        }
+        appendParam(form, "_csrf", csrfToken);
+        byte[] body = form.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = open(path, "POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        return read(connection);
+    }
+
+    /**
+     * 接続を作成する。
+     * 
+     * @param path パス
+     * @param method HTTPメソッド
+     * @return 接続
+     * @throws IOException 接続の作成に失敗した場合に発生する
+     */
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        if (sessionCookie != null) {
+            connection.setRequestProperty("Cookie", sessionCookie);
+        }
+        return connection;
+    }
+
+    /**
+     * レスポンスを最後まで読み込む(接続をKeep-Aliveで再利用するため)。<br />
+     * ログインが完了するまでは、セッションIDのクッキーを更新する。
+     * 
+     * @param connection 接続
+     * @return レスポンス
+     * @throws IOException 読み込みに失敗した場合に発生する
+     */
+    private Response read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (!loggedIn) {
+            updateSessionCookie(connection.getHeaderFields().get("Set-Cookie"));
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream()
+                : connection.getInputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, connection.getHeaderField("Location"),
+                new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Set-Cookieからセッションのクッキーを更新する。
+     * 
+     * @param setCookies Set-Cookieの値
+     */
+    private void updateSessionCookie(List<String> setCookies) {
+        if (setCookies == null) {
+            return;
+        }
+        for (String setCookie : setCookies) {
+            if (setCookie.startsWith(SESSION_COOKIE + "=")) {
+                int end = setCookie.indexOf(';');
+                sessionCookie = end < 0 ? setCookie : setCookie.substring(0, end);
+            }
+        }
+    }
+
+    /**
+     * 画面のhidden項目からCSRFトークンを取得する。
+     * 
+     * @param response 画面のレスポンス
+     * @return CSRFトークン
+     * @throws IOException CSRFトークンが含まれない場合に発生する
+     */
+    private String csrfTokenOf(Response response) throws IOException {
+        Matcher matcher = CSRF_TOKEN.matcher(response.getBody());
+        if (!matcher.find()) {
+            throw new IOException("CSRFトークンを取得できません: " + response.getStatus());
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * フォームにパラメータを追加する。
+     * 
+     * @param form フォーム
+     * @param name パラメータ名
+     * @param value 値
+     * @throws IOException エンコードに失敗した場合に発生する
+     */
+    private static void appendParam(StringBuilder form, String name, String value) throws IOException {
+        if (form.length() > 0) {
+            form.append('&');
+        }
+        form.append(URLEncoder.encode(name, StandardCharsets.UTF_8.name()))
+                .append('=')
+                .append(URLEncoder.encode(value, StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * レスポンス
+     */
+    @Value
+    static class Response {
+
+        /**
+         * ステータスコード
+         */
+        private int status;
+
+        /**
+         * Location
+         */
+        private String location;
+
+        /**
+         * 本文
+         */
+        private String body;
+
+        /**
+         * 指定したパスにリダイレクトするか否かを返却する。
+         * 
+         * @param path パス
+         * @return 指定したパスにリダイレクトする場合、true
+         */
+        boolean redirectsTo(String path) {
+            return location != null && location.endsWith(path);
+        }
+
+    }
+
+}
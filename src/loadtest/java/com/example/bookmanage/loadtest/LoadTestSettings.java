@@ -0,0 +1,140 @@
+package com.example.bookmanage.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * 負荷試験の設定<br />
+ * 
+ * システムプロパティ(loadtest.*)から読み込む。Gradleのタスクでは -Dloadtest.rate=100 のように指定する。
+ */
+@Getter
+final class LoadTestSettings {
+
+    /**
+     * 1秒あたりのリクエスト数(到着率)
+     */
+    private final double rate;
+
+    /**
+     * 計測時間(秒)
+     */
+    private final long durationSeconds;
+
+    /**
+     * ウォームアップの時間(秒、結果に含めない)
+     */
+    private final long warmupSeconds;
+
+    /**
+     * ログインするユーザ(セッション)の数
+     */
+    private final int users;
+
+    /**
+     * 事前に登録する書籍の件数
+     */
+    private final int books;
+
+    /**
+     * 同時に実行するリクエストの上限(超えた分は待ち合わせ、待ち時間も応答時間に含める)
+     */
+    private final int maxConcurrency;
+
+    /**
+     * 結果の出力先のディレクトリ
+     */
+    private final String reportDir;
+
+    /**
+     * 操作ごとの割合の累積値
+     */
+    @Getter(AccessLevel.NONE)
+    private final int[] cumulativeWeights;
+
+    /**
+     * 操作の割合
+     */
+    private final Map<LoadTestOperation, Integer> mix;
+
+    /**
+     * コンストラクタ
+     */
+    private LoadTestSettings() {
+        rate = Double.parseDouble(System.getProperty("loadtest.rate", "50"));
+        durationSeconds = Long.parseLong(System.getProperty("loadtest.duration", "60"));
+        warmupSeconds = Long.parseLong(System.getProperty("loadtest.warmup", "10"));
+        users = Integer.parseInt(System.getProperty("loadtest.users", "10"));
+        books = Integer.parseInt(System.getProperty("loadtest.books", "1000"));
+        maxConcurrency = Integer.parseInt(System.getProperty("loadtest.max-concurrency", "200"));
+        reportDir = System.getProperty("loadtest.report-dir", "build/reports/loadtest");
+        mix = parseMix(System.getProperty("loadtest.mix", "list:40,read:40,create:8,update:8,delete:4"));
+
+        if (rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || users <= 0 || books <= 0
+                || maxConcurrency <= 0) {
+            throw new IllegalArgumentException("loadtest.* の値が不正です。");
+        }
+
+        cumulativeWeights = new int[LoadTestOperation.values().length];
+        int total = 0;
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            total += mix.getOrDefault(operation, 0);
+            cumulativeWeights[operation.ordinal()] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("loadtest.mix に1つ以上の操作を指定してください。");
+        }
+    }
+
+    /**
+     * システムプロパティから設定を読み込む。
+     * 
+     * @return 負荷試験の設定
+     */
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings();
+    }
+
+    /**
+     * 操作の割合の指定(list:40,read:40,...)を解析する。
+     * 
+     * @param value 操作の割合の指定
+     * @return 操作の割合
+     */
+    private static Map<LoadTestOperation, Integer> parseMix(String value) {
+        Map<LoadTestOperation, Integer> mix = new EnumMap<>(LoadTestOperation.class);
+        for (String entry : value.split(",")) {
+            String[] pair = entry.split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("loadtest.mix の形式が不正です: " + entry);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("loadtest.mix の割合が不正です: " + entry);
+            }
+            mix.put(LoadTestOperation.of(pair[0]), weight);
+        }
+        return mix;
+    }
+
+    /**
+     * 操作の割合に従って、次に実行する操作を選択する。
+     * 
+     * @param random 乱数
+     * @return 操作
+     */
+    LoadTestOperation nextOperation(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            if (value < cumulativeWeights[operation.ordinal()]) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+}
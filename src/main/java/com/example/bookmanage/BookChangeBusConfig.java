@@ -0,0 +1,60 @@
+package com.example.bookmanage;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.example.bookmanage.bus.BookChangeBus;
+import com.example.bookmanage.bus.JdbcBookChangeBus;
+import com.example.bookmanage.bus.LoopbackBookChangeBus;
+
+/**
+ * 書籍の変更通知のバスのConfiguration<br />
+ * 
+ * bookmanage.bus.transportで、使用するバスを選択する。<br />
+ * loopback(デフォルト) : プロセス内のみで通知する。1ノードで動作する場合に使用する。<br />
+ * jdbc : DBのbook_change_logを経由して通知する。複数ノードで動作する場合に使用する。
+ */
+@Configuration
+@EnableScheduling
+public class BookChangeBusConfig {
+
+    /**
+     * プロセス内で通知するバスを返却する。
+     *
+     * @return 変更通知のバス
+     */
+    @Bean
+    @ConditionalOnProperty(name = "bookmanage.bus.transport", havingValue = "loopback", matchIfMissing = true)
+    public BookChangeBus loopbackBookChangeBus() {
+        return new LoopbackBookChangeBus();
+    }
+
+    /**
+     * DBを経由して通知するバスを返却する。<br />
+     * book_change_logのテーブルが作成された後に開始するため、エンティティマネージャのファクトリの後に生成する。
+     *
+     * @param jdbcTemplate JdbcTemplate
+     * @param nodeId 自ノードのID(省略した場合はランダムに生成する)
+     * @param gapTimeout 欠番を待つ時間
+     * @param retention 変更履歴の保持期間
+     * @return 変更通知のバス
+     */
+    @Bean
+    @DependsOn("entityManagerFactory")
+    @ConditionalOnProperty(name = "bookmanage.bus.transport", havingValue = "jdbc")
+    public BookChangeBus jdbcBookChangeBus(JdbcTemplate jdbcTemplate,
+            @Value("${bookmanage.bus.node-id:}") String nodeId,
+            @Value("${bookmanage.bus.gap-timeout:60s}") Duration gapTimeout,
+            @Value("${bookmanage.bus.retention:1h}") Duration retention) {
+        return new JdbcBookChangeBus(jdbcTemplate, nodeId, gapTimeout, retention, Clock.systemDefaultZone());
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.example.bookmanage;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.bookmanage.metrics.RequestTimingFilter;
+import com.example.bookmanage.metrics.RequestTimingInterceptor;
+import com.example.bookmanage.metrics.SlowQueryLog;
+import com.example.bookmanage.metrics.TimedDataSource;
+
+/**
+ * リクエストごとの実行時間の内訳(Server-Timingヘッダ、アクセスログ)のConfiguration
+ *
+ * 以下を実装している。
+ * 認証を含めたリクエスト全体を計測するため、RequestTimingFilterを最初のFilterとして設定する。
+ * 画面描画の実行時間を計測するため、RequestTimingInterceptorを設定する。
+ * SQLの実行時間の計測と、実行時間がしきい値を超えたSQLの記録のため、DataSourceをTimedDataSourceで包む。
+ */
+@Configuration
+public class RequestTimingConfig implements WebMvcConfigurer {
+
+    /**
+     * RequestTimingFilterをFilterに設定するためのBeanを返却する。
+     *
+     * @return RequestTimingFilterをFilterに設定するためのBean
+     */
+    @Bean
+    public FilterRegistrationBean<RequestTimingFilter> requestTimingFilter() {
+        FilterRegistrationBean<RequestTimingFilter> filterRegBean = new FilterRegistrationBean<>(
+                new RequestTimingFilter());
+        filterRegBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return filterRegBean;
+    }
+
+    /**
+     * RequestTimingInterceptorを設定する。
+     *
+     * @param registry InterceptorRegistry
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestTimingInterceptor());
+    }
+
+    /**
+     * DataSourceをTimedDataSourceで包むBeanPostProcessorを返却する。<br />
+     * 他のBeanの初期化より前に登録するため、staticメソッドにしている。
+     *
+     * @param slowQueryLog 実行時間がしきい値を超えたSQLの記録
+     * @return BeanPostProcessor
+     */
+    @Bean
+    public static BeanPostProcessor timedDataSourcePostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof TimedDataSource)) {
+                    return new TimedDataSource((DataSource) bean, slowQueryLog::getIfAvailable);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -50,6 +50,8 @@ public class ThymeleafMvcConfig {
         resolver.setTemplateEngine(templateEngine());
         resolver.setCharacterEncoding("UTF-8");
         resolver.setOrder(1);
+        // 描画の完了後にまとめて出力する(Server-Timingヘッダに描画の実行時間を含めるため、出力の開始を描画の完了まで遅らせる)
+        resolver.setProducePartialOutputWhileProcessing(false);
         return resolver;
     }
 
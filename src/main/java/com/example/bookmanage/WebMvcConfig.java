@@ -5,6 +5,7 @@ import java.util.Arrays;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
 import org.springframework.validation.Validator;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
@@ -35,12 +36,14 @@ public class WebMvcConfig implements WebMvcConfigurer {
     }
 
     /**
-     * validationで使用するメッセージプロパティのエンコードにUTF-8を設定したLocalValidatorFactoryBeanを返却する。
+     * validationで使用するメッセージプロパティのエンコードにUTF-8を設定したLocalValidatorFactoryBeanを返却する。<br />
+     * 一括登録などコントローラ以外の入力チェックでも同じ設定を使用するため、Beanとして登録する。
      * 
      * @return LocalValidatorFactoryBean
      */
-    @Override
-    public Validator getValidator() {
+    @Bean
+    @Primary
+    public LocalValidatorFactoryBean validator() {
         LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
         ReloadableResourceBundleMessageSource messageSource = new ReloadableResourceBundleMessageSource();
         messageSource.setBasename("classpath:ValidationMessages");
@@ -49,4 +52,14 @@ public class WebMvcConfig implements WebMvcConfigurer {
         return validator;
     }
 
+    /**
+     * MVCのvalidationで使用するValidatorを返却する。
+     * 
+     * @return LocalValidatorFactoryBean
+     */
+    @Override
+    public Validator getValidator() {
+        return validator();
+    }
+
 }
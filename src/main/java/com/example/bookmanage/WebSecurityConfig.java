@@ -34,9 +34,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         http
           .authorizeRequests()
             // アクセス権限の無いURL
-            .antMatchers("/", "/login", "/error").permitAll()
+            .antMatchers("/", "/login", "/error", "/actuator/health").permitAll()
             // 認証済みでROLE_ADMIN権限を持っている場合のみ、アクセス可能
-            .antMatchers("/admin").hasAuthority("ROLE_ADMIN")
+            .antMatchers("/admin", "/admin/**", "/books/import", "/books/export", "/books/batch/**", "/actuator/**").hasAuthority("ROLE_ADMIN")
             // その他はアクセス権限が必要
             .anyRequest().authenticated()
             .and()
@@ -0,0 +1,55 @@
+package com.example.bookmanage.bus;
+
+import java.util.function.Consumer;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+
+/**
+ * 書籍の変更を他のノードに通知するバス<br />
+ * 
+ * 複数のノードで動作する場合に、各ノードのキャッシュや検索インデックスを最新に保つために使用する。
+ * 通知はコミットされた変更のみ、他のノードに届く。自ノードで発行した変更は自ノードには届かない。
+ */
+public interface BookChangeBus {
+
+    /**
+     * 書籍の変更を通知する。<br />
+     * トランザクション内で呼び出された場合、コミットされた時点で他のノードから参照できるようにする。
+     * トランザクション外で呼び出された場合は、すぐに通知する。
+     *
+     * @param event 書籍の変更イベント
+     */
+    void publish(BookChangedEvent event);
+
+    /**
+     * 書籍の一括登録を、登録した書籍のIDのみの1件の通知として通知する。<br />
+     * 通知のタイミングはpublish(BookChangedEvent)と同じ。
+     *
+     * @param event 書籍の一括登録のイベント
+     */
+    void publish(BooksImportedEvent event);
+
+    /**
+     * 他のノードで発生した書籍の変更を受信する処理を登録する。
+     *
+     * @param listener 受信する処理
+     */
+    void subscribe(Consumer<BookChangedEvent> listener);
+
+    /**
+     * 他のノードで発生した書籍の一括登録を受信する処理を登録する。
+     *
+     * @param listener 受信する処理
+     */
+    void subscribeImports(Consumer<BooksImportedEvent> listener);
+
+    /**
+     * 通知先となる他のノードがあるか否かを返却する。<br />
+     * 通知先がない場合、送信側は通知の準備(DBの読み込みなど)を省略できる。
+     *
+     * @return 通知先がある(またはあり得る)場合、true
+     */
+    boolean isBroadcasting();
+
+}
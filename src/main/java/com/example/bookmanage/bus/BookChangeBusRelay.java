@@ -0,0 +1,118 @@
+package com.example.bookmanage.bus;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 書籍の変更イベントと変更通知のバスの中継<br />
+ * 
+ * 自ノードで発行された変更イベントをバスに送信し、他のノードの変更をバスから受信して自ノードで発行する。
+ * 受信した変更は、2次キャッシュから該当する書籍を削除した上で、remoteをtrueにしたイベントとして発行するため、
+ * 検索インデックスや一覧のキャッシュなどは、自ノードの変更と同じように更新される。
+ * 一括登録は登録した書籍のIDのみを1件の通知として送受信し、受信側もBooksImportedEventとして発行する。
+ */
+@Slf4j
+@Component
+public class BookChangeBusRelay {
+
+    /**
+     * 変更通知のバス
+     */
+    private BookChangeBus bus;
+
+    /**
+     * イベントの発行者
+     */
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * エンティティマネージャのファクトリ
+     */
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param bus 変更通知のバス
+     * @param eventPublisher イベントの発行者
+     * @param entityManagerFactory エンティティマネージャのファクトリ
+     */
+    @Autowired
+    public BookChangeBusRelay(BookChangeBus bus, ApplicationEventPublisher eventPublisher,
+            EntityManagerFactory entityManagerFactory) {
+        this.bus = bus;
+        this.eventPublisher = eventPublisher;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * バスからの受信を開始する。
+     */
+    @PostConstruct
+    public void subscribe() {
+        bus.subscribe(this::onRemoteChange);
+        bus.subscribeImports(this::onRemoteImport);
+    }
+
+    /**
+     * 自ノードで発行された変更をバスに送信する。<br />
+     * イベントの発行時(トランザクション内)に呼び出し、コミットされた場合のみ他のノードに届くよう、バスに委ねる。
+     *
+     * @param event 書籍の変更イベント
+     */
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.isRemote() && bus.isBroadcasting()) {
+            bus.publish(event);
+        }
+    }
+
+    /**
+     * 自ノードで一括登録された書籍を、IDのみの1件の通知としてバスに送信する。<br />
+     * 書籍の内容は受信したノードがDBから読み込むため、送信時にはDBを読み込まない。
+     *
+     * @param event 書籍の一括登録のイベント
+     */
+    @EventListener
+    public void onBooksImported(BooksImportedEvent event) {
+        if (!event.isRemote() && bus.isBroadcasting()) {
+            bus.publish(event);
+        }
+    }
+
+    /**
+     * 他のノードで発生した変更を自ノードに反映する。
+     *
+     * @param event 書籍の変更イベント
+     */
+    void onRemoteChange(BookChangedEvent event) {
+        log.debug("received a book change : {}", event);
+        entityManagerFactory.getCache().evict(Book.class, event.getId());
+        eventPublisher.publishEvent(event.toRemote());
+    }
+
+    /**
+     * 他のノードで発生した一括登録を自ノードに反映する。
+     *
+     * @param event 書籍の一括登録のイベント
+     */
+    void onRemoteImport(BooksImportedEvent event) {
+        log.debug("received a book import : {} books", event.size());
+        for (long id : event.getIds()) {
+            entityManagerFactory.getCache().evict(Book.class, id);
+        }
+        eventPublisher.publishEvent(event.toRemote());
+    }
+
+}
@@ -0,0 +1,345 @@
+package com.example.bookmanage.bus;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * DBを経由する変更通知のバス<br />
+ * 
+ * 変更を書籍の更新と同じトランザクションでbook_change_logに登録し(コミット前、またはPOLL_SIZE件ごとにまとめてバッチ登録する)、
+ * 各ノードは定期的にbook_change_logをポーリングして、他のノードが登録した変更を受信する。
+ * 変更の登録とコミットは同時に行われるため、コミットされた変更のみが確実に通知される。
+ * 一括登録は、登録した書籍のIDのみをまとめた1件の変更履歴として登録する。<br />
+ * 
+ * IDの採番順とコミット順は一致しないため、読み込み済みのIDを記録し、
+ * IDが欠番のまま一定時間経過した場合(ロールバックなど)は欠番を飛ばして読み進める。
+ */
+@Slf4j
+public class JdbcBookChangeBus implements BookChangeBus {
+
+    /**
+     * 変更履歴を登録するSQL
+     */
+    private static final String INSERT_SQL = "INSERT INTO book_change_log"
+            + " (origin, type, book_id, title, author, version, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 変更履歴を取得するSQL
+     */
+    private static final String SELECT_SQL = "SELECT id, origin, type, book_id, title, author, version, book_ids"
+            + " FROM book_change_log WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * 一括登録の変更履歴を登録するSQL
+     */
+    private static final String INSERT_IMPORTED_SQL = "INSERT INTO book_change_log"
+            + " (origin, type, version, book_ids, created_at) VALUES (?, ?, 0, ?, ?)";
+
+    /**
+     * 一括登録の変更の種類
+     */
+    private static final String IMPORTED = "IMPORTED";
+
+    /**
+     * 古い変更履歴を削除するSQL
+     */
+    private static final String DELETE_SQL = "DELETE FROM book_change_log WHERE created_at < ?";
+
+    /**
+     * 1回のポーリングで取得する最大件数
+     */
+    private static final int POLL_SIZE = 500;
+
+    /**
+     * JdbcTemplate
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 自ノードのID
+     */
+    private String nodeId;
+
+    /**
+     * 欠番を待つ時間
+     */
+    private Duration gapTimeout;
+
+    /**
+     * 変更履歴の保持期間
+     */
+    private Duration retention;
+
+    /**
+     * 時刻
+     */
+    private Clock clock;
+
+    /**
+     * 受信する処理
+     */
+    private final List<Consumer<BookChangedEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 一括登録を受信する処理
+     */
+    private final List<Consumer<BooksImportedEvent>> importListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * このIDまでは読み込み済み(または欠番として読み飛ばし済み)
+     */
+    private long cursor;
+
+    /**
+     * cursorより大きいIDのうち、読み込み済みのID
+     */
+    private final TreeSet<Long> seen = new TreeSet<>();
+
+    /**
+     * 待っている欠番のID
+     */
+    private long gapId;
+
+    /**
+     * 欠番を待ち始めた時刻(ミリ秒)
+     */
+    private long gapSince;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param jdbcTemplate JdbcTemplate
+     * @param nodeId 自ノードのID(空の場合はランダムに生成する)
+     * @param gapTimeout 欠番を待つ時間
+     * @param retention 変更履歴の保持期間
+     * @param clock 時刻
+     */
+    public JdbcBookChangeBus(JdbcTemplate jdbcTemplate, String nodeId, Duration gapTimeout, Duration retention,
+            Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        this.gapTimeout = gapTimeout;
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    /**
+     * 自ノードのIDを返却する。
+     *
+     * @return 自ノードのID
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 起動時点の変更履歴は読み込み済みとする。<br />
+     * 起動時点の書籍の内容は、各キャッシュ・インデックスがDBから読み込むため。
+     */
+    @PostConstruct
+    public synchronized void start() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM book_change_log", Long.class);
+        cursor = max != null ? max : 0;
+        seen.clear();
+        log.info("book change bus (jdbc) started : node {}, from id {}", nodeId, cursor);
+    }
+
+    @Override
+    public void publish(BookChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(Collections.singletonList(event));
+            return;
+        }
+
+        // トランザクション内の変更はまとめて、コミット前にバッチで登録する
+        // (一括登録などで件数が多い場合は、POLL_SIZE件ごとにトランザクション内で登録する)
+        @SuppressWarnings("unchecked")
+        List<BookChangedEvent> buffer = (List<BookChangedEvent>) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            List<BookChangedEvent> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insert(events);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(JdbcBookChangeBus.this);
+                }
+            });
+            buffer = events;
+        }
+        buffer.add(event);
+        if (buffer.size() >= POLL_SIZE) {
+            insert(buffer);
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void publish(BooksImportedEvent event) {
+        // IDのみの1件のため、トランザクション内でもまとめずにすぐ登録する
+        String ids = Arrays.stream(event.getIds()).mapToObj(Long::toString).collect(Collectors.joining(","));
+        jdbcTemplate.update(INSERT_IMPORTED_SQL, nodeId, IMPORTED, ids,
+                Timestamp.valueOf(LocalDateTime.now(clock)));
+    }
+
+    @Override
+    public void subscribe(Consumer<BookChangedEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void subscribeImports(Consumer<BooksImportedEvent> listener) {
+        importListeners.add(listener);
+    }
+
+    /**
+     * 他のノードの有無は分からないため、常に通知する。
+     */
+    @Override
+    public boolean isBroadcasting() {
+        return true;
+    }
+
+    /**
+     * 他のノードが登録した変更を取得して通知する。
+     */
+    @Scheduled(fixedDelayString = "${bookmanage.bus.poll-interval:1000}")
+    public synchronized void poll() {
+        List<Object> events = new ArrayList<>();
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            long id = rs.getLong("id");
+            if (!seen.add(id) || nodeId.equals(rs.getString("origin"))) {
+                return;
+            }
+            if (IMPORTED.equals(rs.getString("type"))) {
+                long[] ids = Arrays.stream(rs.getString("book_ids").split(",")).mapToLong(Long::parseLong)
+                        .toArray();
+                events.add(new BooksImportedEvent(ids, true));
+            } else {
+                events.add(new BookChangedEvent(
+                        BookChangedEvent.Type.valueOf(rs.getString("type")),
+                        rs.getLong("book_id"),
+                        rs.getString("title"),
+                        rs.getString("author"),
+                        rs.getLong("version"),
+                        true));
+            }
+        }, cursor, POLL_SIZE);
+        advance();
+
+        for (Object event : events) {
+            if (event instanceof BooksImportedEvent) {
+                deliver(importListeners, (BooksImportedEvent) event);
+            } else {
+                deliver(listeners, (BookChangedEvent) event);
+            }
+        }
+    }
+
+    /**
+     * 保持期間を過ぎた変更履歴を削除する。
+     */
+    @Scheduled(fixedDelayString = "${bookmanage.bus.purge-interval:600000}")
+    public void purge() {
+        LocalDateTime limit = LocalDateTime.now(clock).minus(retention);
+        int count = jdbcTemplate.update(DELETE_SQL, Timestamp.valueOf(limit));
+        if (count > 0) {
+            log.debug("purged {} book change logs", count);
+        }
+    }
+
+    /**
+     * 連続して読み込み済みのIDまでcursorを進める。<br />
+     * 欠番が一定時間埋まらない場合は、欠番を読み飛ばす。
+     */
+    private void advance() {
+        while (true) {
+            while (!seen.isEmpty() && seen.first() == cursor + 1) {
+                cursor = seen.pollFirst();
+            }
+            if (seen.isEmpty()) {
+                gapSince = 0;
+                return;
+            }
+            long now = clock.millis();
+            if (gapId != cursor + 1 || gapSince == 0) {
+                gapId = cursor + 1;
+                gapSince = now;
+                return;
+            }
+            if (now - gapSince < gapTimeout.toMillis()) {
+                return;
+            }
+            log.debug("skip book change log ids {} - {}", cursor + 1, seen.first() - 1);
+            cursor = seen.first() - 1;
+            gapSince = 0;
+        }
+    }
+
+    /**
+     * 受信した変更を通知する。
+     *
+     * @param <T> 変更の型
+     * @param targets 受信する処理
+     * @param event 受信した変更
+     */
+    private static <T> void deliver(List<Consumer<T>> targets, T event) {
+        for (Consumer<T> listener : targets) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("failed to apply a book change : {}", event, e);
+            }
+        }
+    }
+
+    /**
+     * 変更履歴を登録する。
+     *
+     * @param events 書籍の変更イベント
+     */
+    private void insert(List<BookChangedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(clock));
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, POLL_SIZE, (ps, event) -> {
+            ps.setString(1, nodeId);
+            ps.setString(2, event.getType().name());
+            ps.setLong(3, event.getId());
+            ps.setString(4, event.getTitle());
+            ps.setString(5, event.getAuthor());
+            ps.setLong(6, event.getVersion());
+            ps.setTimestamp(7, now);
+        });
+    }
+
+}
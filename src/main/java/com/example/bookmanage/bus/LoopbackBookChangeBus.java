@@ -0,0 +1,128 @@
+package com.example.bookmanage.bus;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+
+/**
+ * プロセス内で通知する変更通知のバス<br />
+ * 
+ * 同じチャネルに参加したノード(インスタンス)間で、コミット後に変更を通知する。
+ * 1ノードで動作する場合は通知先がないため何もしない。
+ * 複数ノードの動作を1プロセス内で確認する場合は、join()で同じチャネルのノードを作成する。
+ */
+public class LoopbackBookChangeBus implements BookChangeBus {
+
+    /**
+     * 同じチャネルに参加しているノード
+     */
+    private final Set<LoopbackBookChangeBus> members;
+
+    /**
+     * 受信する処理
+     */
+    private final List<Consumer<BookChangedEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 一括登録を受信する処理
+     */
+    private final List<Consumer<BooksImportedEvent>> importListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 新しいチャネルを作成し、最初のノードとして参加する。
+     */
+    public LoopbackBookChangeBus() {
+        this(ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * チャネルに参加する。
+     *
+     * @param members 同じチャネルに参加しているノード
+     */
+    private LoopbackBookChangeBus(Set<LoopbackBookChangeBus> members) {
+        this.members = members;
+        members.add(this);
+    }
+
+    /**
+     * 同じチャネルに参加する別のノードを作成する。
+     *
+     * @return 別のノード
+     */
+    public LoopbackBookChangeBus join() {
+        return new LoopbackBookChangeBus(members);
+    }
+
+    @Override
+    public void publish(BookChangedEvent event) {
+        afterCommit(() -> deliver(member -> member.listeners, event));
+    }
+
+    @Override
+    public void publish(BooksImportedEvent event) {
+        afterCommit(() -> deliver(member -> member.importListeners, event));
+    }
+
+    @Override
+    public void subscribe(Consumer<BookChangedEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void subscribeImports(Consumer<BooksImportedEvent> listener) {
+        importListeners.add(listener);
+    }
+
+    @Override
+    public boolean isBroadcasting() {
+        return members.size() > 1;
+    }
+
+    /**
+     * コミット後(トランザクション外の場合はすぐ)に通知する。
+     *
+     * @param delivery 通知する処理
+     */
+    private void afterCommit(Runnable delivery) {
+        if (!isBroadcasting()) {
+            // 通知先がないため、コミット後の処理も登録しない
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    delivery.run();
+                }
+            });
+        } else {
+            delivery.run();
+        }
+    }
+
+    /**
+     * 自ノード以外のノードに通知する。
+     *
+     * @param <T> 通知の型
+     * @param listenersOf ノードの受信する処理
+     * @param message 通知
+     */
+    private <T> void deliver(Function<LoopbackBookChangeBus, List<Consumer<T>>> listenersOf, T message) {
+        for (LoopbackBookChangeBus member : members) {
+            if (member != this) {
+                listenersOf.apply(member).forEach(listener -> listener.accept(message));
+            }
+        }
+    }
+
+}
@@ -67,6 +67,8 @@ public abstract class AbstractEntity {
         String userName = context.getAuthentication().getName();
         createdUser = userName;
         updatedUser = userName;
+
+        updateDerivedColumns();
     }
 
     /**
@@ -78,6 +80,15 @@ public abstract class AbstractEntity {
 
         SecurityContext context = SecurityContextHolder.getContext();
         updatedUser = context.getAuthentication().getName();
+
+        updateDerivedColumns();
+    }
+
+    /**
+     * 登録・更新時に、他の項目から導出する項目を更新する。<br />
+     * 導出する項目があるエンティティはオーバーライドすること。
+     */
+    protected void updateDerivedColumns() {
     }
 
 }
@@ -1,22 +1,53 @@
 package com.example.bookmanage.domain;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.Cacheable;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.ConstraintMode;
 import javax.persistence.Entity;
+import javax.persistence.ForeignKey;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.example.bookmanage.search.BookTextNormalizer;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 /**
- * 書籍のエンティティ
+ * 書籍のエンティティ<br />
+ * 
+ * 一覧のキーセットページングで使用する(ソート項目, ID)の複合インデックスを定義している。
+ * 検索用に、正規化したタイトル・著者と、そのトークンを登録・更新時に生成して保持する。<br />
+ * 2次キャッシュ(リージョン"book")の対象とする。READ_WRITEのため、更新中のエントリはソフトロックされ、
+ * ロック中とロックの解除前に読み込みを開始したトランザクションの書籍はキャッシュに登録されない。
+ * (ロックのタイムアウトより長いトランザクションでは、変更前の書籍が登録され得る)
+ * JdbcTemplateで更新・削除する場合も、BookRepositoryImplが同じソフトロックを取得する。
  */
 @Entity
-@Table(name = "book")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
+@Table(name = "book", indexes = {
+        @Index(name = "idx_book_title_id", columnList = "title, id"),
+        @Index(name = "idx_book_author_id", columnList = "author, id")
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
@@ -25,10 +56,12 @@ import lombok.NoArgsConstructor;
 public class Book extends AbstractEntity {
 
     /**
-     * 書籍のID
+     * 書籍のID<br />
+     * シーケンスから50件単位で採番し(pooledオプティマイザ)、INSERTのJDBCバッチ化を可能にしている。
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_id_generator")
+    @SequenceGenerator(name = "book_id_generator", sequenceName = "book_id_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -41,4 +74,52 @@ public class Book extends AbstractEntity {
      */
     private String author;
 
+    /**
+     * 検索用のタイトル(正規化済み)
+     */
+    @Column(name = "title_search")
+    private String titleSearch;
+
+    /**
+     * 検索用の著者(正規化済み)
+     */
+    @Column(name = "author_search")
+    private String authorSearch;
+
+    /**
+     * 検索用のトークン(正規化したタイトル・著者の文字とバイグラム)<br />
+     * 開発用のインメモリDBは起動時にテーブルを作り直すため、DROPの妨げになる外部キー制約は設けない。
+     * 書籍をJPQLで一括削除する場合は、トークンも合わせて削除すること。<br />
+     * 一括更新で複数の書籍を更新する場合に書籍ごとに読み込まないよう、JDBCバッチと同じ件数ずつまとめて読み込む。
+     */
+    @ElementCollection
+    @BatchSize(size = 50)
+    @CollectionTable(name = "book_search_token",
+            joinColumns = @JoinColumn(name = "book_id"),
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT),
+            indexes = @Index(name = "idx_book_search_token_token", columnList = "token, book_id"))
+    @Column(name = "token", length = 8, nullable = false)
+    @Builder.Default
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Set<String> searchTokens = new HashSet<>();
+
+    /**
+     * 検索用の項目を、タイトル・著者から生成する。<br />
+     * トークンは差分のみ反映し、変更のない行は更新しない。
+     */
+    @Override
+    protected void updateDerivedColumns() {
+        titleSearch = BookTextNormalizer.normalize(title);
+        authorSearch = BookTextNormalizer.normalize(author);
+
+        Set<String> tokens = BookTextNormalizer.indexTokens(titleSearch);
+        tokens.addAll(BookTextNormalizer.indexTokens(authorSearch));
+        if (searchTokens == null) {
+            searchTokens = new HashSet<>();
+        }
+        searchTokens.retainAll(tokens);
+        searchTokens.addAll(tokens);
+    }
+
 }
@@ -0,0 +1,88 @@
+package com.example.bookmanage.domain;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 書籍の変更履歴のエンティティ<br />
+ * 
+ * DBを経由する変更通知のバス(JdbcBookChangeBus)が、他のノードに書籍の変更を通知するために使用する。
+ * 登録・参照はJdbcBookChangeBusがSQLで直接行い、このクラスはテーブル定義のみを表す。
+ * 一括登録は、登録した書籍のIDをまとめた1件(種類はIMPORTED、書籍のIDはnull)として登録する。
+ */
+@Entity
+@Table(name = "book_change_log", indexes = {
+        @Index(name = "idx_book_change_log_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+public class BookChangeLog {
+
+    /**
+     * 変更履歴のID(登録順)
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 変更したノードのID
+     */
+    @Column(name = "origin", length = 64, nullable = false)
+    private String origin;
+
+    /**
+     * 変更の種類(BookChangedEvent.Typeの名前、または一括登録の場合はIMPORTED)
+     */
+    @Column(name = "type", length = 16, nullable = false)
+    private String type;
+
+    /**
+     * 書籍のID(一括登録の場合はnull)
+     */
+    @Column(name = "book_id")
+    private Long bookId;
+
+    /**
+     * 変更後のタイトル
+     */
+    @Column(name = "title")
+    private String title;
+
+    /**
+     * 変更後の著者
+     */
+    @Column(name = "author")
+    private String author;
+
+    /**
+     * 変更後の書籍のバージョン
+     */
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    /**
+     * 一括登録した書籍のID(カンマ区切り)
+     */
+    @Lob
+    @Column(name = "book_ids")
+    private String bookIds;
+
+    /**
+     * 登録日時
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+}
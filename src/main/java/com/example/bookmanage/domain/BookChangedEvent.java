@@ -0,0 +1,110 @@
+package com.example.bookmanage.domain;
+
+import lombok.Value;
+
+/**
+ * 書籍の変更イベント<br />
+ * 
+ * 書籍の登録・更新・削除時にサービスから発行する。
+ * 検索インデックスなど、書籍の内容を保持するコンポーネントはコミット後にこのイベントで更新する。
+ * 他のノードで発生した変更は、変更通知のバスから受信し、remoteをtrueにして同じイベントとして発行する。
+ * コミット後のイベントは発生順に届くとは限らないため、変更後の書籍のバージョン(@Version)を保持し、
+ * 受け取った側は保持しているバージョンより新しい変更のみを反映する。
+ * 削除したIDが再び使用されることはないため、削除のイベントは常に最新(DELETED_VERSION)として扱う。
+ */
+@Value
+public class BookChangedEvent {
+
+    /**
+     * 変更の種類
+     */
+    public enum Type {
+        /** 登録 */
+        CREATED,
+        /** 更新 */
+        UPDATED,
+        /** 削除 */
+        DELETED
+    }
+
+    /**
+     * 削除のイベントのバージョン(どの登録・更新よりも新しいものとして扱う)
+     */
+    public static final long DELETED_VERSION = Long.MAX_VALUE;
+
+    /**
+     * 変更の種類
+     */
+    private Type type;
+
+    /**
+     * 書籍のID
+     */
+    private long id;
+
+    /**
+     * 変更後のタイトル(削除の場合はnull)
+     */
+    private String title;
+
+    /**
+     * 変更後の著者(削除の場合はnull)
+     */
+    private String author;
+
+    /**
+     * 変更後の書籍のバージョン(削除の場合はDELETED_VERSION)
+     */
+    private long version;
+
+    /**
+     * 他のノードで発生した変更か否か
+     */
+    private boolean remote;
+
+    /**
+     * 登録・更新のイベントを生成する。
+     *
+     * @param type 変更の種類
+     * @param book 変更後の書籍(バージョンは変更後の値であること)
+     * @return イベント
+     */
+    public static BookChangedEvent of(Type type, Book book) {
+        return new BookChangedEvent(type, book.getId(), book.getTitle(), book.getAuthor(), book.getVersion(),
+                false);
+    }
+
+    /**
+     * 更新のイベントを生成する。<br />
+     * エンティティを読み込まずに一括更新した場合に使用する。
+     *
+     * @param id 書籍のID
+     * @param title 変更後のタイトル
+     * @param author 変更後の著者
+     * @param version 変更後のバージョン
+     * @return イベント
+     */
+    public static BookChangedEvent updated(long id, String title, String author, long version) {
+        return new BookChangedEvent(Type.UPDATED, id, title, author, version, false);
+    }
+
+    /**
+     * 削除のイベントを生成する。
+     *
+     * @param id 書籍のID
+     * @return イベント
+     */
+    public static BookChangedEvent deleted(long id) {
+        return new BookChangedEvent(Type.DELETED, id, null, null, DELETED_VERSION, false);
+    }
+
+    /**
+     * 他のノードで発生した変更として、このイベントを複製する。
+     *
+     * @return 他のノードで発生した変更のイベント
+     */
+    public BookChangedEvent toRemote() {
+        return new BookChangedEvent(type, id, title, author, version, true);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.example.bookmanage.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * 書籍一覧に表示する項目のみを保持する読み取り専用のDTO<br />
+ * 
+ * 一覧の取得はエンティティではなく、このクラスのコンストラクタ式で行う。
+ * 永続化コンテキストに登録されないため、監査項目の読み込みやダーティチェックが発生しない。
+ */
+@Value
+@AllArgsConstructor
+public class BookSummary {
+
+    /**
+     * 書籍のID
+     */
+    private Long id;
+
+    /**
+     * タイトル
+     */
+    private String title;
+
+    /**
+     * 著者
+     */
+    private String author;
+
+    /**
+     * バージョン
+     */
+    private long version;
+
+}
@@ -0,0 +1,65 @@
+package com.example.bookmanage.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import lombok.Value;
+
+/**
+ * 書籍の一括登録のイベント<br />
+ *
+ * 一括登録時に、書籍ごとのBookChangedEventの代わりに1件だけ発行する。
+ * 登録した書籍のIDのみを保持するため、コミットまで保持するイベントは登録件数に関わらず1件となる。
+ * 受け取った側は、必要な内容をIDからDBを読み込んで反映する。
+ * 他のノードで一括登録された場合も、変更通知のバスから受信し、remoteをtrueにして同じイベントとして発行する。
+ */
+@Value
+public class BooksImportedEvent {
+
+    /**
+     * 登録した書籍のID
+     */
+    private long[] ids;
+
+    /**
+     * 他のノードで発生した一括登録か否か
+     */
+    private boolean remote;
+
+    /**
+     * 登録した書籍の件数を返却する。
+     *
+     * @return 件数
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * 登録した書籍のIDを、指定した件数ずつに分けて処理する。
+     *
+     * @param chunkSize 1回に処理する件数
+     * @param action IDを受け取る処理
+     */
+    public void forEachChunk(int chunkSize, Consumer<List<Long>> action) {
+        for (int from = 0; from < ids.length; from += chunkSize) {
+            int to = Math.min(from + chunkSize, ids.length);
+            List<Long> chunk = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                chunk.add(ids[i]);
+            }
+            action.accept(chunk);
+        }
+    }
+
+    /**
+     * 他のノードで発生した一括登録として、このイベントを複製する。
+     *
+     * @return 他のノードで発生した一括登録のイベント
+     */
+    public BooksImportedEvent toRemote() {
+        return new BooksImportedEvent(ids, true);
+    }
+
+}
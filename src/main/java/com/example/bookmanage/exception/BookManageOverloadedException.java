@@ -0,0 +1,45 @@
+package com.example.bookmanage.exception;
+
+/**
+ * DB接続の待ち時間が上限を超える見込みのため、処理を受け付けなかった場合の例外処理<br />
+ * サービスのAspectから発生するため、非検査例外にしている。
+ */
+@SuppressWarnings("serial")
+public class BookManageOverloadedException extends RuntimeException {
+
+    /**
+     * メッセージのフォーマット
+     */
+    private static final String MESSAGE_FORMAT = "Database is overloaded. (expected wait = %d ms, max wait = %d ms)";
+
+    /**
+     * 1秒のミリ秒
+     */
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    /**
+     * 見込みの待ち時間(ミリ秒)
+     */
+    private final long expectedWaitMillis;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param expectedWaitMillis 見込みの待ち時間(ミリ秒)
+     * @param maxWaitMillis 待ち時間の上限(ミリ秒)
+     */
+    public BookManageOverloadedException(long expectedWaitMillis, long maxWaitMillis) {
+        super(String.format(MESSAGE_FORMAT, expectedWaitMillis, maxWaitMillis));
+        this.expectedWaitMillis = expectedWaitMillis;
+    }
+
+    /**
+     * 再試行までの秒数(Retry-Afterヘッダの値)を返却する。
+     * 
+     * @return 見込みの待ち時間を切り上げた秒数(最小1秒)
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (expectedWaitMillis + MILLIS_PER_SECOND - 1) / MILLIS_PER_SECOND);
+    }
+
+}
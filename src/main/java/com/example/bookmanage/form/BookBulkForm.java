@@ -0,0 +1,84 @@
+package com.example.bookmanage.form;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import javax.validation.constraints.Size;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 管理者用画面の一括操作のフォーム情報<br />
+ * 
+ * 著者の一括変更と、作成ユーザによる一括削除の条件を保持する。
+ * 作成日の範囲はどちらも省略でき、省略した場合は範囲を限定しない。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookBulkForm {
+
+    /**
+     * 作成日の範囲を省略した場合の開始日時
+     */
+    static final LocalDateTime MIN_DATE_TIME = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    /**
+     * 作成日の範囲を省略した場合の終了日時
+     */
+    static final LocalDateTime MAX_DATE_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    /**
+     * 変更前の著者
+     */
+    private String author;
+
+    /**
+     * 変更後の著者
+     */
+    @Size(max = 20, message="{validation.max-size}")
+    private String newAuthor;
+
+    /**
+     * 作成ユーザ
+     */
+    private String createdUser;
+
+    /**
+     * 作成日の範囲の開始日(この日を含む)
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdFrom;
+
+    /**
+     * 作成日の範囲の終了日(この日を含む)
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdTo;
+
+    /**
+     * 作成日時の範囲の開始日時(この日時を含む)を返却する。
+     *
+     * @return 開始日時
+     */
+    public LocalDateTime createdFromDateTime() {
+        return createdFrom != null ? createdFrom.atStartOfDay() : MIN_DATE_TIME;
+    }
+
+    /**
+     * 作成日時の範囲の終了日時(この日時を含まない)を返却する。
+     *
+     * @return 終了日時(終了日の翌日の0時)
+     */
+    public LocalDateTime createdToDateTime() {
+        return createdTo != null ? LocalDateTime.of(createdTo.plusDays(1), LocalTime.MIDNIGHT) : MAX_DATE_TIME;
+    }
+
+}
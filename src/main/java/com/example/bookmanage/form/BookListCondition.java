@@ -0,0 +1,47 @@
+package com.example.bookmanage.form;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 書籍一覧の表示条件<br />
+ * 
+ * キーセットページングのカーソル(起点となる書籍のIDとソート項目の値)を保持する。
+ * afterとbeforeのどちらも指定しない場合、先頭ページを表示する。
+ * 検索キーワードを指定した場合、検索結果を表示する。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookListCondition {
+
+    /**
+     * ソート項目
+     */
+    @Builder.Default
+    private BookSortKey sort = BookSortKey.ID;
+
+    /**
+     * 次ページの起点となる書籍のID(この書籍より後を表示する)
+     */
+    private Long after;
+
+    /**
+     * 前ページの起点となる書籍のID(この書籍より前を表示する)
+     */
+    private Long before;
+
+    /**
+     * 起点となる書籍のソート項目の値
+     */
+    private String key;
+
+    /**
+     * 検索キーワード(指定した場合、カーソルとソート項目は使用しない)
+     */
+    private String q;
+
+}
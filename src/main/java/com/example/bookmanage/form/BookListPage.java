@@ -0,0 +1,55 @@
+package com.example.bookmanage.form;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 書籍一覧のページ情報<br />
+ * 
+ * 表示中のページの表示条件と、前ページ・次ページへ遷移するためのカーソルを保持する。
+ * 遷移先のページが存在しない場合、カーソルのIDはnullになる。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookListPage {
+
+    /**
+     * ソート項目
+     */
+    private BookSortKey sort;
+
+    /**
+     * 表示中のページの表示条件
+     */
+    private BookListCondition condition;
+
+    /**
+     * 前ページの起点となる書籍のID
+     */
+    private Long previousId;
+
+    /**
+     * 前ページの起点となる書籍のソート項目の値
+     */
+    private String previousKey;
+
+    /**
+     * 次ページの起点となる書籍のID
+     */
+    private Long nextId;
+
+    /**
+     * 次ページの起点となる書籍のソート項目の値
+     */
+    private String nextKey;
+
+    /**
+     * 検索キーワードに一致する書籍がなく、近い語を含む書籍を表示しているか否か
+     */
+    private boolean fuzzy;
+
+}
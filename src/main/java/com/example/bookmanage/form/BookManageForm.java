@@ -5,7 +5,7 @@ import java.util.List;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
 
-import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookSummary;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -48,7 +48,12 @@ public class BookManageForm {
     /**
      * 書籍の一覧
      */
-    private List<Book> books;
+    private List<BookSummary> books;
+
+    /**
+     * 書籍一覧のページ情報
+     */
+    private BookListPage page;
 
     /**
      * コンストラクタ
@@ -56,7 +61,7 @@ public class BookManageForm {
      * @param newBook 新規登録か否か
      * @param books 書籍の一覧
      */
-    public BookManageForm(boolean newBook, List<Book> books) {
+    public BookManageForm(boolean newBook, List<BookSummary> books) {
         this.newBook = newBook;
         this.books = books;
     }
@@ -0,0 +1,54 @@
+package com.example.bookmanage.form;
+
+import java.util.function.Function;
+
+import com.example.bookmanage.domain.BookSummary;
+
+/**
+ * 書籍一覧のソート項目<br />
+ * 
+ * いずれのソート項目もIDを第2キーとし、キーセットページングの順序を一意にしている。
+ */
+public enum BookSortKey {
+
+    /**
+     * ID(登録順)
+     */
+    ID(book -> null),
+
+    /**
+     * タイトル
+     */
+    TITLE(BookSummary::getTitle),
+
+    /**
+     * 著者
+     */
+    AUTHOR(BookSummary::getAuthor);
+
+    /**
+     * 書籍からソート項目の値を取得する関数
+     */
+    private final Function<BookSummary, String> keyExtractor;
+
+    /**
+     * コンストラクタ
+     *
+     * @param keyExtractor 書籍からソート項目の値を取得する関数
+     */
+    BookSortKey(Function<BookSummary, String> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * 書籍のソート項目の値を返却する。<br />
+     * IDでソートする場合、IDがそのままカーソルになるため、nullを返却する。
+     *
+     * @param book 書籍
+     * @return ソート項目の値
+     */
+    public String keyOf(BookSummary book) {
+        return keyExtractor.apply(book);
+    }
+
+}
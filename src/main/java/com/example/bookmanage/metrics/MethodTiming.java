@@ -0,0 +1,55 @@
+package com.example.bookmanage.metrics;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * メソッドの実行時間の集計結果(時間はミリ秒)
+ */
+@Value
+@AllArgsConstructor
+public class MethodTiming {
+
+    /**
+     * 層(web、service)
+     */
+    private String layer;
+
+    /**
+     * クラス名
+     */
+    private String type;
+
+    /**
+     * メソッド名(引数の型を含む)
+     */
+    private String method;
+
+    /**
+     * 呼び出し回数
+     */
+    private long count;
+
+    /**
+     * 合計時間
+     */
+    private double totalMillis;
+
+    /**
+     * 平均時間
+     */
+    private double meanMillis;
+
+    /**
+     * 最大時間
+     */
+    private double maxMillis;
+
+    /**
+     * パーセンタイル(p50、p99、p999)
+     */
+    private Map<String, Double> percentiles;
+
+}
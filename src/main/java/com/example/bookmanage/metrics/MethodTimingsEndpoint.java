@@ -0,0 +1,52 @@
+package com.example.bookmanage.metrics;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * メソッドごとの実行時間を一覧で返却するActuatorのエンドポイント(/actuator/methodtimings)<br />
+ * DELETEで記録済みの実行時間を破棄し、以降の区間のみを集計できる。
+ */
+@Component
+@Endpoint(id = "methodtimings")
+public class MethodTimingsEndpoint {
+
+    /**
+     * メソッドごとの実行時間のタイマー
+     */
+    private MethodTimers methodTimers;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param methodTimers メソッドごとの実行時間のタイマー
+     */
+    @Autowired
+    public MethodTimingsEndpoint(MethodTimers methodTimers) {
+        this.methodTimers = methodTimers;
+    }
+
+    /**
+     * メソッドごとの実行時間を、合計時間の降順で返却する。
+     * 
+     * @return メソッドごとの実行時間
+     */
+    @ReadOperation
+    public List<MethodTiming> timings() {
+        return methodTimers.snapshot();
+    }
+
+    /**
+     * 記録済みの実行時間を破棄する。
+     */
+    @DeleteOperation
+    public void reset() {
+        methodTimers.reset();
+    }
+
+}
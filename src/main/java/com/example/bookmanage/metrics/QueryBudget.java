@@ -0,0 +1,30 @@
+package com.example.bookmanage.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 1リクエストで実行してよいSQLの回数(クエリ予算)<br />
+ *
+ * コントローラのメソッドに指定する。SQLの実行回数はTimedDataSourceが数え、
+ * 予算を超えた場合はRequestTimingInterceptorが警告ログを出力する。
+ * テストではQueryBudgetsで予算内であることを確認する。
+ *
+ * 予算は、一覧のキャッシュと2次キャッシュがミスした場合の回数とする。
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    /**
+     * SQLの実行回数の上限
+     *
+     * @return SQLの実行回数の上限
+     */
+    int value();
+
+}
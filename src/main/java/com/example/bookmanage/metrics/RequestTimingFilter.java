@@ -0,0 +1,197 @@
+package com.example.bookmanage.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * リクエストごとの実行時間の内訳を出力するFilter<br />
+ *
+ * リクエストの処理中にRequestTimingsを設定し、実行時間の内訳を以下に出力する。
+ * ・Server-Timingヘッダ(ブラウザの開発者ツールで参照する)。ヘッダはレスポンスの確定前にしか設定できないため、
+ *   本文の出力を開始した時点(画面の場合は描画の完了時点)の内訳を設定する。
+ * ・アクセスログ(key=value形式、1リクエスト1行)。本文の出力の完了後の内訳を出力する。
+ */
+@Slf4j
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    /**
+     * Server-Timingヘッダ
+     */
+    static final String SERVER_TIMING = "Server-Timing";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestTimings timings = RequestTimings.start();
+        request.setAttribute(RequestTimings.ATTRIBUTE, timings);
+        ServerTimingResponse timingResponse = new ServerTimingResponse(response, timings);
+        try {
+            filterChain.doFilter(request, timingResponse);
+        } finally {
+            RequestTimings.end();
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AccessLogListener(request, timingResponse, timings));
+            } else {
+                accessLog(request, timingResponse, timings);
+            }
+        }
+    }
+
+    /**
+     * アクセスログを出力する。
+     *
+     * @param request リクエスト
+     * @param response レスポンス
+     * @param timings 実行時間の内訳
+     */
+    private static void accessLog(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        log.info("method={} uri={} status={} {}", request.getMethod(), request.getRequestURI(),
+                response.getStatus(), timings.toLogFields());
+    }
+
+    /**
+     * 本文の出力を開始する時点でServer-Timingヘッダを設定するレスポンス
+     */
+    private static class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        /**
+         * 実行時間の内訳
+         */
+        private final RequestTimings timings;
+
+        /**
+         * Server-Timingヘッダを設定済みか否か
+         */
+        private boolean headerWritten;
+
+        /**
+         * コンストラクタ
+         *
+         * @param response レスポンス
+         * @param timings 実行時間の内訳
+         */
+        ServerTimingResponse(HttpServletResponse response, RequestTimings timings) {
+            super(response);
+            this.timings = timings;
+        }
+
+        /**
+         * Server-Timingヘッダを設定する(レスポンスの確定前に1回のみ)。
+         */
+        private void writeHeader() {
+            if (!headerWritten && !isCommitted()) {
+                setHeader(SERVER_TIMING, timings.toServerTiming());
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+    }
+
+    /**
+     * 非同期処理の完了時にアクセスログを出力するAsyncListener
+     */
+    private static class AccessLogListener implements AsyncListener {
+
+        /**
+         * リクエスト
+         */
+        private final HttpServletRequest request;
+
+        /**
+         * レスポンス
+         */
+        private final HttpServletResponse response;
+
+        /**
+         * 実行時間の内訳
+         */
+        private final RequestTimings timings;
+
+        /**
+         * コンストラクタ
+         *
+         * @param request リクエスト
+         * @param response レスポンス
+         * @param timings 実行時間の内訳
+         */
+        AccessLogListener(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+            this.request = request;
+            this.response = response;
+            this.timings = timings;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            accessLog(request, response, timings);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // 完了時に出力する
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // 完了時に出力する
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.bookmanage.metrics;
+
+import java.security.Principal;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 画面描画の実行時間を計測するHandlerInterceptor<br />
+ *
+ * コントローラの処理の完了後(postHandle)から、画面描画の完了後(afterCompletion)までを画面描画の実行時間とする。
+ * RequestTimingFilterは認証より前に実行されるため、アクセスログのログインユーザ名もここで設定する。
+ * また、コントローラのメソッドに@QueryBudgetが指定されている場合、SQLの実行回数が予算を超えていれば警告ログを出力する。
+ */
+@Slf4j
+public class RequestTimingInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestTimings timings = RequestTimings.current();
+        Principal principal = request.getUserPrincipal();
+        if (timings != null && principal != null) {
+            timings.setUser(principal.getName());
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+            ModelAndView modelAndView) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null && modelAndView != null) {
+            timings.startRender();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.endRender();
+            checkQueryBudget(request, handler, timings);
+        }
+    }
+
+    /**
+     * SQLの実行回数がコントローラのメソッドのクエリ予算を超えている場合、警告ログを出力する。
+     *
+     * @param request リクエスト
+     * @param handler ハンドラ
+     * @param timings 実行時間の内訳
+     */
+    private void checkQueryBudget(HttpServletRequest request, Object handler, RequestTimings timings) {
+        if (!(handler instanceof HandlerMethod)) {
+            return;
+        }
+        QueryBudget budget = ((HandlerMethod) handler).getMethodAnnotation(QueryBudget.class);
+        if (budget != null && timings.getDbCount() > budget.value()) {
+            log.warn("query budget exceeded : {} {} ({} queries, budget {})", request.getMethod(),
+                    request.getRequestURI(), timings.getDbCount(), budget.value());
+        }
+    }
+
+}
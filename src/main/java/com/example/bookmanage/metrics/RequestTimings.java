@@ -0,0 +1,207 @@
+package com.example.bookmanage.metrics;
+
+import java.util.Locale;
+
+/**
+ * 1リクエスト分の実行時間の内訳<br />
+ *
+ * RequestTimingFilterがリクエストの開始時にスレッドへ設定し、
+ * DB(TimedDataSource)、サービス(BookManageAspect)、画面描画(RequestTimingInterceptor)の実行時間を加算する。
+ * リクエストを処理しているスレッド以外(非同期処理や定期実行)では設定されないため、加算しない。
+ *
+ * 各項目は重複して計測している(サービスの実行時間はDBの実行時間を含む)。
+ */
+public class RequestTimings {
+
+    /**
+     * 処理を終えたリクエストの実行時間を保持するリクエスト属性の名前
+     */
+    public static final String ATTRIBUTE = RequestTimings.class.getName();
+
+    /**
+     * 処理中のリクエストの実行時間
+     */
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 1ミリ秒のナノ秒
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * リクエストの開始時刻(ナノ秒)
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * ログインユーザ名(認証前のリクエストではnull)
+     */
+    private String user;
+
+    /**
+     * SQLの実行回数
+     */
+    private int dbCount;
+
+    /**
+     * SQLの実行時間(ナノ秒)
+     */
+    private long dbNanos;
+
+    /**
+     * 実行中のサービスの呼び出しの深さ(サービスから別のサービスを呼び出した場合に重複して加算しないため)
+     */
+    private int serviceDepth;
+
+    /**
+     * サービスの実行時間(ナノ秒)
+     */
+    private long serviceNanos;
+
+    /**
+     * 画面描画の開始時刻(ナノ秒、描画していない場合は0)
+     */
+    private long renderStartNanos;
+
+    /**
+     * 画面描画の実行時間(ナノ秒)
+     */
+    private long renderNanos;
+
+    /**
+     * 処理中のリクエストの実行時間の計測を開始する。
+     *
+     * @return 処理中のリクエストの実行時間
+     */
+    static RequestTimings start() {
+        RequestTimings timings = new RequestTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * 処理中のリクエストの実行時間の計測を終了する。
+     */
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 処理中のリクエストの実行時間を返却する。
+     *
+     * @return 処理中のリクエストの実行時間(リクエストの処理中でない場合はnull)
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * ログインユーザ名を設定する。
+     *
+     * @param user ログインユーザ名
+     */
+    void setUser(String user) {
+        this.user = user;
+    }
+
+    /**
+     * SQLの実行回数を返却する。
+     *
+     * @return SQLの実行回数
+     */
+    public int getDbCount() {
+        return dbCount;
+    }
+
+    /**
+     * SQLの実行時間を加算する。
+     *
+     * @param nanos 実行時間(ナノ秒)
+     */
+    void addDb(long nanos) {
+        dbCount++;
+        dbNanos += nanos;
+    }
+
+    /**
+     * サービスの呼び出しを開始する。
+     */
+    public void enterService() {
+        serviceDepth++;
+    }
+
+    /**
+     * サービスの呼び出しを終了する。最も外側の呼び出しの場合のみ実行時間を加算する。
+     *
+     * @param nanos 実行時間(ナノ秒)
+     */
+    public void exitService(long nanos) {
+        if (--serviceDepth == 0) {
+            serviceNanos += nanos;
+        }
+    }
+
+    /**
+     * 画面描画を開始する。
+     */
+    void startRender() {
+        renderStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 画面描画を終了する。
+     */
+    void endRender() {
+        if (renderStartNanos != 0) {
+            renderNanos += System.nanoTime() - renderStartNanos;
+            renderStartNanos = 0;
+        }
+    }
+
+    /**
+     * 実行時間の内訳をServer-Timingヘッダの形式で返却する。<br />
+     * 描画中の場合、描画の実行時間は現時点までの時間とする。
+     *
+     * @return Server-Timingヘッダの値
+     */
+    public String toServerTiming() {
+        long now = System.nanoTime();
+        return String.format(Locale.ROOT,
+                "db;dur=%.3f;desc=\"%d queries\", service;dur=%.3f, render;dur=%.3f, total;dur=%.3f",
+                millis(dbNanos), dbCount, millis(serviceNanos), millis(renderNanos(now)), millis(now - startNanos));
+    }
+
+    /**
+     * 実行時間の内訳をアクセスログの形式(key=value)で返却する。
+     *
+     * @return アクセスログの実行時間の内訳
+     */
+    public String toLogFields() {
+        long now = System.nanoTime();
+        return String.format(Locale.ROOT,
+                "user=%s total_ms=%.3f db_ms=%.3f db_count=%d service_ms=%.3f render_ms=%.3f",
+                user == null ? "-" : user, millis(now - startNanos), millis(dbNanos), dbCount,
+                millis(serviceNanos), millis(renderNanos(now)));
+    }
+
+    /**
+     * 描画中の時間を含めた画面描画の実行時間を返却する。
+     *
+     * @param now 現在時刻(ナノ秒)
+     * @return 画面描画の実行時間(ナノ秒)
+     */
+    private long renderNanos(long now) {
+        return renderStartNanos == 0 ? renderNanos : renderNanos + now - renderStartNanos;
+    }
+
+    /**
+     * ナノ秒をミリ秒に変換する。
+     *
+     * @param nanos ナノ秒
+     * @return ミリ秒
+     */
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+}
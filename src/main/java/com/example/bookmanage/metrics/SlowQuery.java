@@ -0,0 +1,71 @@
+package com.example.bookmanage.metrics;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * 実行時間がしきい値を超えたSQL<br />
+ * 実行計画(EXPLAIN)は記録後に非同期で取得するため、取得するまではnullになる。
+ */
+@Getter
+public class SlowQuery {
+
+    /**
+     * 実行日時
+     */
+    private final LocalDateTime executedAt;
+
+    /**
+     * 実行時間(ミリ秒)
+     */
+    private final double millis;
+
+    /**
+     * SQL
+     */
+    private final String sql;
+
+    /**
+     * バインドパラメータ(文字列表現、インデックス順)
+     */
+    private final List<String> parameters;
+
+    /**
+     * 呼び出し元(リポジトリのメソッドと、それを呼び出したクラスのメソッド)
+     */
+    private final String caller;
+
+    /**
+     * 実行計画
+     */
+    private volatile String plan;
+
+    /**
+     * コンストラクタ
+     *
+     * @param executedAt 実行日時
+     * @param millis 実行時間(ミリ秒)
+     * @param sql SQL
+     * @param parameters バインドパラメータ
+     * @param caller 呼び出し元
+     */
+    SlowQuery(LocalDateTime executedAt, double millis, String sql, List<String> parameters, String caller) {
+        this.executedAt = executedAt;
+        this.millis = millis;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.caller = caller;
+    }
+
+    /**
+     * 実行計画を設定する。
+     *
+     * @param plan 実行計画
+     */
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+}
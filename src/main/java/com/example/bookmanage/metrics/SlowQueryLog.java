@@ -0,0 +1,244 @@
+package com.example.bookmanage.metrics;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 実行時間がしきい値を超えたSQLの記録<br />
+ *
+ * TimedDataSourceが、しきい値を超えたSQLをバインドパラメータと呼び出し元とともに記録する。
+ * 記録は件数を固定したリングバッファに保持し、古いものから上書きする。管理者用画面で参照する。
+ * 実行計画(EXPLAIN)は1スレッドで非同期に取得する。取得待ちが溢れた場合、実行計画は取得しない。
+ *
+ * bookmanage.slow-query.thresholdにしきい値(デフォルト100ms、負の値で無効)、
+ * bookmanage.slow-query.capacityに保持する件数(デフォルト50件)、
+ * bookmanage.slow-query.explainに実行計画を取得するか否か(デフォルトtrue)を設定する。
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    /**
+     * 画面に表示するバインドパラメータの最大文字数
+     */
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    /**
+     * しきい値(ナノ秒、負の値の場合は記録しない)
+     */
+    private final long thresholdNanos;
+
+    /**
+     * 実行計画を取得するか否か
+     */
+    private final boolean explain;
+
+    /**
+     * 記録したSQL(リングバッファ)
+     */
+    private final SlowQuery[] entries;
+
+    /**
+     * 次に記録する位置
+     */
+    private int next;
+
+    /**
+     * 記録または実行計画の取得のたびに増えるバージョン(管理者用画面のETagに使用する)
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 実行計画を取得するExecutor
+     */
+    private final ThreadPoolExecutor explainExecutor;
+
+    /**
+     * コンストラクタ
+     *
+     * @param threshold しきい値(負の値の場合は記録しない)
+     * @param capacity 保持する件数
+     * @param explain 実行計画を取得するか否か
+     */
+    @Autowired
+    public SlowQueryLog(@Value("${bookmanage.slow-query.threshold:100ms}") Duration threshold,
+            @Value("${bookmanage.slow-query.capacity:50}") int capacity,
+            @Value("${bookmanage.slow-query.explain:true}") boolean explain) {
+        this.thresholdNanos = threshold.toNanos();
+        this.explain = explain;
+        this.entries = new SlowQuery[capacity];
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), new CustomizableThreadFactory("slow-query-explain-"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * 記録するか否かを判定する。
+     *
+     * @param nanos 実行時間(ナノ秒)
+     * @return しきい値以上の場合true
+     */
+    boolean isSlow(long nanos) {
+        return thresholdNanos >= 0 && nanos >= thresholdNanos;
+    }
+
+    /**
+     * 実行時間がしきい値を超えたSQLを記録し、実行計画の取得を開始する。
+     *
+     * @param sql SQL
+     * @param parameters バインドパラメータ(インデックス順)
+     * @param nanos 実行時間(ナノ秒)
+     * @param caller 呼び出し元
+     * @param dataSource 実行計画の取得に使用するDataSource
+     */
+    void record(String sql, List<Object> parameters, long nanos, String caller, DataSource dataSource) {
+        List<String> displayParameters = new ArrayList<>(parameters.size());
+        for (Object parameter : parameters) {
+            displayParameters.add(display(parameter));
+        }
+        SlowQuery entry = new SlowQuery(LocalDateTime.now(), nanos / 1_000_000.0, sql,
+                Collections.unmodifiableList(displayParameters), caller);
+        synchronized (entries) {
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+        }
+        version.incrementAndGet();
+        log.warn("slow query : {} ms, {} [{}] ({})", String.format(Locale.ROOT, "%.3f", entry.getMillis()), sql,
+                String.join(", ", displayParameters), caller);
+
+        if (explain && isExplainable(sql, parameters)) {
+            explainExecutor.execute(() -> {
+                entry.setPlan(explain(sql, parameters, dataSource));
+                version.incrementAndGet();
+            });
+        }
+    }
+
+    /**
+     * 記録したSQLを新しい順に返却する。
+     *
+     * @return 記録したSQL
+     */
+    public List<SlowQuery> entries() {
+        List<SlowQuery> result = new ArrayList<>(entries.length);
+        synchronized (entries) {
+            for (int i = 1; i <= entries.length; i++) {
+                SlowQuery entry = entries[(next - i + entries.length) % entries.length];
+                if (entry == null) {
+                    break;
+                }
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 記録のバージョンを返却する。
+     *
+     * @return 記録または実行計画の取得のたびに増えるバージョン
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 実行計画を取得するExecutorを停止する。
+     */
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+
+    /**
+     * 実行計画を取得できるSQLか否かを判定する。<br />
+     * 採番などのSQLと、ストリームをバインドしたSQLは対象外とする。
+     *
+     * @param sql SQL
+     * @param parameters バインドパラメータ
+     * @return 実行計画を取得できる場合true
+     */
+    private static boolean isExplainable(String sql, List<Object> parameters) {
+        String head = sql.trim().toLowerCase(Locale.ROOT);
+        if (!(head.startsWith("select") || head.startsWith("with") || head.startsWith("insert")
+                || head.startsWith("update") || head.startsWith("delete"))) {
+            return false;
+        }
+        for (Object parameter : parameters) {
+            if (parameter instanceof InputStream || parameter instanceof Reader) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 同じバインドパラメータで実行計画を取得する(EXPLAINはSQLを実行しない)。
+     *
+     * @param sql SQL
+     * @param parameters バインドパラメータ
+     * @param dataSource DataSource
+     * @return 実行計画(取得に失敗した場合はエラーメッセージ)
+     */
+    private static String explain(String sql, List<Object> parameters, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            StringJoiner plan = new StringJoiner("\n");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString(1));
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            log.debug("explain failed : " + sql, e);
+            return "EXPLAIN failed : " + e.getMessage();
+        }
+    }
+
+    /**
+     * バインドパラメータの表示用の文字列を返却する。
+     *
+     * @param parameter バインドパラメータ
+     * @return 表示用の文字列
+     */
+    private static String display(Object parameter) {
+        if (parameter == null) {
+            return "null";
+        }
+        if (parameter instanceof InputStream || parameter instanceof Reader) {
+            return "<stream>";
+        }
+        String value = parameter instanceof String ? "'" + parameter + "'" : String.valueOf(parameter);
+        return value.length() > MAX_PARAMETER_LENGTH ? value.substring(0, MAX_PARAMETER_LENGTH) + "..." : value;
+    }
+
+}
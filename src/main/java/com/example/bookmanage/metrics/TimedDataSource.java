@@ -0,0 +1,325 @@
+package com.example.bookmanage.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * SQLの実行時間を計測するDataSource<br />
+ *
+ * 取得したConnectionと、Connectionから作成したStatementをプロキシで包み、Statementのexecute系メソッドの実行時間を計測する。
+ * 実行時間は処理中のリクエストのRequestTimingsに加算する(リクエストの処理中でない場合は加算しない)。
+ * また、実行時間がしきい値を超えたSQLは、バインドパラメータと呼び出し元とともにSlowQueryLogに記録する。
+ */
+public class TimedDataSource extends DelegatingDataSource {
+
+    /**
+     * アプリケーションのパッケージ
+     */
+    private static final String APP_PACKAGE = "com.example.bookmanage.";
+
+    /**
+     * このクラスの名前(呼び出し元から除く)
+     */
+    private static final String SELF = TimedDataSource.class.getName();
+
+    /**
+     * リポジトリのパッケージ
+     */
+    private static final String REPOSITORY_PACKAGE = APP_PACKAGE + "repository.";
+
+    /**
+     * Spring Dataのパッケージ(この後に呼ばれるプロキシがリポジトリのインタフェース)
+     */
+    private static final String SPRING_DATA_PACKAGE = "org.springframework.data.";
+
+    /**
+     * SQLの記録(取得するまでDataSourceの初期化を待たないよう、最初に記録する時に取得する)
+     */
+    private final Supplier<SlowQueryLog> slowQueryLogSupplier;
+
+    /**
+     * 取得済みのSQLの記録
+     */
+    private volatile SlowQueryLog slowQueryLog;
+
+    /**
+     * コンストラクタ
+     *
+     * @param targetDataSource 委譲先のDataSource
+     * @param slowQueryLogSupplier 実行時間がしきい値を超えたSQLの記録(記録しない場合はnullを返却する)
+     */
+    public TimedDataSource(DataSource targetDataSource, Supplier<SlowQueryLog> slowQueryLogSupplier) {
+        super(targetDataSource);
+        this.slowQueryLogSupplier = slowQueryLogSupplier;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class,
+                new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+    }
+
+    /**
+     * 実行時間がしきい値を超えたSQLの記録を返却する。
+     *
+     * @return SQLの記録(記録しない場合はnull)
+     */
+    private SlowQueryLog slowQueryLog() {
+        SlowQueryLog log = slowQueryLog;
+        if (log == null) {
+            log = slowQueryLogSupplier.get();
+            slowQueryLog = log;
+        }
+        return log;
+    }
+
+    /**
+     * JDBCのオブジェクトをプロキシで包む。
+     *
+     * @param <T> JDBCのインタフェース
+     * @param type JDBCのインタフェース
+     * @param handler プロキシの処理
+     * @return プロキシ
+     */
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(TimedDataSource.class.getClassLoader(), new Class<?>[] { type },
+                handler));
+    }
+
+    /**
+     * 委譲先のメソッドを実行する。Object#equalsとObject#hashCodeはプロキシで判定する。<br />
+     * Hibernateは作成したStatementをMapで管理するため、同一性は委譲先ではなくプロキシで判定する必要がある。
+     *
+     * @param target 委譲先
+     * @param proxy プロキシ
+     * @param method メソッド
+     * @param args 引数
+     * @return 戻り値
+     * @throws Throwable 委譲先で発生した例外
+     */
+    private static Object invoke(Object target, Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+        case "equals":
+            return proxy == args[0];
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        default:
+            break;
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * SQLを実行したアプリケーションのメソッドを、スタックトレースから求める。<br />
+     * リポジトリを経由した場合、「リポジトリのメソッド <- 呼び出し元のメソッド」とする。
+     *
+     * @return 呼び出し元
+     */
+    static String caller() {
+        String repository = null;
+        boolean inSpringData = false;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith(APP_PACKAGE)) {
+                if (className.startsWith(SELF)) {
+                    continue;
+                }
+                String method = simpleName(className) + "." + frame.getMethodName();
+                if (className.startsWith(REPOSITORY_PACKAGE)) {
+                    repository = repository == null ? method : repository;
+                    continue;
+                }
+                return repository == null ? method : repository + " <- " + method;
+            }
+            if (className.startsWith(SPRING_DATA_PACKAGE)) {
+                inSpringData = true;
+            } else if (inSpringData && repository == null && className.contains("$Proxy")
+                    && Proxy.class.getName().equals(superclassName(className))) {
+                repository = repositoryName(className) + "." + frame.getMethodName();
+            }
+        }
+        return repository == null ? "-" : repository;
+    }
+
+    /**
+     * パッケージと、CGLIBなどで生成したクラスの接尾辞を除いたクラス名を返却する。
+     *
+     * @param className クラス名
+     * @return クラス名
+     */
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int generated = name.indexOf("$$");
+        return generated < 0 ? name : name.substring(0, generated);
+    }
+
+    /**
+     * クラスのスーパークラスの名前を返却する。
+     *
+     * @param className クラス名
+     * @return スーパークラスの名前(クラスが読み込めない場合はnull)
+     */
+    private static String superclassName(String className) {
+        try {
+            Class<?> superclass = Class.forName(className, false, TimedDataSource.class.getClassLoader())
+                    .getSuperclass();
+            return superclass == null ? null : superclass.getName();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * リポジトリのプロキシクラスから、リポジトリのインタフェース名を返却する。
+     *
+     * @param className プロキシのクラス名
+     * @return リポジトリのインタフェース名
+     */
+    private static String repositoryName(String className) {
+        try {
+            Class<?>[] interfaces = Class.forName(className, false, TimedDataSource.class.getClassLoader())
+                    .getInterfaces();
+            return interfaces.length == 0 ? "Repository" : interfaces[0].getSimpleName();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return "Repository";
+        }
+    }
+
+    /**
+     * Connectionのプロキシの処理(作成したStatementをプロキシで包む)
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        /**
+         * 委譲先
+         */
+        private final Connection target;
+
+        /**
+         * コンストラクタ
+         *
+         * @param target 委譲先
+         */
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TimedDataSource.invoke(target, proxy, method, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+            // prepareStatement、prepareCallは第1引数がSQL
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            StatementHandler handler = new StatementHandler((Statement) result, sql);
+            if (result instanceof CallableStatement) {
+                return proxy(CallableStatement.class, handler);
+            }
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, handler);
+            }
+            return proxy(Statement.class, handler);
+        }
+
+    }
+
+    /**
+     * Statementのプロキシの処理(execute系メソッドの実行時間を計測する)
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        /**
+         * 委譲先
+         */
+        private final Statement target;
+
+        /**
+         * PreparedStatementのSQL(Statementの場合はnull)
+         */
+        private final String sql;
+
+        /**
+         * バインドパラメータ(インデックス順)
+         */
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        /**
+         * コンストラクタ
+         *
+         * @param target 委譲先
+         * @param sql PreparedStatementのSQL
+         */
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                bind(name, args);
+                return TimedDataSource.invoke(target, proxy, method, args);
+            }
+
+            long start = System.nanoTime();
+            try {
+                return TimedDataSource.invoke(target, proxy, method, args);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                RequestTimings timings = RequestTimings.current();
+                if (timings != null) {
+                    timings.addDb(nanos);
+                }
+                SlowQueryLog slowQueryLog = slowQueryLog();
+                if (slowQueryLog != null && slowQueryLog.isSlow(nanos)) {
+                    // Statementの場合は第1引数がSQL
+                    String executed = sql != null ? sql : args != null && args.length > 0 ? (String) args[0] : "";
+                    slowQueryLog.record(executed, new ArrayList<>(parameters.values()), nanos, caller(),
+                            obtainTargetDataSource());
+                }
+            }
+        }
+
+        /**
+         * バインドパラメータの設定(setXxx(インデックス, 値, ...))を記録する。
+         *
+         * @param name メソッド名
+         * @param args 引数
+         */
+        private void bind(String name, Object[] args) {
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                parameters.clear();
+            }
+        }
+
+    }
+
+}
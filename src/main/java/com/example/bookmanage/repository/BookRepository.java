@@ -1,14 +1,243 @@
 package com.example.bookmanage.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookSummary;
 
 /**
- * 書籍のリポジトリ
+ * 書籍のリポジトリ<br />
+ * 
+ * 一覧はキーセットページングで取得する。
+ * 起点となる書籍の(ソート項目, ID)より後(前)の書籍を、Pageableで指定した件数だけ取得する。
+ * 前ページの取得は降順で行うため、呼び出し元で並び順を戻す必要がある。<br />
+ * 一覧の取得結果は、表示する項目のみをBookSummaryで返却する。
  */
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    /**
+     * 一覧の取得で使用するコンストラクタ式
+     */
+    String SUMMARY = "new com.example.bookmanage.domain.BookSummary(b.id, b.title, b.author, b.version)";
+
+    /**
+     * 一括操作で使用する作成日時の範囲の条件(開始を含み、終了を含まない)
+     */
+    String CREATED_BETWEEN = " AND b.createdDateTime >= :createdFrom AND b.createdDateTime < :createdTo";
+
+    /**
+     * IDの昇順で先頭ページを取得する。
+     *
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b ORDER BY b.id ASC")
+    List<BookSummary> findPageOrderById(Pageable pageable);
+
+    /**
+     * IDの昇順で、指定したIDより後のページを取得する。
+     *
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.id > :id ORDER BY b.id ASC")
+    List<BookSummary> findPageAfterId(@Param("id") long id, Pageable pageable);
+
+    /**
+     * IDの降順で、指定したIDより前のページを取得する。
+     *
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧(降順)
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.id < :id ORDER BY b.id DESC")
+    List<BookSummary> findPageBeforeId(@Param("id") long id, Pageable pageable);
+
+    /**
+     * タイトルの昇順で先頭ページを取得する。
+     *
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b ORDER BY b.title ASC, b.id ASC")
+    List<BookSummary> findPageOrderByTitle(Pageable pageable);
+
+    /**
+     * タイトルの昇順で、指定した(タイトル, ID)より後のページを取得する。
+     *
+     * @param title 起点となる書籍のタイトル
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.title > :title OR (b.title = :title AND b.id > :id)"
+            + " ORDER BY b.title ASC, b.id ASC")
+    List<BookSummary> findPageAfterTitle(@Param("title") String title, @Param("id") long id, Pageable pageable);
+
+    /**
+     * タイトルの降順で、指定した(タイトル, ID)より前のページを取得する。
+     *
+     * @param title 起点となる書籍のタイトル
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧(降順)
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.title < :title OR (b.title = :title AND b.id < :id)"
+            + " ORDER BY b.title DESC, b.id DESC")
+    List<BookSummary> findPageBeforeTitle(@Param("title") String title, @Param("id") long id, Pageable pageable);
+
+    /**
+     * 著者の昇順で先頭ページを取得する。
+     *
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b ORDER BY b.author ASC, b.id ASC")
+    List<BookSummary> findPageOrderByAuthor(Pageable pageable);
+
+    /**
+     * 著者の昇順で、指定した(著者, ID)より後のページを取得する。
+     *
+     * @param author 起点となる書籍の著者
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.author > :author OR (b.author = :author AND b.id > :id)"
+            + " ORDER BY b.author ASC, b.id ASC")
+    List<BookSummary> findPageAfterAuthor(@Param("author") String author, @Param("id") long id, Pageable pageable);
+
+    /**
+     * 著者の降順で、指定した(著者, ID)より前のページを取得する。
+     *
+     * @param author 起点となる書籍の著者
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧(降順)
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.author < :author OR (b.author = :author AND b.id < :id)"
+            + " ORDER BY b.author DESC, b.id DESC")
+    List<BookSummary> findPageBeforeAuthor(@Param("author") String author, @Param("id") long id, Pageable pageable);
+
+    /**
+     * 指定したIDの書籍のバージョンを取得する。<br />
+     * 書籍の行は読み込まず、ETagの作成に使用する。
+     *
+     * @param id 書籍のID
+     * @return バージョン(書籍が存在しない場合、空)
+     */
+    @Query("SELECT b.version FROM Book b WHERE b.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    /**
+     * 全件をIDの昇順で逐次取得する。<br />
+     * JDBCのフェッチサイズ単位で読み込むため、全件をメモリに保持しない。
+     * 全件の読み込みで2次キャッシュの書籍が入れ替わらないよう、2次キャッシュは参照・登録しない。
+     * (Hibernateはヒントのキャッシュモードを逐次取得の開始時にしか適用しないため、
+     * 取得中もセッションのキャッシュモードをIGNOREにすること)
+     * トランザクション内で使用し、使用後はStreamをクローズすること。
+     *
+     * @return 書籍のStream
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id ASC")
+    Stream<Book> streamAllOrderById();
+
+    /**
+     * 全件の一覧表示用の項目をIDの昇順で逐次取得する。<br />
+     * トランザクション内で使用し、使用後はStreamをクローズすること。
+     *
+     * @return 書籍のStream
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT " + SUMMARY + " FROM Book b ORDER BY b.id ASC")
+    Stream<BookSummary> streamSummariesOrderById();
+
+    /**
+     * 指定したIDの書籍の一覧表示用の項目を取得する。<br />
+     * 並び順は保証しない。
+     *
+     * @param ids 書籍のID
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 検索用のトークンをすべて含む書籍を、IDの昇順で取得する。<br />
+     * トークンのインデックスで該当する書籍を絞り込むため、行ごとの文字列の評価は行わない。
+     *
+     * @param tokens 検索用のトークン(BookTextNormalizerで生成したもの)
+     * @param count トークンの件数
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.id IN ("
+            + "SELECT t.id FROM Book t JOIN t.searchTokens s WHERE s IN :tokens GROUP BY t.id HAVING COUNT(s) = :count"
+            + ") ORDER BY b.id ASC")
+    List<BookSummary> findPageByTokens(@Param("tokens") Collection<String> tokens, @Param("count") long count,
+            Pageable pageable);
+
+    /**
+     * 指定したIDのうち、存在する書籍のIDを取得する。
+     *
+     * @param ids 書籍のID
+     * @return 存在する書籍のID
+     */
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 著者と作成日時の範囲に該当する書籍の一覧表示用の項目を、行ロック(SELECT ... FOR UPDATE)を取得して取得する。<br />
+     * 取得した書籍はコミットまで他のトランザクションから変更されないため、IDを指定して一括変更できる。
+     *
+     * @param author 著者
+     * @param createdFrom 作成日時の範囲の開始(含む)
+     * @param createdTo 作成日時の範囲の終了(含まない)
+     * @return 書籍の一覧
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT " + SUMMARY + " FROM Book b WHERE b.author = :author" + CREATED_BETWEEN)
+    List<BookSummary> findSummariesByAuthor(@Param("author") String author,
+            @Param("createdFrom") LocalDateTime createdFrom, @Param("createdTo") LocalDateTime createdTo);
+
+    /**
+     * 作成ユーザと作成日時の範囲に該当する書籍のIDを、行ロック(SELECT ... FOR UPDATE)を取得して取得する。<br />
+     * 取得した書籍はコミットまで他のトランザクションから変更されないため、IDを指定して一括削除できる。
+     *
+     * @param createdUser 作成ユーザ
+     * @param createdFrom 作成日時の範囲の開始(含む)
+     * @param createdTo 作成日時の範囲の終了(含まない)
+     * @return 書籍のID
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Book b WHERE b.createdUser = :createdUser" + CREATED_BETWEEN)
+    List<Long> findIdsByCreatedUser(@Param("createdUser") String createdUser,
+            @Param("createdFrom") LocalDateTime createdFrom, @Param("createdTo") LocalDateTime createdTo);
 
 }
@@ -0,0 +1,109 @@
+package com.example.bookmanage.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+import com.example.bookmanage.domain.Book;
+
+/**
+ * 書籍のリポジトリの独自の処理<br />
+ * 
+ * JPQLで扱えない検索用のトークンのテーブルを、SQLで直接更新する。
+ * エンティティを読み込まない書籍の更新・削除もSQLで行い、対象の書籍のみ2次キャッシュから破棄する。
+ */
+public interface BookRepositoryCustom {
+
+    /**
+     * バージョンが一致する場合のみ、書籍を1回のUPDATE文で更新し、バージョンを1つ進める。<br />
+     * エンティティを読み込まないため、更新日時・更新ユーザ・検索用の項目は引数の書籍に設定しておくこと。
+     * 検索用のトークンは更新しないため、replaceSearchTokensで置き換えること。<br />
+     * 2次キャッシュは更新した書籍のみ破棄する(JPQLの一括更新と異なり、リージョン"book"全体は破棄しない)。
+     *
+     * @param book 更新内容(ID・バージョンは更新前の値)
+     * @return 更新件数(存在しない場合とバージョンが異なる場合、0)
+     */
+    int updateIfVersionMatches(Book book);
+
+    /**
+     * 書籍を1回のDELETE文で削除する。<br />
+     * エンティティを読み込まないため、存在確認は削除件数で行う。
+     * 検索用のトークンは削除しないため、deleteSearchTokensで削除すること。<br />
+     * 2次キャッシュは削除した書籍のみ破棄する。
+     *
+     * @param id 書籍のID
+     * @return 削除件数(存在しない場合、0)
+     */
+    int deleteIfExists(long id);
+
+    /**
+     * バージョンが一致する場合のみ、書籍を1回のDELETE文で削除する。<br />
+     * 検索用のトークンは削除しないため、deleteSearchTokensで削除すること。<br />
+     * 2次キャッシュは削除した書籍のみ破棄する。
+     *
+     * @param id 書籍のID
+     * @param version バージョン
+     * @return 削除件数(存在しない場合とバージョンが異なる場合、0)
+     */
+    int deleteIfVersionMatches(long id, long version);
+
+    /**
+     * 指定したIDの書籍をIN句のDELETE文で削除する(IDが多い場合は分割する)。<br />
+     * 検索用のトークンは削除しないため、deleteSearchTokensで削除すること。<br />
+     * 2次キャッシュは指定した書籍のみ破棄する。
+     *
+     * @param ids 書籍のID
+     * @return 削除件数
+     */
+    int deleteIfExistsIn(Collection<Long> ids);
+
+    /**
+     * 指定したIDの書籍の著者を、IN句のUPDATE文で変更する(IDが多い場合は分割する)。<br />
+     * バージョンを1つ進め、更新日時・更新ユーザを設定する。
+     * 検索用のトークンは更新しないため、replaceSearchTokensで置き換えること。<br />
+     * 2次キャッシュは指定した書籍のみ破棄する。
+     *
+     * @param ids 書籍のID
+     * @param newAuthor 変更後の著者
+     * @param newAuthorSearch 変更後の検索用の著者(正規化済み)
+     * @param updatedUser 更新ユーザ
+     * @param updatedDateTime 更新日時
+     * @return 更新件数
+     */
+    int renameAuthorIn(Collection<Long> ids, String newAuthor, String newAuthorSearch, String updatedUser,
+            LocalDateTime updatedDateTime);
+
+    /**
+     * 指定した書籍の検索用のトークンを置き換える。<br />
+     * JPQLで書籍を一括更新した場合など、エンティティを経由せずに更新した場合に使用する。
+     *
+     * @param id 書籍のID
+     * @param tokens 検索用のトークン
+     */
+    void replaceSearchTokens(long id, Collection<String> tokens);
+
+    /**
+     * 複数の書籍の検索用のトークンをまとめて置き換える。<br />
+     * 削除・登録はそれぞれJDBCのバッチで発行する。
+     *
+     * @param tokens 書籍のIDごとの検索用のトークン
+     */
+    void replaceSearchTokens(Map<Long, ? extends Collection<String>> tokens);
+
+    /**
+     * 指定した書籍の検索用のトークンを削除する。<br />
+     * JPQLで書籍を削除した場合に使用する。
+     *
+     * @param id 書籍のID
+     */
+    void deleteSearchTokens(long id);
+
+    /**
+     * 指定した書籍の検索用のトークンをまとめて削除する。<br />
+     * 書籍ごとのDELETE文をJDBCのバッチで1回の往復にまとめる。
+     *
+     * @param ids 書籍のID
+     */
+    void deleteSearchTokens(Collection<Long> ids);
+
+}
@@ -0,0 +1,250 @@
+package com.example.bookmanage.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.bookmanage.domain.Book;
+
+/**
+ * 書籍のリポジトリの独自の処理の実装<br />
+ * 
+ * JPAのトランザクションと同じコネクションで、JdbcTemplateを使用して更新する。
+ * トークンの登録はJDBCのバッチで1回の往復にまとめる。<br />
+ * 書籍の更新・削除もJdbcTemplateで行う。JPQLの一括操作ではHibernateが2次キャッシュのリージョン"book"全体をロックするため、
+ * 同じ処理(BulkOperationCleanupAction)を更新・削除する書籍のみに対して行う。
+ * SQLの実行前に書籍ごとのエントリをソフトロックし、トランザクションの完了時に解除する。
+ * ロック中に読み込まれた変更前の書籍は、解除後もキャッシュに登録されない。
+ * 永続化コンテキストはフラッシュしないため、エンティティを変更したトランザクションでは使用しないこと。
+ */
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    /**
+     * バージョンが一致する場合のみ書籍を更新するSQL
+     */
+    private static final String UPDATE_IF_VERSION_MATCHES_SQL = "UPDATE book SET title = ?, author = ?,"
+            + " title_search = ?, author_search = ?, updated_user = ?, updated_date_time = ?, version = version + 1"
+            + " WHERE id = ? AND version = ?";
+
+    /**
+     * 書籍を削除するSQL
+     */
+    private static final String DELETE_SQL = "DELETE FROM book WHERE id = ?";
+
+    /**
+     * バージョンが一致する場合のみ書籍を削除するSQL
+     */
+    private static final String DELETE_IF_VERSION_MATCHES_SQL = "DELETE FROM book WHERE id = ? AND version = ?";
+
+    /**
+     * 指定したIDの書籍を削除するSQL(%sはIDのプレースホルダ)
+     */
+    private static final String DELETE_IN_SQL = "DELETE FROM book WHERE id IN (%s)";
+
+    /**
+     * 指定したIDの書籍の著者を変更するSQL(%sはIDのプレースホルダ)
+     */
+    private static final String RENAME_AUTHOR_IN_SQL = "UPDATE book SET author = ?, author_search = ?,"
+            + " updated_user = ?, updated_date_time = ?, version = version + 1 WHERE id IN (%s)";
+
+    /**
+     * トークンを削除するSQL
+     */
+    private static final String DELETE_TOKENS_SQL = "DELETE FROM book_search_token WHERE book_id = ?";
+
+    /**
+     * トークンを登録するSQL
+     */
+    private static final String INSERT_TOKEN_SQL = "INSERT INTO book_search_token (book_id, token) VALUES (?, ?)";
+
+    /**
+     * 複数の書籍のトークンをまとめて更新する場合のJDBCのバッチサイズ(IN句に指定するIDの最大件数も兼ねる)
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * JdbcTemplate
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 2次キャッシュをロックするためのEntityManagerFactory
+     */
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * コンストラクタ
+     *
+     * @param jdbcTemplate JdbcTemplate
+     * @param entityManagerFactory 2次キャッシュをロックするためのEntityManagerFactory
+     */
+    @Autowired
+    public BookRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public int updateIfVersionMatches(Book book) {
+        return withCacheLocks(Collections.singleton(book.getId()), book.getVersion(),
+                () -> jdbcTemplate.update(UPDATE_IF_VERSION_MATCHES_SQL, book.getTitle(), book.getAuthor(),
+                        book.getTitleSearch(), book.getAuthorSearch(), book.getUpdatedUser(),
+                        Timestamp.valueOf(book.getUpdatedDateTime()), book.getId(), book.getVersion()));
+    }
+
+    @Override
+    public int deleteIfExists(long id) {
+        return withCacheLocks(Collections.singleton(id), null, () -> jdbcTemplate.update(DELETE_SQL, id));
+    }
+
+    @Override
+    public int deleteIfVersionMatches(long id, long version) {
+        return withCacheLocks(Collections.singleton(id), version,
+                () -> jdbcTemplate.update(DELETE_IF_VERSION_MATCHES_SQL, id, version));
+    }
+
+    @Override
+    public int deleteIfExistsIn(Collection<Long> ids) {
+        return withCacheLocks(ids, null, () -> updateIn(DELETE_IN_SQL, Collections.emptyList(), ids));
+    }
+
+    @Override
+    public int renameAuthorIn(Collection<Long> ids, String newAuthor, String newAuthorSearch, String updatedUser,
+            LocalDateTime updatedDateTime) {
+        return withCacheLocks(ids, null, () -> updateIn(RENAME_AUTHOR_IN_SQL,
+                Arrays.asList(newAuthor, newAuthorSearch, updatedUser, Timestamp.valueOf(updatedDateTime)), ids));
+    }
+
+    @Override
+    public void replaceSearchTokens(long id, Collection<String> tokens) {
+        deleteSearchTokens(id);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_TOKEN_SQL, new ArrayList<>(tokens), tokens.size(), (ps, token) -> {
+            ps.setLong(1, id);
+            ps.setString(2, token);
+        });
+    }
+
+    @Override
+    public void replaceSearchTokens(Map<Long, ? extends Collection<String>> tokens) {
+        deleteSearchTokens(tokens.keySet());
+        List<Object[]> rows = new ArrayList<>();
+        tokens.forEach((id, values) -> values.forEach(token -> rows.add(new Object[] { id, token })));
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_TOKEN_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, (Long) row[0]);
+            ps.setString(2, (String) row[1]);
+        });
+    }
+
+    @Override
+    public void deleteSearchTokens(long id) {
+        jdbcTemplate.update(DELETE_TOKENS_SQL, id);
+    }
+
+    @Override
+    public void deleteSearchTokens(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_TOKENS_SQL, new ArrayList<>(ids), BATCH_SIZE,
+                (ps, id) -> ps.setLong(1, id));
+    }
+
+    /**
+     * IN句にIDを指定したSQLを、BATCH_SIZE件ずつに分割して実行する。
+     *
+     * @param sql SQL(%sはIDのプレースホルダに置き換える)
+     * @param args IDより前のパラメータ
+     * @param ids 書籍のID
+     * @return 更新件数の合計
+     */
+    private int updateIn(String sql, List<Object> args, Collection<Long> ids) {
+        List<Long> list = new ArrayList<>(ids);
+        int count = 0;
+        for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+            List<Long> chunk = list.subList(from, Math.min(from + BATCH_SIZE, list.size()));
+            List<Object> params = new ArrayList<>(args);
+            params.addAll(chunk);
+            count += jdbcTemplate.update(String.format(sql, String.join(", ", Collections.nCopies(chunk.size(), "?"))),
+                    params.toArray());
+        }
+        return count;
+    }
+
+    /**
+     * 書籍の2次キャッシュのエントリをソフトロックして、更新・削除のSQLを実行する。<br />
+     * ロックは既存のエントリを置き換えるため、SQLの実行後は変更前の書籍がキャッシュから返却されない。
+     * ロックはトランザクションの完了時(コミット・ロールバックとも)に解除し、
+     * 解除前に読み込みを開始したトランザクションの書籍はキャッシュに登録されない。
+     * トランザクション外で呼び出された場合は、一時的なセッションでロックし、SQLの実行後すぐに解除する。
+     *
+     * @param ids 書籍のID
+     * @param version 変更前のバージョン(不明な場合はnull)
+     * @param statement 更新・削除のSQLを実行する処理
+     * @return 更新件数
+     */
+    private int withCacheLocks(Collection<Long> ids, Object version, IntSupplier statement) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Book.class);
+        if (!persister.canWriteToCache()) {
+            return statement.getAsInt();
+        }
+        EntityDataAccess access = persister.getCacheAccessStrategy();
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        SharedSessionContractImplementor session = entityManager != null
+                ? entityManager.unwrap(SharedSessionContractImplementor.class)
+                : (SharedSessionContractImplementor) sessionFactory.openTemporarySession();
+
+        Map<Object, SoftLock> locks = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Object key = access.generateCacheKey(id, persister, sessionFactory, session.getTenantIdentifier());
+            locks.put(key, access.lockItem(session, key, version));
+        }
+        Runnable unlock = () -> locks.forEach((key, lock) -> access.unlockItem(session, key, lock));
+
+        if (entityManager != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    unlock.run();
+                }
+            });
+            return statement.getAsInt();
+        }
+        try {
+            return statement.getAsInt();
+        } finally {
+            unlock.run();
+            if (entityManager == null) {
+                session.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.example.bookmanage.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 書籍のメモリ上のインデックスの共通クラス<br />
+ *
+ * 書籍の内容はBookIndexerが保持してすべてのインデックスで共有し、
+ * 起動時の構築や書籍の変更は、BookIndexerから変更をまとめて反映する。
+ * サブクラスは変更の反映を実装し、検索時は読み取りロックを取得すること。
+ */
+public abstract class AbstractBookIndex {
+
+    /**
+     * インデックスの排他制御
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 構築済みか否か
+     */
+    private volatile boolean ready;
+
+    /**
+     * 書籍IDごとの内容(BookIndexerと共有する)
+     */
+    private Map<Long, BookDocument> documents = Collections.emptyMap();
+
+    /**
+     * 構築済みか否かを返却する。
+     *
+     * @return 構築済みの場合、true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 構築済みか否かを設定する。
+     *
+     * @param ready 構築済みの場合、true
+     */
+    void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * BookIndexerが保持する書籍の内容を共有する。
+     *
+     * @param documents 書籍IDごとの内容
+     */
+    void setDocuments(Map<Long, BookDocument> documents) {
+        this.documents = documents;
+    }
+
+    /**
+     * 書籍の内容を返却する。<br />
+     * 内容はインデックスより先に変更されるため、検索結果の書籍が削除済み(null)の場合もある。
+     *
+     * @param id 書籍のID
+     * @return 書籍の内容(ない場合はnull)
+     */
+    protected BookDocument document(long id) {
+        return documents.get(id);
+    }
+
+    /**
+     * インデックスの排他制御を返却する。
+     *
+     * @return インデックスの排他制御
+     */
+    protected ReadWriteLock lock() {
+        return lock;
+    }
+
+    /**
+     * 書き込みロックを取得して、インデックスを空にする。
+     */
+    void reset() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 書き込みロックを取得して、書籍の変更を反映する。
+     *
+     * @param removed 削除する書籍(更新の場合は変更前の内容)
+     * @param added 登録する書籍(更新の場合は変更後の内容)
+     */
+    void update(List<BookDocument> removed, List<BookDocument> added) {
+        lock.writeLock().lock();
+        try {
+            apply(removed, added);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * インデックスを空にする。(書き込みロックを取得した状態で呼び出される)
+     */
+    protected abstract void clear();
+
+    /**
+     * 書籍の変更を反映する。削除する書籍を除いた後に、登録する書籍を加える。
+     * (書き込みロックを取得した状態で呼び出される)
+     *
+     * @param removed 削除する書籍(更新の場合は変更前の内容)
+     * @param added 登録する書籍(更新の場合は変更後の内容)
+     */
+    protected abstract void apply(List<BookDocument> removed, List<BookDocument> added);
+
+    /**
+     * ログ出力用にインデックスの規模を返却する。
+     *
+     * @return インデックスの規模
+     */
+    protected abstract String describe();
+
+}
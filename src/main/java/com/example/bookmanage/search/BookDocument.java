@@ -0,0 +1,71 @@
+package com.example.bookmanage.search;
+
+import java.util.Objects;
+
+import lombok.Value;
+
+/**
+ * インデックスに登録する書籍の内容<br />
+ *
+ * タイトル・著者と、それぞれを正規化した文字列を保持する。
+ * すべてのインデックスで共有するため、正規化は書籍の変更ごとに1回のみ行う。
+ * 変更の前後を判定するため、書籍のバージョンも保持する。
+ */
+@Value
+class BookDocument {
+
+    /**
+     * 書籍のID
+     */
+    private long id;
+
+    /**
+     * タイトル
+     */
+    private String title;
+
+    /**
+     * 著者
+     */
+    private String author;
+
+    /**
+     * 書籍のバージョン
+     */
+    private long version;
+
+    /**
+     * 正規化したタイトル
+     */
+    private String normalizedTitle;
+
+    /**
+     * 正規化した著者
+     */
+    private String normalizedAuthor;
+
+    /**
+     * 書籍の内容を生成する。
+     *
+     * @param id 書籍のID
+     * @param title タイトル
+     * @param author 著者
+     * @param version 書籍のバージョン
+     * @return 書籍の内容
+     */
+    static BookDocument of(long id, String title, String author, long version) {
+        return new BookDocument(id, title, author, version, BookTextNormalizer.normalize(title),
+                BookTextNormalizer.normalize(author));
+    }
+
+    /**
+     * タイトル・著者が同じか否かを返却する。(バージョンは比較しない)
+     *
+     * @param other 比較する書籍の内容
+     * @return タイトル・著者が同じ場合、true
+     */
+    boolean hasSameContent(BookDocument other) {
+        return Objects.equals(title, other.title) && Objects.equals(author, other.author);
+    }
+
+}
@@ -0,0 +1,328 @@
+package com.example.bookmanage.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * タイトル・著者の語のあいまい検索用のn-gramインデックス<br />
+ * 
+ * タイトル・著者を空白で区切った語ごとに、前後に境界記号を付けたバイグラムから語への索引を保持する。
+ * 検索時は、編集距離がk以内の語が共有するバイグラムの下限(カウントフィルタ)と語の長さで候補を絞り込み、
+ * 候補のみ編集距離を計算する。短い語などフィルタが効かない場合も、長さが近い語のみを対象とする。
+ */
+@Component
+public class BookFuzzyIndex extends AbstractBookIndex {
+
+    /**
+     * 許容する編集距離の上限
+     */
+    static final int MAX_DISTANCE = 2;
+
+    /**
+     * 語の先頭を表す境界記号
+     */
+    private static final int BEGIN = '\u0002';
+
+    /**
+     * 語の末尾を表す境界記号
+     */
+    private static final int END = '\u0003';
+
+    /**
+     * 語ごとの情報
+     */
+    private final Map<String, Term> terms = new HashMap<>();
+
+    /**
+     * バイグラムごとの、そのバイグラムを含む語
+     */
+    private final Map<String, Set<Term>> grams = new HashMap<>();
+
+    /**
+     * 語の長さ(文字数)ごとの語
+     */
+    private final Map<Integer, Set<Term>> lengths = new TreeMap<>();
+
+    /**
+     * キーワードの語に近い語をタイトル・著者に含む書籍のIDを、編集距離の合計が小さい順に返却する。<br />
+     * キーワードのすべての語について、編集距離が許容範囲内の語を含む書籍が対象となる。
+     * 許容する編集距離は語の長さによって決まる。
+     *
+     * @param keyword キーワード
+     * @param limit 最大件数
+     * @return 書籍のID
+     */
+    public List<Long> search(String keyword, int limit) {
+        Set<String> words = wordsOf(BookTextNormalizer.normalize(keyword));
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock().readLock().lock();
+        try {
+            // 語ごとに、書籍IDと最小の編集距離を求めて積集合を取る
+            Map<Long, Integer> result = null;
+            for (String word : words) {
+                Map<Long, Integer> matched = new HashMap<>();
+                for (Map.Entry<Term, Integer> entry : findTerms(word).entrySet()) {
+                    for (long id : entry.getKey().books.toArray()) {
+                        matched.merge(id, entry.getValue(), Math::min);
+                    }
+                }
+                if (result == null) {
+                    result = matched;
+                } else {
+                    Map<Long, Integer> previous = result;
+                    result = new HashMap<>();
+                    for (Map.Entry<Long, Integer> entry : matched.entrySet()) {
+                        Integer distance = previous.get(entry.getKey());
+                        if (distance != null) {
+                            result.put(entry.getKey(), distance + entry.getValue());
+                        }
+                    }
+                }
+                if (result.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            List<Map.Entry<Long, Integer>> sorted = new ArrayList<>(result.entrySet());
+            sorted.sort(Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+            List<Long> ids = new ArrayList<>(Math.min(limit, sorted.size()));
+            for (int i = 0; i < sorted.size() && i < limit; i++) {
+                ids.add(sorted.get(i).getKey());
+            }
+            return ids;
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    /**
+     * 語に近い語と編集距離を返却する。
+     *
+     * @param word 正規化した語
+     * @return 語と編集距離
+     */
+    private Map<Term, Integer> findTerms(String word) {
+        int[] query = word.codePoints().toArray();
+        int max = maxDistance(query.length);
+        Set<String> queryGrams = gramsOf(query);
+
+        // 共有するバイグラムの数の下限(編集1回で失われるバイグラムは最大2個)
+        int threshold = queryGrams.size() - 2 * max;
+        Iterable<Term> candidates;
+        if (threshold > 0) {
+            Map<Term, Integer> counts = new HashMap<>();
+            for (String gram : queryGrams) {
+                for (Term term : grams.getOrDefault(gram, Collections.emptySet())) {
+                    counts.merge(term, 1, Integer::sum);
+                }
+            }
+            List<Term> filtered = new ArrayList<>();
+            counts.forEach((term, count) -> {
+                if (count >= threshold) {
+                    filtered.add(term);
+                }
+            });
+            candidates = filtered;
+        } else {
+            List<Term> filtered = new ArrayList<>();
+            for (int length = Math.max(1, query.length - max); length <= query.length + max; length++) {
+                filtered.addAll(lengths.getOrDefault(length, Collections.emptySet()));
+            }
+            candidates = filtered;
+        }
+
+        Map<Term, Integer> found = new HashMap<>();
+        for (Term term : candidates) {
+            if (Math.abs(term.codePoints.length - query.length) > max) {
+                continue;
+            }
+            int distance = distance(query, term.codePoints, max);
+            if (distance <= max) {
+                found.put(term, distance);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    protected void clear() {
+        terms.clear();
+        grams.clear();
+        lengths.clear();
+    }
+
+    @Override
+    protected String describe() {
+        return terms.size() + " terms, " + grams.size() + " grams";
+    }
+
+    @Override
+    protected void apply(List<BookDocument> removed, List<BookDocument> added) {
+        // 語ごとに変更をまとめ、語を含む書籍のポスティングリストごとに1回だけ反映する
+        Map<String, PostingList.Changes> changes = new HashMap<>();
+        for (BookDocument document : removed) {
+            for (String word : wordsOf(document)) {
+                changes.computeIfAbsent(word, w -> new PostingList.Changes()).remove(document.getId());
+            }
+        }
+        for (BookDocument document : added) {
+            for (String word : wordsOf(document)) {
+                changes.computeIfAbsent(word, w -> new PostingList.Changes()).add(document.getId());
+            }
+        }
+        changes.forEach((word, change) -> {
+            Term term = terms.get(word);
+            if (term == null) {
+                if (!change.hasAdditions()) {
+                    return;
+                }
+                term = new Term(word.codePoints().toArray());
+                terms.put(word, term);
+                for (String gram : gramsOf(term.codePoints)) {
+                    grams.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+                }
+                lengths.computeIfAbsent(term.codePoints.length, l -> new HashSet<>()).add(term);
+            }
+            change.applyTo(term.books);
+            if (term.books.size() == 0) {
+                // どの書籍にも含まれなくなった語は索引から除く
+                terms.remove(word);
+                for (String gram : gramsOf(term.codePoints)) {
+                    Set<Term> set = grams.get(gram);
+                    if (set != null && set.remove(term) && set.isEmpty()) {
+                        grams.remove(gram);
+                    }
+                }
+                Set<Term> set = lengths.get(term.codePoints.length);
+                if (set != null && set.remove(term) && set.isEmpty()) {
+                    lengths.remove(term.codePoints.length);
+                }
+            }
+        });
+    }
+
+    /**
+     * 書籍のタイトル・著者の語を返却する。
+     *
+     * @param document 書籍の内容
+     * @return 語(重複なし、出現順)
+     */
+    private static Set<String> wordsOf(BookDocument document) {
+        Set<String> words = wordsOf(document.getNormalizedTitle());
+        words.addAll(wordsOf(document.getNormalizedAuthor()));
+        return words;
+    }
+
+    /**
+     * 語の長さに応じた、許容する編集距離を返却する。
+     *
+     * @param length 語の長さ(文字数)
+     * @return 許容する編集距離
+     */
+    static int maxDistance(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : MAX_DISTANCE;
+    }
+
+    /**
+     * 正規化した文字列を空白で区切った語を返却する。
+     *
+     * @param normalized 正規化した文字列
+     * @return 語(重複なし、出現順)
+     */
+    private static Set<String> wordsOf(String normalized) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : normalized.split("\\s+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 前後に境界記号を付けた語のバイグラムを返却する。
+     *
+     * @param codePoints 語の文字
+     * @return バイグラム(重複なし)
+     */
+    private static Set<String> gramsOf(int[] codePoints) {
+        Set<String> result = new HashSet<>();
+        int previous = BEGIN;
+        for (int c : codePoints) {
+            result.add(new String(new int[] {previous, c}, 0, 2));
+            previous = c;
+        }
+        result.add(new String(new int[] {previous, END}, 0, 2));
+        return result;
+    }
+
+    /**
+     * 編集距離(レーベンシュタイン距離)を求める。<br />
+     * 上限を超えることが確定した時点で打ち切る。
+     *
+     * @param a 1つ目の語の文字
+     * @param b 2つ目の語の文字
+     * @param max 編集距離の上限
+     * @return 編集距離(上限を超える場合は上限+1)
+     */
+    static int distance(int[] a, int[] b, int max) {
+        int[] previous = new int[b.length + 1];
+        int[] current = new int[b.length + 1];
+        for (int j = 0; j <= b.length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length; j++) {
+                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length], max + 1);
+    }
+
+    /**
+     * 索引に登録した語
+     */
+    private static final class Term {
+
+        /**
+         * 語の文字
+         */
+        final int[] codePoints;
+
+        /**
+         * 語を含む書籍のID
+         */
+        final PostingList books = new PostingList();
+
+        Term(int[] codePoints) {
+            this.codePoints = codePoints;
+        }
+
+    }
+
+}
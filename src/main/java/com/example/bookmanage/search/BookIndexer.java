@@ -0,0 +1,218 @@
+package com.example.bookmanage.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.domain.BooksImportedEvent;
+import com.example.bookmanage.repository.BookRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 書籍のメモリ上のインデックスの更新処理<br />
+ *
+ * 書籍ごとの正規化した内容を1つだけ保持し、すべてのインデックスで共有する。
+ * 起動時にDBの全件を1回だけ読み込んで各インデックスを構築し、
+ * 以降は書籍の変更イベントでコミット後に差分を反映する。
+ * コミット後のイベントは別々のスレッドから発生順と異なる順で届くことがあり、
+ * 一括登録や構築時にDBから読み込んだ内容も、その後の変更より古い場合がある。
+ * そのため、書籍ごとに最後に反映したバージョンを保持し(削除した書籍はIDを削除済みとして保持し)、
+ * それより新しいバージョンの変更のみを反映する。
+ * 変更は一定件数ごとにまとめて各インデックスに反映するため、
+ * インデックスはポスティングリストなどをまとめて更新できる。
+ */
+@Slf4j
+@Component
+public class BookIndexer {
+
+    /**
+     * まとめて反映する書籍の件数
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    private BookRepository bookRepository;
+
+    /**
+     * 更新するインデックス
+     */
+    private List<AbstractBookIndex> indexes;
+
+    /**
+     * 書籍IDごとの内容(各インデックスが検索時に参照する)
+     */
+    private final Map<Long, BookDocument> documents = new ConcurrentHashMap<>();
+
+    /**
+     * 削除した書籍のID(以降に届いた古い登録・更新を反映しないために保持する)
+     */
+    private final Set<Long> deleted = new HashSet<>();
+
+    /**
+     * 書籍の内容と変更の反映の排他制御
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * コンストラクタ
+     *
+     * @param bookRepository 書籍のリポジトリ
+     * @param indexes 更新するインデックス
+     */
+    @Autowired
+    public BookIndexer(BookRepository bookRepository, List<AbstractBookIndex> indexes) {
+        this.bookRepository = bookRepository;
+        this.indexes = indexes;
+        indexes.forEach(index -> index.setDocuments(documents));
+    }
+
+    /**
+     * 起動時にDBの全件からインデックスを構築する。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.lock();
+        try {
+            documents.clear();
+            deleted.clear();
+            indexes.forEach(AbstractBookIndex::reset);
+        } finally {
+            lock.unlock();
+        }
+
+        // 構築中に反映された変更より古い内容は、バージョンを比較して反映しない
+        try (Stream<BookSummary> books = bookRepository.streamSummariesOrderById()) {
+            Map<Long, BookDocument> chunk = new LinkedHashMap<>();
+            books.forEach(book -> {
+                chunk.put(book.getId(), toDocument(book));
+                if (chunk.size() >= CHUNK_SIZE) {
+                    apply(chunk);
+                    chunk.clear();
+                }
+            });
+            apply(chunk);
+        } finally {
+            indexes.forEach(index -> index.setReady(true));
+        }
+        log.info("book indexes are built : {} books, {} ms", documents.size(), System.currentTimeMillis() - start);
+        indexes.forEach(index -> log.info("{} : {}", index.getClass().getSimpleName(), index.describe()));
+    }
+
+    /**
+     * 書籍の変更をインデックスに反映する。<br />
+     * トランザクション内で発行されたイベントはコミット後に反映する。
+     *
+     * @param event 書籍の変更イベント
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        apply(Collections.singletonMap(event.getId(), event.getType() == BookChangedEvent.Type.DELETED ? null
+                : BookDocument.of(event.getId(), event.getTitle(), event.getAuthor(), event.getVersion())));
+    }
+
+    /**
+     * 一括登録された書籍をインデックスに反映する。<br />
+     * コミット後に、登録された書籍をチャンクごとにDBから読み込んで反映する。
+     * コミット済みのトランザクションには参加せず、読み込み用に新しいトランザクションを開始する。
+     *
+     * @param event 書籍の一括登録のイベント
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        event.forEachChunk(CHUNK_SIZE, ids -> {
+            Map<Long, BookDocument> changes = new LinkedHashMap<>();
+            for (BookSummary book : bookRepository.findSummariesByIdIn(ids)) {
+                changes.put(book.getId(), toDocument(book));
+            }
+            apply(changes);
+        });
+    }
+
+    /**
+     * DBから読み込んだ書籍の内容を生成する。
+     *
+     * @param book 書籍の概要
+     * @return 書籍の内容
+     */
+    private static BookDocument toDocument(BookSummary book) {
+        return BookDocument.of(book.getId(), book.getTitle(), book.getAuthor(), book.getVersion());
+    }
+
+    /**
+     * 書籍の変更を反映する。
+     *
+     * @param changes 書籍IDごとの変更後の内容(削除の場合はnull)
+     */
+    private void apply(Map<Long, BookDocument> changes) {
+        lock.lock();
+        try {
+            update(changes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 書籍の内容を変更し、内容が変わった書籍のみをまとめて各インデックスに反映する。<br />
+     * 削除済みの書籍と、保持しているバージョン以下の変更は古いため反映しない。
+     * (ロックを取得した状態で呼び出される)
+     *
+     * @param changes 書籍IDごとの変更後の内容(削除の場合はnull)
+     */
+    private void update(Map<Long, BookDocument> changes) {
+        List<BookDocument> removed = new ArrayList<>();
+        List<BookDocument> added = new ArrayList<>();
+        changes.forEach((id, document) -> {
+            if (deleted.contains(id)) {
+                return;
+            }
+            BookDocument previous = documents.get(id);
+            if (document == null) {
+                deleted.add(id);
+                documents.remove(id);
+            } else if (previous != null && previous.getVersion() >= document.getVersion()) {
+                return;
+            } else {
+                documents.put(id, document);
+                if (previous != null && previous.hasSameContent(document)) {
+                    return;
+                }
+            }
+            if (previous != null) {
+                removed.add(previous);
+            }
+            if (document != null) {
+                added.add(document);
+            }
+        });
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            indexes.forEach(index -> index.update(removed, added));
+        }
+    }
+
+}
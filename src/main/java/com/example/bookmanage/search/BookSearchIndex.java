@@ -0,0 +1,196 @@
+package com.example.bookmanage.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * タイトル・著者の全文検索用の転置インデックス<br />
+ * 
+ * トークン(文字・バイグラム)ごとに、そのトークンを含む書籍IDのポスティングリストを保持する。
+ * 検索はDBにアクセスせず、メモリ上のインデックスのみで行う。
+ */
+@Component
+public class BookSearchIndex extends AbstractBookIndex {
+
+    /**
+     * タイトルに一致した場合の重み
+     */
+    private static final double TITLE_WEIGHT = 2.0;
+
+    /**
+     * 著者に一致した場合の重み
+     */
+    private static final double AUTHOR_WEIGHT = 1.0;
+
+    /**
+     * トークンごとのポスティングリスト
+     */
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    /**
+     * キーワードに一致する書籍のIDを、スコアの高い順に返却する。<br />
+     * キーワードのすべてのトークンをタイトル・著者のいずれかに含む書籍が対象となる。
+     * タイトルに一致した書籍、キーワードをそのまま含む書籍ほどスコアが高い。
+     *
+     * @param keyword キーワード
+     * @param limit 最大件数
+     * @return 書籍のID
+     */
+    public List<Long> search(String keyword, int limit) {
+        String query = BookTextNormalizer.normalize(keyword);
+        Set<String> tokens = BookTextNormalizer.bigrams(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock().readLock().lock();
+        try {
+            // 件数の少ないポスティングリストから順に積集合を取る
+            List<PostingList> lists = new ArrayList<>();
+            for (String token : tokens) {
+                PostingList list = postings.get(token);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            long[] candidates = lists.get(0).toArray();
+            int count = candidates.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = lists.get(i).retainAll(candidates, count);
+            }
+
+            // スコアの上位を取得する
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+            for (int i = 0; i < count; i++) {
+                BookDocument document = document(candidates[i]);
+                if (document == null) {
+                    continue;
+                }
+                double score = score(document.getNormalizedTitle(), query, tokens) * TITLE_WEIGHT
+                        + score(document.getNormalizedAuthor(), query, tokens) * AUTHOR_WEIGHT;
+                top.add(new Hit(candidates[i], score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<Long> ids = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                ids.add(top.poll().id);
+            }
+            Collections.reverse(ids);
+            return ids;
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        postings.clear();
+    }
+
+    @Override
+    protected String describe() {
+        return postings.size() + " tokens";
+    }
+
+    @Override
+    protected void apply(List<BookDocument> removed, List<BookDocument> added) {
+        // トークンごとに変更をまとめ、ポスティングリストごとに1回だけ反映する
+        Map<String, PostingList.Changes> changes = new HashMap<>();
+        for (BookDocument document : removed) {
+            for (String token : tokensOf(document)) {
+                changes.computeIfAbsent(token, t -> new PostingList.Changes()).remove(document.getId());
+            }
+        }
+        for (BookDocument document : added) {
+            for (String token : tokensOf(document)) {
+                changes.computeIfAbsent(token, t -> new PostingList.Changes()).add(document.getId());
+            }
+        }
+        changes.forEach((token, change) -> {
+            PostingList list = postings.get(token);
+            if (list == null) {
+                if (!change.hasAdditions()) {
+                    return;
+                }
+                list = new PostingList();
+                postings.put(token, list);
+            }
+            change.applyTo(list);
+            if (list.size() == 0) {
+                postings.remove(token);
+            }
+        });
+    }
+
+    /**
+     * 書籍のタイトル・著者のトークンを返却する。
+     *
+     * @param document 書籍の内容
+     * @return トークン(重複なし)
+     */
+    private static Set<String> tokensOf(BookDocument document) {
+        Set<String> tokens = new HashSet<>(BookTextNormalizer.indexTokens(document.getNormalizedTitle()));
+        tokens.addAll(BookTextNormalizer.indexTokens(document.getNormalizedAuthor()));
+        return tokens;
+    }
+
+    /**
+     * 項目のスコアを求める。<br />
+     * 含まれるトークンの割合に、キーワードをそのまま含む場合・完全に一致する場合の加点を加える。
+     *
+     * @param field 正規化した項目
+     * @param query 正規化したキーワード
+     * @param tokens キーワードのトークン
+     * @return スコア
+     */
+    private static double score(String field, String query, Set<String> tokens) {
+        long matched = tokens.stream().filter(field::contains).count();
+        if (matched == 0) {
+            return 0;
+        }
+        double score = (double) matched / tokens.size();
+        if (field.contains(query)) {
+            score += 1.0;
+        }
+        if (field.equals(query)) {
+            score += 1.0;
+        }
+        return score;
+    }
+
+    /**
+     * 検索結果の書籍IDとスコア
+     */
+    private static final class Hit {
+
+        /**
+         * スコアの低い順(同点の場合はIDの大きい順)
+         */
+        static final Comparator<Hit> WORST_FIRST = Comparator.<Hit>comparingDouble(h -> h.score)
+                .thenComparing(Comparator.<Hit>comparingLong(h -> h.id).reversed());
+
+        final long id;
+
+        final double score;
+
+        Hit(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+    }
+
+}
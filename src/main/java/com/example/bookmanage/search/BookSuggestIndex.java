@@ -0,0 +1,71 @@
+package com.example.bookmanage.search;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * タイトル・著者の入力補完用のインデックス<br />
+ * 
+ * 正規化したタイトル・著者をそれぞれトライ木に登録し、前方一致する候補を書籍の件数の多い順に返却する。
+ * 入力のたびにDBへ問い合わせないよう、補完はメモリ上のトライ木のみで行う。
+ */
+@Component
+public class BookSuggestIndex extends AbstractBookIndex {
+
+    /**
+     * 返却する候補の最大件数
+     */
+    public static final int MAX_SUGGESTIONS = SuggestTrie.TOP_K;
+
+    /**
+     * タイトルのトライ木
+     */
+    private final SuggestTrie titles = new SuggestTrie();
+
+    /**
+     * 著者のトライ木
+     */
+    private final SuggestTrie authors = new SuggestTrie();
+
+    /**
+     * キーワードに前方一致するタイトル・著者の候補を返却する。
+     *
+     * @param keyword キーワード
+     * @param limit 最大件数(MAX_SUGGESTIONS件まで)
+     * @return 候補
+     */
+    public BookSuggestions suggest(String keyword, int limit) {
+        String prefix = BookTextNormalizer.normalize(keyword);
+        lock().readLock().lock();
+        try {
+            return new BookSuggestions(titles.complete(prefix, limit), authors.complete(prefix, limit));
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        titles.clear();
+        authors.clear();
+    }
+
+    @Override
+    protected String describe() {
+        return titles.size() + " titles, " + authors.size() + " authors";
+    }
+
+    @Override
+    protected void apply(List<BookDocument> removed, List<BookDocument> added) {
+        for (BookDocument document : removed) {
+            titles.remove(document.getNormalizedTitle());
+            authors.remove(document.getNormalizedAuthor());
+        }
+        for (BookDocument document : added) {
+            titles.add(document.getNormalizedTitle(), document.getTitle());
+            authors.add(document.getNormalizedAuthor(), document.getAuthor());
+        }
+    }
+
+}
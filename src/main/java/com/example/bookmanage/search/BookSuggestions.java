@@ -0,0 +1,23 @@
+package com.example.bookmanage.search;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * タイトル・著者の入力補完の候補
+ */
+@Value
+public class BookSuggestions {
+
+    /**
+     * タイトルの候補
+     */
+    private List<String> titles;
+
+    /**
+     * 著者の候補
+     */
+    private List<String> authors;
+
+}
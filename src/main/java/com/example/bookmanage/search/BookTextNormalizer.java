@@ -0,0 +1,124 @@
+package com.example.bookmanage.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 検索用の文字列の正規化とトークン分割<br />
+ * 
+ * インデックスの登録と検索で同じ正規化を行うため、検索に関わる処理はこのクラスを使用する。
+ * 日本語は単語の区切りがないため、空白で区切った語を文字単位(1文字の語)またはバイグラム(2文字以上の語)に分割する。
+ * 書籍の検索用の項目(Bookのtitle_search、author_search、search_tokens)も、このクラスで登録時に生成する。
+ */
+public final class BookTextNormalizer {
+
+    /**
+     * インスタンス化しない
+     */
+    private BookTextNormalizer() {
+    }
+
+    /**
+     * カタカナとひらがなのコードポイントの差
+     */
+    private static final int KANA_OFFSET = 'ァ' - 'ぁ';
+
+    /**
+     * 文字列を正規化する。<br />
+     * NFKC正規化(全角英数字・半角カナの統一)を行い、小文字に変換し、カタカナをひらがなに変換する。
+     * 連続する空白は1つにまとめ、前後の空白を除去する。
+     *
+     * @param text 文字列
+     * @return 正規化した文字列(nullの場合は空文字)
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String nfkc = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(nfkc.length());
+        boolean space = false;
+        for (int i = 0; i < nfkc.length(); i++) {
+            char c = nfkc.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            normalized.append(isFoldableKatakana(c) ? (char) (c - KANA_OFFSET) : c);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * ひらがなに変換できるカタカナか否かを返却する。<br />
+     * 「ァ」～「ヶ」と、踊り字の「ヽ」「ヾ」が対象となる。
+     *
+     * @param c 文字
+     * @return ひらがなに変換できる場合、true
+     */
+    private static boolean isFoldableKatakana(char c) {
+        return (c >= 'ァ' && c <= 'ヶ') || c == 'ヽ' || c == 'ヾ';
+    }
+
+    /**
+     * 正規化した文字列を検索用のトークンに分割する。
+     *
+     * @param normalized 正規化した文字列
+     * @return トークン(重複なし、出現順)
+     */
+    public static Set<String> bigrams(String normalized) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String word : normalized.split("\\s+")) {
+            int length = word.codePointCount(0, word.length());
+            if (length == 1) {
+                tokens.add(word);
+                continue;
+            }
+            int i = 0;
+            while (i < word.length()) {
+                int second = word.offsetByCodePoints(i, 1);
+                if (second >= word.length()) {
+                    break;
+                }
+                int end = word.offsetByCodePoints(second, 1);
+                tokens.add(word.substring(i, end));
+                i = second;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 正規化した文字列を、インデックスに登録するトークン(文字とバイグラム)に分割する。<br />
+     * 1文字のキーワードでも検索できるよう、文字単位のトークンも含める。
+     *
+     * @param normalized 正規化した文字列
+     * @return トークン(重複なし)
+     */
+    public static Set<String> indexTokens(String normalized) {
+        Set<String> tokens = unigrams(normalized);
+        tokens.addAll(bigrams(normalized));
+        return tokens;
+    }
+
+    /**
+     * 正規化した文字列を1文字ずつのトークンに分割する。
+     *
+     * @param normalized 正規化した文字列
+     * @return トークン(重複なし、出現順)
+     */
+    public static Set<String> unigrams(String normalized) {
+        Set<String> tokens = new LinkedHashSet<>();
+        normalized.codePoints()
+                .filter(c -> !Character.isWhitespace(c))
+                .forEach(c -> tokens.add(new String(Character.toChars(c))));
+        return tokens;
+    }
+
+}
@@ -0,0 +1,450 @@
+package com.example.bookmanage.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 書籍IDのポスティングリスト<br />
+ *
+ * 昇順に並べたIDを最大BLOCK_SIZE * 2件ずつのブロックに分け、ブロックごとに先頭のIDと、
+ * 以降のIDの差分を可変長整数(7bit単位)で符号化して保持する。
+ * IDはシーケンスで採番されるため、多くの場合は末尾への追加となり、再符号化は発生しない。
+ * 途中への追加・削除は該当するブロックのみを復号・再符号化し、
+ * 複数のIDをまとめて追加・削除する場合は、ブロックごとに1回だけ再符号化する。
+ * 積集合を取る場合も、範囲外のブロックは復号せずに読み飛ばす。
+ * スレッドセーフではないため、呼び出し元で排他制御を行うこと。
+ */
+final class PostingList {
+
+    /**
+     * ブロックに格納するIDの件数の目安(分割後の件数)
+     */
+    static final int BLOCK_SIZE = 128;
+
+    /**
+     * 空の配列
+     */
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * ブロック(先頭のIDの昇順)
+     */
+    private Block[] blocks = new Block[1];
+
+    /**
+     * ブロックの件数
+     */
+    private int blockCount;
+
+    /**
+     * IDの件数
+     */
+    private int size;
+
+    /**
+     * IDの件数を返却する。
+     *
+     * @return IDの件数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * IDを追加する。既に存在する場合は何もしない。
+     *
+     * @param id 書籍のID(1以上)
+     */
+    void add(long id) {
+        addAll(new long[] {id}, 1);
+    }
+
+    /**
+     * IDを削除する。
+     *
+     * @param id 書籍のID
+     * @return 削除した場合、true
+     */
+    boolean remove(long id) {
+        return removeAll(new long[] {id}, 1) > 0;
+    }
+
+    /**
+     * 複数のIDを追加する。既に存在するIDは無視する。
+     *
+     * @param ids 書籍のID(1以上、昇順、重複なし)
+     * @param count 使用する件数
+     */
+    void addAll(long[] ids, int count) {
+        int i = 0;
+        // 末尾に追加できるIDは再符号化せずに追加する
+        while (i < count && blockCount > 0 && ids[i] <= blocks[blockCount - 1].last) {
+            int b = blockOf(ids[i]);
+            long limit = b + 1 < blockCount ? blocks[b + 1].first : Long.MAX_VALUE;
+            int end = i;
+            while (end < count && ids[end] < limit && (b + 1 < blockCount || ids[end] <= blocks[b].last)) {
+                end++;
+            }
+            long[] current = blocks[b].decode();
+            long[] merged = new long[current.length + end - i];
+            int length = 0;
+            int j = 0;
+            for (int k = i; k < end; k++) {
+                while (j < current.length && current[j] < ids[k]) {
+                    merged[length++] = current[j++];
+                }
+                if (j < current.length && current[j] == ids[k]) {
+                    continue;
+                }
+                merged[length++] = ids[k];
+            }
+            while (j < current.length) {
+                merged[length++] = current[j++];
+            }
+            size += length - current.length;
+            replace(b, merged, length);
+            i = end;
+        }
+        for (; i < count; i++) {
+            append(ids[i]);
+        }
+    }
+
+    /**
+     * 複数のIDを削除する。
+     *
+     * @param ids 書籍のID(昇順、重複なし)
+     * @param count 使用する件数
+     * @return 削除した件数
+     */
+    int removeAll(long[] ids, int count) {
+        int removed = 0;
+        int i = 0;
+        while (i < count && blockCount > 0) {
+            int b = blockOf(ids[i]);
+            Block block = blocks[b];
+            if (ids[i] < block.first || ids[i] > block.last) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < count && ids[end] <= block.last) {
+                end++;
+            }
+            long[] current = block.decode();
+            int length = 0;
+            int k = i;
+            for (long id : current) {
+                while (k < end && ids[k] < id) {
+                    k++;
+                }
+                if (k < end && ids[k] == id) {
+                    continue;
+                }
+                current[length++] = id;
+            }
+            if (length < current.length) {
+                removed += current.length - length;
+                size -= current.length - length;
+                replace(b, current, length);
+            }
+            i = end;
+        }
+        return removed;
+    }
+
+    /**
+     * IDの配列のうち、このリストに含まれるIDのみを配列の先頭に残す(積集合)。<br />
+     * 配列のIDの範囲外のブロックは復号しない。
+     *
+     * @param ids 書籍のID(昇順)
+     * @param count 使用する件数
+     * @return 残したIDの件数
+     */
+    int retainAll(long[] ids, int count) {
+        if (blockCount == 0) {
+            return 0;
+        }
+        int result = 0;
+        int b = 0;
+        Block block = null;
+        int position = 0;
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            long id = ids[i];
+            if (id > blocks[b].last) {
+                if (id > blocks[blockCount - 1].last) {
+                    break;
+                }
+                b = blockOf(id);
+            }
+            if (id < blocks[b].first || id > blocks[b].last) {
+                continue;
+            }
+            if (block != blocks[b]) {
+                block = blocks[b];
+                position = 0;
+                value = block.first;
+            }
+            while (value < id && position < block.length) {
+                long delta = 0;
+                int shift = 0;
+                byte read;
+                do {
+                    read = block.data[position++];
+                    delta |= (long) (read & 0x7F) << shift;
+                    shift += 7;
+                } while (read < 0);
+                value += delta;
+            }
+            if (value == id) {
+                ids[result++] = id;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * IDを昇順の配列に復号する。
+     *
+     * @return IDの配列
+     */
+    long[] toArray() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        long[] ids = new long[size];
+        int offset = 0;
+        for (int b = 0; b < blockCount; b++) {
+            offset = blocks[b].decodeInto(ids, offset);
+        }
+        return ids;
+    }
+
+    /**
+     * IDが含まれる(または含まれるべき)ブロックの位置を返却する。
+     *
+     * @param id 書籍のID
+     * @return 先頭のIDがid以下の最後のブロック(ない場合は0)
+     */
+    private int blockOf(long id) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blocks[middle].first <= id) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 末尾にIDを追加する。
+     *
+     * @param id 書籍のID(最後のIDより大きいこと)
+     */
+    private void append(long id) {
+        if (blockCount == 0 || blocks[blockCount - 1].count >= BLOCK_SIZE * 2) {
+            insertBlocks(blockCount, 1);
+            blocks[blockCount - 1] = new Block(new long[] {id}, 0, 1);
+        } else {
+            blocks[blockCount - 1].append(id);
+        }
+        size++;
+    }
+
+    /**
+     * ブロックをIDの配列で置き換える。
+     * 上限を超える場合はBLOCK_SIZE件ずつのブロックに分割し、空の場合はブロックを削除する。
+     *
+     * @param index ブロックの位置
+     * @param ids 昇順のIDの配列
+     * @param count 使用する件数
+     */
+    private void replace(int index, long[] ids, int count) {
+        if (count == 0) {
+            System.arraycopy(blocks, index + 1, blocks, index, blockCount - index - 1);
+            blocks[--blockCount] = null;
+            return;
+        }
+        if (count <= BLOCK_SIZE * 2) {
+            blocks[index] = new Block(ids, 0, count);
+            return;
+        }
+        int pieces = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        insertBlocks(index + 1, pieces - 1);
+        for (int p = 0; p < pieces; p++) {
+            int from = p * BLOCK_SIZE;
+            blocks[index + p] = new Block(ids, from, Math.min(from + BLOCK_SIZE, count));
+        }
+    }
+
+    /**
+     * 指定した位置に空のブロックを挿入する。
+     *
+     * @param index 挿入する位置
+     * @param count 挿入するブロックの件数
+     */
+    private void insertBlocks(int index, int count) {
+        if (blockCount + count > blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(blockCount + count, blocks.length * 2));
+        }
+        System.arraycopy(blocks, index, blocks, index + count, blockCount - index);
+        blockCount += count;
+    }
+
+    /**
+     * 符号化したIDのブロック
+     */
+    private static final class Block {
+
+        /**
+         * 先頭のID
+         */
+        final long first;
+
+        /**
+         * 最後のID
+         */
+        long last;
+
+        /**
+         * IDの件数
+         */
+        int count;
+
+        /**
+         * 2件目以降のIDの差分を符号化したもの
+         */
+        byte[] data;
+
+        /**
+         * 使用しているバイト数
+         */
+        int length;
+
+        Block(long[] ids, int from, int to) {
+            first = ids[from];
+            last = first;
+            count = 1;
+            data = new byte[Math.max(4, (to - from - 1) * 2)];
+            for (int i = from + 1; i < to; i++) {
+                append(ids[i]);
+            }
+        }
+
+        void append(long id) {
+            long delta = id - last;
+            if (length + 10 > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + 10, data.length * 2));
+            }
+            while ((delta & ~0x7FL) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            last = id;
+            count++;
+        }
+
+        long[] decode() {
+            long[] ids = new long[count];
+            decodeInto(ids, 0);
+            return ids;
+        }
+
+        int decodeInto(long[] ids, int offset) {
+            long value = first;
+            ids[offset++] = value;
+            int position = 0;
+            while (position < length) {
+                long delta = 0;
+                int shift = 0;
+                byte read;
+                do {
+                    read = data[position++];
+                    delta |= (long) (read & 0x7F) << shift;
+                    shift += 7;
+                } while (read < 0);
+                value += delta;
+                ids[offset++] = value;
+            }
+            return offset;
+        }
+
+    }
+
+    /**
+     * ポスティングリストに対する変更をまとめたもの<br />
+     *
+     * 複数の書籍の変更を集め、ポスティングリストごとに1回だけ反映するために使用する。
+     * 削除した後に追加したIDは、変更なしとして扱う。
+     */
+    static final class Changes {
+
+        /**
+         * IDごとの変更(trueは追加、falseは削除)
+         */
+        private final Map<Long, Boolean> changes = new HashMap<>();
+
+        /**
+         * IDの追加を記録する。
+         *
+         * @param id 書籍のID
+         */
+        void add(long id) {
+            if (Boolean.FALSE.equals(changes.get(id))) {
+                changes.remove(id);
+            } else {
+                changes.put(id, true);
+            }
+        }
+
+        /**
+         * IDの削除を記録する。
+         *
+         * @param id 書籍のID
+         */
+        void remove(long id) {
+            changes.put(id, false);
+        }
+
+        /**
+         * 追加するIDがあるか否かを返却する。
+         *
+         * @return 追加するIDがある場合、true
+         */
+        boolean hasAdditions() {
+            return changes.containsValue(true);
+        }
+
+        /**
+         * 記録した変更をポスティングリストに反映する。
+         *
+         * @param list ポスティングリスト
+         */
+        void applyTo(PostingList list) {
+            long[] added = new long[changes.size()];
+            long[] removed = new long[changes.size()];
+            int addedCount = 0;
+            int removedCount = 0;
+            for (Map.Entry<Long, Boolean> change : changes.entrySet()) {
+                if (change.getValue()) {
+                    added[addedCount++] = change.getKey();
+                } else {
+                    removed[removedCount++] = change.getKey();
+                }
+            }
+            Arrays.sort(removed, 0, removedCount);
+            Arrays.sort(added, 0, addedCount);
+            list.removeAll(removed, removedCount);
+            list.addAll(added, addedCount);
+        }
+
+    }
+
+}
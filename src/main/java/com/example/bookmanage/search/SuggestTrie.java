@@ -0,0 +1,447 @@
+package com.example.bookmanage.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 入力補完用のトライ木(パトリシア木)<br />
+ *
+ * 正規化したキーを、分岐のない区間を1つの辺にまとめたノードで保持する。
+ * 子ノードは辺の先頭の文字の昇順の配列で保持する。
+ * 各ノードには、そのノード以下の補完候補の上位(件数の多い順)をキャッシュしており、
+ * 補完はキーワードのノードまで辿るだけで、部分木を走査しない。<br />
+ * 登録・削除時は、件数が変わった候補のみを経路上のノードの上位候補に葉側から反映し、
+ * ノードの上位候補が変わらなくなった時点で打ち切る。
+ * スレッドセーフではないため、呼び出し元で排他制御を行うこと。
+ */
+final class SuggestTrie {
+
+    /**
+     * 各ノードにキャッシュする補完候補の件数
+     */
+    static final int TOP_K = 10;
+
+    /**
+     * 補完候補の順序(件数の多い順、同数の場合はキーの昇順)
+     */
+    private static final Comparator<Entry> RANKING = Comparator.<Entry>comparingInt(e -> e.count).reversed()
+            .thenComparing(e -> e.key);
+
+    /**
+     * 空の補完候補
+     */
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    /**
+     * 根ノード
+     */
+    private Node root = new Node("");
+
+    /**
+     * 登録されているキーの件数
+     */
+    private int size;
+
+    /**
+     * 登録されているキーの件数を返却する。
+     *
+     * @return キーの件数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * ノードの件数(根ノードを含む)を返却する。
+     *
+     * @return ノードの件数
+     */
+    int nodeCount() {
+        return root.count();
+    }
+
+    /**
+     * すべてのキーを削除する。
+     */
+    void clear() {
+        root = new Node("");
+        size = 0;
+    }
+
+    /**
+     * キーの件数を1件増やす。
+     *
+     * @param key 正規化したキー
+     * @param display 補完候補として表示する文字列(キーの初回登録時のみ使用する)
+     */
+    void add(String key, String display) {
+        if (key.isEmpty()) {
+            return;
+        }
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < key.length()) {
+            int index = node.indexOf(key.charAt(pos));
+            if (index < 0) {
+                node = node.addChild(new Node(key.substring(pos)));
+                path.add(node);
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.edge, key, pos);
+            if (common < child.edge.length()) {
+                // 辺の途中で分岐するため、分岐点にノードを追加する
+                child = node.split(index, common);
+            }
+            node = child;
+            path.add(node);
+            pos += common;
+        }
+        if (node.entry == null) {
+            node.entry = new Entry(key, display);
+            size++;
+        }
+        Entry entry = node.entry;
+        entry.count++;
+        // 上位候補が変わったノードの親にのみ反映する
+        int i = path.size() - 1;
+        while (i >= 0 && path.get(i).promote(entry)) {
+            i--;
+        }
+    }
+
+    /**
+     * キーの件数を1件減らす。0件になった場合はキーを削除する。
+     *
+     * @param key 正規化したキー
+     */
+    void remove(String key) {
+        if (key.isEmpty()) {
+            return;
+        }
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < key.length()) {
+            int index = node.indexOf(key.charAt(pos));
+            if (index < 0 || !key.startsWith(node.children[index].edge, pos)) {
+                return;
+            }
+            node = node.children[index];
+            path.add(node);
+            pos += node.edge.length();
+        }
+        Entry entry = node.entry;
+        if (entry == null) {
+            return;
+        }
+        if (--entry.count == 0) {
+            node.entry = null;
+            size--;
+        }
+        // 上位候補が変わったノードの親にのみ反映する
+        int i = path.size() - 1;
+        while (i >= 0 && path.get(i).demote(entry)) {
+            i--;
+        }
+        prune(path);
+    }
+
+    /**
+     * 前方一致する補完候補を、件数の多い順に返却する。
+     *
+     * @param prefix 正規化したキーワード
+     * @param limit 最大件数(TOP_K件まで)
+     * @return 補完候補
+     */
+    List<String> complete(String prefix, int limit) {
+        if (prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Node node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int index = node.indexOf(prefix.charAt(pos));
+            if (index < 0) {
+                return Collections.emptyList();
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.edge, prefix, pos);
+            if (pos + common < prefix.length() && common < child.edge.length()) {
+                return Collections.emptyList();
+            }
+            node = child;
+            pos += common;
+        }
+        List<String> result = new ArrayList<>(Math.min(limit, node.top.length));
+        for (int i = 0; i < node.top.length && i < limit; i++) {
+            result.add(node.top[i].display);
+        }
+        return result;
+    }
+
+    /**
+     * 削除後の経路上で、キーも子ノードも持たないノードを削除し、
+     * キーを持たず子ノードが1つのノードを子ノードと結合する。
+     *
+     * @param path 根からキーのノードまでの経路
+     */
+    private static void prune(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            if (node.entry != null) {
+                continue;
+            }
+            if (node.children.length == 0) {
+                path.get(i - 1).removeChild(node.edge.charAt(0));
+            } else if (node.children.length == 1) {
+                node.mergeChild();
+            }
+        }
+    }
+
+    /**
+     * 辺の文字列とキーの指定位置以降が、先頭から一致する文字数を返却する。
+     *
+     * @param edge 辺の文字列
+     * @param key キー
+     * @param pos キーの開始位置
+     * @return 一致する文字数
+     */
+    private static int commonPrefix(String edge, String key, int pos) {
+        int length = Math.min(edge.length(), key.length() - pos);
+        int i = 0;
+        while (i < length && edge.charAt(i) == key.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 上位候補の中の補完候補の位置を返却する。
+     *
+     * @param top 上位候補
+     * @param entry 補完候補
+     * @return 位置(含まれない場合は-1)
+     */
+    private static int indexOf(Entry[] top, Entry entry) {
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == entry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * トライ木のノード
+     */
+    private static final class Node {
+
+        /**
+         * 親ノードからこのノードまでの辺の文字列
+         */
+        String edge;
+
+        /**
+         * 子ノードの辺の先頭の文字(昇順)
+         */
+        char[] labels = new char[0];
+
+        /**
+         * 子ノード(labelsと同じ順)
+         */
+        Node[] children = new Node[0];
+
+        /**
+         * このノードで終わるキーの補完候補
+         */
+        Entry entry;
+
+        /**
+         * このノード以下の補完候補の上位
+         */
+        Entry[] top = NO_ENTRIES;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        int count() {
+            int count = 1;
+            for (Node child : children) {
+                count += child.count();
+            }
+            return count;
+        }
+
+        int indexOf(char c) {
+            return Arrays.binarySearch(labels, c);
+        }
+
+        Node addChild(Node child) {
+            int index = -Arrays.binarySearch(labels, child.edge.charAt(0)) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = child.edge.charAt(0);
+            newChildren[index] = child;
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * 子ノードの辺を指定した文字数で分割し、分岐点のノードを返却する。<br />
+         * 分岐点のノード以下は分割前の子ノード以下と同じため、上位候補は子ノードと同じになる。
+         *
+         * @param index 子ノードの位置
+         * @param at 分割する文字数
+         * @return 分岐点のノード
+         */
+        Node split(int index, int at) {
+            Node child = children[index];
+            Node middle = new Node(child.edge.substring(0, at));
+            child.edge = child.edge.substring(at);
+            middle.labels = new char[] { child.edge.charAt(0) };
+            middle.children = new Node[] { child };
+            middle.top = child.top.clone();
+            children[index] = middle;
+            return middle;
+        }
+
+        /**
+         * 唯一の子ノードをこのノードに結合する(このノードはキーを持たないこと)。
+         */
+        void mergeChild() {
+            Node child = children[0];
+            edge = edge + child.edge;
+            labels = child.labels;
+            children = child.children;
+            entry = child.entry;
+            top = child.top;
+        }
+
+        /**
+         * 件数が増えた補完候補を上位候補に反映する。
+         *
+         * @param changed 件数が増えた補完候補
+         * @return 上位候補が変わった場合true(変わらない場合、祖先の上位候補も変わらない)
+         */
+        boolean promote(Entry changed) {
+            int index = SuggestTrie.indexOf(top, changed);
+            if (index < 0) {
+                if (top.length == TOP_K) {
+                    if (RANKING.compare(changed, top[TOP_K - 1]) >= 0) {
+                        return false;
+                    }
+                    index = TOP_K - 1;
+                } else {
+                    top = Arrays.copyOf(top, top.length + 1);
+                    index = top.length - 1;
+                }
+                top[index] = changed;
+            }
+            for (; index > 0 && RANKING.compare(top[index], top[index - 1]) < 0; index--) {
+                Entry swap = top[index];
+                top[index] = top[index - 1];
+                top[index - 1] = swap;
+            }
+            return true;
+        }
+
+        /**
+         * 件数が減った(または削除された)補完候補を上位候補に反映する。<br />
+         * 上位候補から外し、自身の候補と子ノードの上位候補のうち、上位候補に含まれない最上位の1件で補う。
+         * 子ノードの上位候補のうち上位候補に含まれるものは先頭から連続するため、子ノードごとに先頭から数件を見ればよい。
+         *
+         * @param changed 件数が減った補完候補
+         * @return 上位候補が変わった場合true(変わらない場合、祖先の上位候補も変わらない)
+         */
+        boolean demote(Entry changed) {
+            int index = SuggestTrie.indexOf(top, changed);
+            if (index < 0) {
+                return false;
+            }
+            Entry[] rest = new Entry[top.length - 1];
+            System.arraycopy(top, 0, rest, 0, index);
+            System.arraycopy(top, index + 1, rest, index, top.length - index - 1);
+
+            Entry best = entry != null && SuggestTrie.indexOf(rest, entry) < 0 ? entry : null;
+            for (Node child : children) {
+                for (Entry candidate : child.top) {
+                    if (SuggestTrie.indexOf(rest, candidate) < 0) {
+                        if (best == null || RANKING.compare(candidate, best) < 0) {
+                            best = candidate;
+                        }
+                        break;
+                    }
+                }
+            }
+            if (best == null) {
+                top = rest;
+                return true;
+            }
+            top = Arrays.copyOf(rest, rest.length + 1);
+            int insert = rest.length;
+            for (; insert > 0 && RANKING.compare(best, top[insert - 1]) < 0; insert--) {
+                top[insert] = top[insert - 1];
+            }
+            top[insert] = best;
+            return true;
+        }
+
+    }
+
+    /**
+     * 補完候補
+     */
+    private static final class Entry {
+
+        /**
+         * 正規化したキー
+         */
+        final String key;
+
+        /**
+         * 表示する文字列
+         */
+        final String display;
+
+        /**
+         * キーを持つ書籍の件数
+         */
+        int count;
+
+        Entry(String key, String display) {
+            this.key = key;
+            this.display = display;
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.example.bookmanage.service;
+
+import lombok.Value;
+
+/**
+ * 書籍の一括更新・一括削除の1件分の結果
+ */
+@Value
+public class BookBatchResult {
+
+    /**
+     * 処理結果
+     */
+    public enum Status {
+        /** 更新した */
+        UPDATED,
+        /** 削除した */
+        DELETED,
+        /** 書籍が存在しない */
+        NOT_FOUND,
+        /** バージョンが異なる(同じ書籍を複数回指定した場合を含む) */
+        VERSION_CONFLICT,
+        /** 入力内容に不備がある */
+        INVALID
+    }
+
+    /**
+     * 書籍のID
+     */
+    private Long id;
+
+    /**
+     * 処理結果
+     */
+    private Status status;
+
+}
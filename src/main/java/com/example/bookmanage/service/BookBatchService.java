@@ -0,0 +1,311 @@
+package com.example.bookmanage.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.Validator;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.form.BookBulkForm;
+import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.search.BookTextNormalizer;
+import com.example.bookmanage.service.BookBatchResult.Status;
+
+/**
+ * 書籍の一括更新・一括削除のサービス<br />
+ * 
+ * 全件を1つのトランザクションで処理し、1件ごとの結果を返却する。
+ * 更新はチャンク単位で書籍をまとめて取得してバージョンを確認し、UPDATEをJDBCバッチとして発行する。
+ * 削除はチャンク単位で存在を確認し、IN句の1回のDELETE文で削除する。<br />
+ * 管理者用の著者の一括変更・作成ユーザによる一括削除は、条件に該当する書籍を行ロックを取得して取得し、
+ * そのIDを指定したUPDATE・DELETE文で行う(取得後にコミットされた書籍は対象にしない)。
+ * 検索インデックス・一覧のキャッシュは対象の書籍ごとの変更イベントで、2次キャッシュは対象の書籍のみ破棄して無効にする。
+ */
+@Service
+public class BookBatchService {
+
+    /**
+     * 1回のリクエストで指定できる最大件数
+     */
+    public static final int MAX_ITEMS = 1000;
+
+    /**
+     * エンティティマネージャ
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    private BookRepository bookRepository;
+
+    /**
+     * 入力内容のValidator
+     */
+    private Validator validator;
+
+    /**
+     * チャンクサイズ(JDBCバッチサイズと同じ値)
+     */
+    private int chunkSize;
+
+    /**
+     * イベントの発行者
+     */
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param bookRepository 書籍のリポジトリ
+     * @param validator 入力内容のValidator
+     * @param chunkSize チャンクサイズ
+     * @param eventPublisher イベントの発行者
+     */
+    @Autowired
+    public BookBatchService(BookRepository bookRepository, Validator validator,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int chunkSize,
+            ApplicationEventPublisher eventPublisher) {
+        this.bookRepository = bookRepository;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 書籍を一括更新する。<br />
+     * 指定したバージョンと一致する書籍のみ更新する。
+     * 同じ書籍を複数回指定した場合、2件目以降はバージョンが異なるものとして扱う。
+     * 
+     * @param changes 変更内容
+     * @return 変更内容と同じ順の結果
+     * @throws IllegalArgumentException 件数がMAX_ITEMSを超える場合に発生する
+     */
+    @Transactional(readOnly = false)
+    public List<BookBatchResult> updateBooks(List<BookChange> changes) {
+        checkSize(changes);
+        List<BookBatchResult> results = new ArrayList<>(changes.size());
+        Set<Long> seen = new HashSet<>();
+        for (int from = 0; from < changes.size(); from += chunkSize) {
+            List<BookChange> chunk = changes.subList(from, Math.min(from + chunkSize, changes.size()));
+
+            // チャンクの書籍をまとめて取得する
+            Set<Long> ids = chunk.stream().map(BookChange::getId).filter(id -> id != null)
+                    .collect(Collectors.toSet());
+            Map<Long, Book> books = bookRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+            int first = results.size();
+            for (BookChange change : chunk) {
+                results.add(new BookBatchResult(change.getId(), update(change, books, seen)));
+            }
+
+            // チャンクごとにUPDATEをバッチで発行し、更新後のバージョンで変更のイベントを発行する
+            entityManager.flush();
+            for (BookBatchResult result : results.subList(first, results.size())) {
+                if (result.getStatus() == Status.UPDATED) {
+                    eventPublisher.publishEvent(
+                            BookChangedEvent.of(BookChangedEvent.Type.UPDATED, books.get(result.getId())));
+                }
+            }
+            entityManager.clear();
+        }
+        return results;
+    }
+
+    /**
+     * 取得済みの書籍に1件分の変更内容を反映する。
+     *
+     * @param change 変更内容
+     * @param books チャンクの書籍
+     * @param seen 処理済みの書籍のID
+     * @return 結果
+     */
+    private Status update(BookChange change, Map<Long, Book> books, Set<Long> seen) {
+        if (change.getId() == null || !isValid(change)) {
+            return Status.INVALID;
+        }
+        Book book = books.get(change.getId());
+        if (book == null) {
+            return Status.NOT_FOUND;
+        }
+        if (!seen.add(change.getId()) || book.getVersion() != change.getVersion()) {
+            return Status.VERSION_CONFLICT;
+        }
+        book.setTitle(change.getTitle());
+        book.setAuthor(change.getAuthor());
+        return Status.UPDATED;
+    }
+
+    /**
+     * 変更内容を画面のフォーム情報と同じ制約で検証する。
+     *
+     * @param change 変更内容
+     * @return 不備がない場合、true
+     */
+    private boolean isValid(BookChange change) {
+        BookManageForm form = BookManageForm.builder()
+                .title(change.getTitle())
+                .author(change.getAuthor())
+                .version(change.getVersion())
+                .build();
+        BindingResult result = new BeanPropertyBindingResult(form, "bookManageForm");
+        validator.validate(form, result);
+        return !result.hasErrors();
+    }
+
+    /**
+     * 書籍を一括削除する。
+     * 
+     * @param ids 書籍のID
+     * @return IDと同じ順の結果
+     * @throws IllegalArgumentException 件数がMAX_ITEMSを超える場合に発生する
+     */
+    @Transactional(readOnly = false)
+    public List<BookBatchResult> deleteBooks(List<Long> ids) {
+        checkSize(ids);
+        Set<Long> deleted = new HashSet<>();
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.remove(null);
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+
+            // 存在する書籍のみ削除する
+            List<Long> existing = bookRepository.findIdsByIdIn(chunk);
+            if (existing.isEmpty()) {
+                continue;
+            }
+            bookRepository.deleteIfExistsIn(existing);
+            bookRepository.deleteSearchTokens(existing);
+            for (Long id : existing) {
+                deleted.add(id);
+                eventPublisher.publishEvent(BookChangedEvent.deleted(id));
+            }
+        }
+
+        List<BookBatchResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            // 同じ書籍を複数回指定した場合、削除したのは1件目とする
+            Status status;
+            if (id == null) {
+                status = Status.INVALID;
+            } else if (deleted.remove(id)) {
+                status = Status.DELETED;
+            } else {
+                status = Status.NOT_FOUND;
+            }
+            results.add(new BookBatchResult(id, status));
+        }
+        return results;
+    }
+
+    /**
+     * 著者と作成日の範囲に該当する書籍の著者を一括変更する。<br />
+     * 対象の書籍を行ロックを取得して取得し、そのIDを指定したUPDATE文で変更する。
+     * バージョン・更新日時・更新ユーザも合わせて更新する。
+     * 検索用のトークンは対象の書籍のみ、JDBCのバッチで置き換える。
+     *
+     * @param form 一括操作のフォーム情報(変更前の著者、変更後の著者、作成日の範囲)
+     * @return 変更件数
+     */
+    @Transactional(readOnly = false)
+    public int renameAuthor(BookBulkForm form) {
+        LocalDateTime createdFrom = form.createdFromDateTime();
+        LocalDateTime createdTo = form.createdToDateTime();
+
+        // 検索インデックスの更新に必要なタイトルを、変更前に行ロックを取得して取得する
+        List<BookSummary> targets = bookRepository.findSummariesByAuthor(form.getAuthor(), createdFrom, createdTo);
+        if (targets.isEmpty()) {
+            return 0;
+        }
+
+        String newAuthorSearch = BookTextNormalizer.normalize(form.getNewAuthor());
+        List<Long> ids = targets.stream().map(BookSummary::getId).collect(Collectors.toList());
+        int count = bookRepository.renameAuthorIn(ids, form.getNewAuthor(), newAuthorSearch, currentUser(),
+                LocalDateTime.now());
+
+        // 検索用のトークンを置き換え、書籍ごとに変更のイベントを発行する
+        Set<String> authorTokens = BookTextNormalizer.indexTokens(newAuthorSearch);
+        Map<Long, Set<String>> tokens = new HashMap<>();
+        for (BookSummary target : targets) {
+            Set<String> bookTokens = BookTextNormalizer.indexTokens(BookTextNormalizer.normalize(target.getTitle()));
+            bookTokens.addAll(authorTokens);
+            tokens.put(target.getId(), bookTokens);
+            eventPublisher.publishEvent(BookChangedEvent.updated(target.getId(), target.getTitle(),
+                    form.getNewAuthor(), target.getVersion() + 1));
+        }
+        bookRepository.replaceSearchTokens(tokens);
+        return count;
+    }
+
+    /**
+     * 作成ユーザと作成日の範囲に該当する書籍を一括削除する。<br />
+     * 対象の書籍のIDを行ロックを取得して取得し、そのIDを指定したDELETE文で削除する。
+     * 検索用のトークンは対象の書籍のみJDBCのバッチで削除する。
+     *
+     * @param form 一括操作のフォーム情報(作成ユーザ、作成日の範囲)
+     * @return 削除件数
+     */
+    @Transactional(readOnly = false)
+    public int purgeByCreatedUser(BookBulkForm form) {
+        LocalDateTime createdFrom = form.createdFromDateTime();
+        LocalDateTime createdTo = form.createdToDateTime();
+
+        // 検索インデックスから削除する書籍のIDを、削除前に行ロックを取得して取得する
+        List<Long> ids = bookRepository.findIdsByCreatedUser(form.getCreatedUser(), createdFrom, createdTo);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int count = bookRepository.deleteIfExistsIn(ids);
+        bookRepository.deleteSearchTokens(ids);
+        ids.forEach(id -> eventPublisher.publishEvent(BookChangedEvent.deleted(id)));
+        return count;
+    }
+
+    /**
+     * 認証済みのユーザ名を返却する。
+     *
+     * @return ユーザ名
+     */
+    private String currentUser() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    /**
+     * 件数がMAX_ITEMS以下か確認する。
+     *
+     * @param items 処理対象
+     * @throws IllegalArgumentException 件数がMAX_ITEMSを超える場合に発生する
+     */
+    private void checkSize(List<?> items) {
+        if (items.size() > MAX_ITEMS) {
+            throw new IllegalArgumentException(
+                    String.format("too many items. (size = %d, max = %d)", items.size(), MAX_ITEMS));
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.example.bookmanage.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+
+/**
+ * 書籍全体(カタログ)のバージョン<br />
+ * 
+ * 書籍が登録・更新・削除されるたびに、コミット後に1つ進める。
+ * 一覧のキャッシュなど、書籍全体から作られる情報はこのバージョンをキーにすることで、
+ * 変更後に古い情報が使用されないようにする。
+ */
+@Component
+public class BookCatalogVersion {
+
+    /**
+     * バージョン
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 現在のバージョンを返却する。<br />
+     * 書籍全体から情報を作る場合、DBや検索インデックスを読む前に取得すること。
+     *
+     * @return 現在のバージョン
+     */
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * バージョンを進める。
+     *
+     * @return 進めた後のバージョン
+     */
+    public long increment() {
+        return version.incrementAndGet();
+    }
+
+    /**
+     * 書籍の変更のコミット後にバージョンを進める。<br />
+     * 検索インデックスなど他のリスナーが変更を反映した後に進めるよう、最後に実行する。
+     *
+     * @param event 書籍の変更イベント
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        increment();
+    }
+
+    /**
+     * 書籍の一括登録のコミット後にバージョンを進める。<br />
+     * 検索インデックスなど他のリスナーが変更を反映した後に進めるよう、最後に実行する。
+     *
+     * @param event 書籍の一括登録のイベント
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        increment();
+    }
+
+}
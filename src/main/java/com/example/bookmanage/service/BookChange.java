@@ -0,0 +1,37 @@
+package com.example.bookmanage.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 書籍の一括更新の1件分の変更内容
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookChange {
+
+    /**
+     * 書籍のID
+     */
+    private Long id;
+
+    /**
+     * 更新前のバージョン
+     */
+    private long version;
+
+    /**
+     * 変更後のタイトル
+     */
+    private String title;
+
+    /**
+     * 変更後の著者
+     */
+    private String author;
+
+}
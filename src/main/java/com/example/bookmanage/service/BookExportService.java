@@ -0,0 +1,74 @@
+package com.example.bookmanage.service;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.repository.BookRepository;
+
+/**
+ * 書籍の一括出力のサービス<br />
+ * 
+ * 全件を逐次取得し、1件ずつ出力先に渡す。
+ * 渡した書籍は永続化コンテキストから切り離すため、件数に関わらずメモリ使用量は一定になる。
+ * 全件の読み込みで2次キャッシュの書籍が入れ替わらないよう、出力中は2次キャッシュを使用しない。
+ */
+@Service
+public class BookExportService {
+
+    /**
+     * エンティティマネージャ
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    private BookRepository bookRepository;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param bookRepository 書籍のリポジトリ
+     */
+    @Autowired
+    public BookExportService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * 全件をIDの昇順で出力先に渡す。
+     * 
+     * @param consumer 出力先
+     * @return 出力した件数
+     */
+    @Transactional(readOnly = true)
+    public long exportBooks(Consumer<Book> consumer) {
+        long count = 0;
+        // 逐次取得では行ごとの読み込み時にセッションのキャッシュモードが使用されるため、出力中のみ変更する
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try (Stream<Book> books = bookRepository.streamAllOrderById()) {
+            for (Book book : (Iterable<Book>) books::iterator) {
+                consumer.accept(book);
+                entityManager.detach(book);
+                count++;
+            }
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
+        return count;
+    }
+
+}
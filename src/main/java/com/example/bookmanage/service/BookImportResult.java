@@ -0,0 +1,38 @@
+package com.example.bookmanage.service;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * 書籍の一括登録の結果
+ */
+@Value
+public class BookImportResult {
+
+    /**
+     * 登録した件数
+     */
+    private long importedCount;
+
+    /**
+     * 入力内容に不備があり、登録しなかった件数
+     */
+    private long rejectedCount;
+
+    /**
+     * 処理時間(ミリ秒)
+     */
+    private long elapsedMillis;
+
+    /**
+     * 1秒あたりの登録件数
+     */
+    private double rowsPerSecond;
+
+    /**
+     * 登録しなかった行のエラーメッセージ(先頭から最大BookImportService.MAX_ERRORS件)
+     */
+    private List<String> errors;
+
+}
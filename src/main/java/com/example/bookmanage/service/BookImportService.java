@@ -0,0 +1,164 @@
+package com.example.bookmanage.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.Validator;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BooksImportedEvent;
+import com.example.bookmanage.form.BookManageForm;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 書籍の一括登録のサービス<br />
+ * 
+ * 入力をBookManageFormの制約で検証し、チャンク単位でINSERTをJDBCバッチとして発行する。
+ * チャンクごとに永続化コンテキストをflush・clearするため、件数に関わらずメモリ使用量は一定になる。
+ * 変更イベントは書籍ごとに発行せず、登録した書籍のIDをまとめたBooksImportedEventを最後に1件だけ発行する。
+ */
+@Slf4j
+@Service
+public class BookImportService {
+
+    /**
+     * 結果に含めるエラーメッセージの最大件数
+     */
+    static final int MAX_ERRORS = 100;
+
+    /**
+     * エンティティマネージャ
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 入力内容のValidator
+     */
+    private Validator validator;
+
+    /**
+     * メッセージソース
+     */
+    private MessageSource messageSource;
+
+    /**
+     * チャンクサイズ(JDBCバッチサイズと同じ値)
+     */
+    private int chunkSize;
+
+    /**
+     * イベントの発行者
+     */
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param validator 入力内容のValidator
+     * @param messageSource メッセージソース
+     * @param chunkSize チャンクサイズ
+     * @param eventPublisher イベントの発行者
+     */
+    @Autowired
+    public BookImportService(Validator validator, MessageSource messageSource,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int chunkSize,
+            ApplicationEventPublisher eventPublisher) {
+        this.validator = validator;
+        this.messageSource = messageSource;
+        this.chunkSize = chunkSize;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * フォーム情報を順に読み込み、書籍を一括登録する。<br />
+     * 入力内容に不備がある行は登録せず、エラーメッセージを結果に設定する。
+     * 
+     * @param forms 登録する書籍のフォーム情報
+     * @return 一括登録の結果
+     */
+    @Transactional(readOnly = false)
+    public BookImportResult importBooks(Iterator<BookManageForm> forms) {
+        long start = System.nanoTime();
+        long row = 0;
+        long imported = 0;
+        long rejected = 0;
+        List<String> errors = new ArrayList<>();
+        long[] ids = new long[chunkSize];
+
+        while (forms.hasNext()) {
+            BookManageForm form = forms.next();
+            row++;
+
+            // 入力内容を検証する
+            BindingResult result = new BeanPropertyBindingResult(form, "bookManageForm");
+            validator.validate(form, result);
+            if (result.hasErrors()) {
+                rejected++;
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(createMessage(row, result));
+                }
+                continue;
+            }
+
+            // エンティティを登録し、チャンクごとにバッチを発行する
+            Book book = Book.builder()
+                    .title(form.getTitle())
+                    .author(form.getAuthor())
+                    .build();
+            entityManager.persist(book);
+            if (imported == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[(int) imported] = book.getId();
+            imported++;
+            if (imported % chunkSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        if (imported > 0) {
+            eventPublisher.publishEvent(new BooksImportedEvent(Arrays.copyOf(ids, (int) imported), false));
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        double rowsPerSecond = elapsedNanos > 0 ? imported * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+        log.info("import books : {} imported, {} rejected, {} ms ({} rows/sec)",
+                imported, rejected, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), String.format("%.1f", rowsPerSecond));
+        return new BookImportResult(imported, rejected, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond,
+                errors);
+    }
+
+    /**
+     * validatorの結果から行のエラーメッセージを生成する。
+     * 
+     * @param row 行番号(データ行の1始まり)
+     * @param result validatorの結果
+     * @return エラーメッセージ
+     */
+    private String createMessage(long row, BindingResult result) {
+        return row + ": " + result.getFieldErrors().stream()
+                .map(e -> messageSource.getMessage(e, LocaleContextHolder.getLocale()))
+                .collect(Collectors.joining(" "));
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.example.bookmanage.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.bookmanage.form.BookListCondition;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * 書籍一覧のキャッシュ<br />
+ * 
+ * 表示条件ごとの1ページ分を、カタログのバージョンと組み合わせたキーで保持する。
+ * 書籍が変更されるとバージョンが進むため、変更前のエントリは参照されなくなり、最大件数を超えた時点で削除される。
+ * ヒット率はbook.list.cacheのキャッシュメトリクス、再作成の時間はbook.list.cache.loadのタイマーで参照できる。
+ */
+@Component
+public class BookListCache {
+
+    /**
+     * キャッシュ名(メトリクスのタグ)
+     */
+    static final String CACHE_NAME = "book.list.cache";
+
+    /**
+     * カタログのバージョン
+     */
+    private BookCatalogVersion catalogVersion;
+
+    /**
+     * キャッシュ
+     */
+    private final Cache<Key, CachedBookList> cache;
+
+    /**
+     * 再作成の時間
+     */
+    private final Timer loadTimer;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param catalogVersion カタログのバージョン
+     * @param meterRegistry メトリクスの登録先
+     * @param maximumSize 最大件数
+     */
+    @Autowired
+    public BookListCache(BookCatalogVersion catalogVersion, MeterRegistry meterRegistry,
+            @Value("${bookmanage.list-cache.maximum-size:1000}") long maximumSize) {
+        this.catalogVersion = catalogVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        this.loadTimer = Timer.builder(CACHE_NAME + ".load")
+                .description("書籍一覧のキャッシュの再作成時間")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder(CACHE_NAME + ".hit.ratio", cache, c -> c.stats().hitRate())
+                .description("書籍一覧のキャッシュのヒット率")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 表示条件に該当する一覧を返却する。キャッシュにない場合は取得してキャッシュする。<br />
+     * 取得前にバージョンを読むため、取得中に書籍が変更された場合は古いバージョンのキーで登録され、以降は使用されない。
+     *
+     * @param condition 書籍一覧の表示条件
+     * @param loader 一覧の取得処理
+     * @return 書籍一覧
+     */
+    public CachedBookList get(BookListCondition condition, Supplier<CachedBookList> loader) {
+        Key key = new Key(catalogVersion.current(), copyOf(condition));
+        return cache.get(key, k -> loadTimer.record(loader));
+    }
+
+    /**
+     * キーに使用するため、表示条件を複製する。
+     *
+     * @param condition 書籍一覧の表示条件
+     * @return 複製した表示条件
+     */
+    private static BookListCondition copyOf(BookListCondition condition) {
+        return BookListCondition.builder()
+                .sort(condition.getSort())
+                .after(condition.getAfter())
+                .before(condition.getBefore())
+                .key(condition.getKey())
+                .q(condition.getQ())
+                .build();
+    }
+
+    /**
+     * キャッシュのキー
+     */
+    @lombok.Value
+    private static class Key {
+
+        /**
+         * カタログのバージョン
+         */
+        private long version;
+
+        /**
+         * 書籍一覧の表示条件
+         */
+        private BookListCondition condition;
+
+    }
+
+}
@@ -1,17 +1,35 @@
 package com.example.bookmanage.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
 import com.example.bookmanage.exception.BookNotFoundException;
+import com.example.bookmanage.form.BookFormMapper;
+import com.example.bookmanage.form.BookListCondition;
+import com.example.bookmanage.form.BookListPage;
 import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.form.BookSortKey;
 import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.search.BookFuzzyIndex;
+import com.example.bookmanage.search.BookSearchIndex;
+import com.example.bookmanage.search.BookTextNormalizer;
 
 /**
  * 書籍管理システムのサービス
@@ -19,81 +37,338 @@ import com.example.bookmanage.repository.BookRepository;
 @Service
 public class BookManageService {
 
+    /**
+     * 書籍一覧の1ページあたりの件数
+     */
+    static final int PAGE_SIZE = 20;
+
     /**
      * 書籍のリポジトリ
      */
     private BookRepository bookRepository;
 
+    /**
+     * 書籍の検索インデックス
+     */
+    private BookSearchIndex searchIndex;
+
+    /**
+     * 書籍のあいまい検索用のインデックス
+     */
+    private BookFuzzyIndex fuzzyIndex;
+
+    /**
+     * 書籍一覧のキャッシュ
+     */
+    private BookListCache listCache;
+
+    /**
+     * イベントの発行者
+     */
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * コンストラクタ
      * 
      * @param bookRepository 書籍のリポジトリ
+     * @param searchIndex 書籍の検索インデックス
+     * @param fuzzyIndex 書籍のあいまい検索用のインデックス
+     * @param listCache 書籍一覧のキャッシュ
+     * @param eventPublisher イベントの発行者
      */
     @Autowired
-    public BookManageService(BookRepository bookRepository) {
+    public BookManageService(BookRepository bookRepository, BookSearchIndex searchIndex,
+            BookFuzzyIndex fuzzyIndex, BookListCache listCache, ApplicationEventPublisher eventPublisher) {
         this.bookRepository = bookRepository;
+        this.searchIndex = searchIndex;
+        this.fuzzyIndex = fuzzyIndex;
+        this.listCache = listCache;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
-     * フォーム情報の初期化を行う。
+     * フォーム情報の初期化を行う。<br />
+     * 書籍一覧は先頭ページを設定する。
      * 
      * @return フォーム情報
      */
-    @Transactional(readOnly = true)
     public BookManageForm initForm() {
-        // 一覧を取得する
-        List<Book> books = bookRepository.findAll();
-        BookManageForm form = new BookManageForm(true, books);
+        return initForm(new BookListCondition());
+    }
+
+    /**
+     * 書籍一覧の表示条件を指定して、フォーム情報の初期化を行う。<br />
+     * 一覧がキャッシュにある場合はDBに接続しないよう、トランザクションは開始しない。
+     * 
+     * @param condition 書籍一覧の表示条件
+     * @return フォーム情報
+     */
+    public BookManageForm initForm(BookListCondition condition) {
+        BookManageForm form = new BookManageForm();
+        form.setNewBook(true);
+        readBookList(form, condition);
         return form;
     }
 
     /**
-     * 指定したIDに該当する書籍を取得し、フォーム情報を返却する。
+     * 表示条件に該当する書籍一覧の1ページ分を取得し、フォーム情報に設定する。<br />
+     * 検索以外の一覧はキャッシュから取得する。
+     *
+     * @param form フォーム情報
+     * @param condition 書籍一覧の表示条件
+     */
+    private void readBookList(BookManageForm form, BookListCondition condition) {
+        if (StringUtils.hasText(condition.getQ())) {
+            searchBookList(form, condition);
+            return;
+        }
+
+        CachedBookList list = listCache.get(condition, () -> loadBookList(condition));
+        form.setBooks(list.getBooks());
+        form.setPage(list.getPage());
+    }
+
+    /**
+     * 表示条件に該当する書籍一覧の1ページ分をDBから取得する。<br />
+     * 1件多く取得することで、続きのページが存在するか否かを判定する。
+     *
+     * @param condition 書籍一覧の表示条件
+     * @return 書籍一覧
+     */
+    private CachedBookList loadBookList(BookListCondition condition) {
+        BookSortKey sort = condition.getSort() != null ? condition.getSort() : BookSortKey.ID;
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE + 1);
+
+        // カーソルの位置から1ページ分を取得する
+        boolean backward = condition.getBefore() != null && hasKey(sort, condition);
+        boolean forward = !backward && condition.getAfter() != null && hasKey(sort, condition);
+        List<BookSummary> books;
+        if (backward) {
+            books = findPageBefore(sort, condition.getKey(), condition.getBefore(), pageable);
+        } else if (forward) {
+            books = findPageAfter(sort, condition.getKey(), condition.getAfter(), pageable);
+        } else {
+            books = findFirstPage(sort, pageable);
+        }
+
+        // 余分に取得した1件を除き、前ページの場合は並び順を戻す
+        boolean hasMore = books.size() > PAGE_SIZE;
+        books = new ArrayList<>(hasMore ? books.subList(0, PAGE_SIZE) : books);
+        if (backward) {
+            Collections.reverse(books);
+        }
+        boolean hasPrevious = backward ? hasMore : forward;
+        boolean hasNext = backward || hasMore;
+
+        BookListPage page = new BookListPage();
+        page.setSort(sort);
+        page.setCondition(condition);
+        if (hasPrevious && !books.isEmpty()) {
+            BookSummary first = books.get(0);
+            page.setPreviousId(first.getId());
+            page.setPreviousKey(sort.keyOf(first));
+        }
+        if (hasNext && !books.isEmpty()) {
+            BookSummary last = books.get(books.size() - 1);
+            page.setNextId(last.getId());
+            page.setNextKey(sort.keyOf(last));
+        }
+
+        return new CachedBookList(Collections.unmodifiableList(books), page);
+    }
+
+    /**
+     * キーワードに一致する書籍を検索インデックスから取得し、フォーム情報に設定する。<br />
+     * 検索結果はスコアの高い順に1ページ分のみ表示し、ページングは行わない。
+     * 一致する書籍がない場合、キーワードの語に近い語(綴りの誤りなど)を含む書籍を表示する。
+     *
+     * @param form フォーム情報
+     * @param condition 書籍一覧の表示条件
+     */
+    private void searchBookList(BookManageForm form, BookListCondition condition) {
+        List<BookSummary> books;
+        boolean fuzzy = false;
+        if (searchIndex.isReady()) {
+            List<Long> ids = searchIndex.search(condition.getQ(), PAGE_SIZE);
+            if (ids.isEmpty()) {
+                ids = fuzzyIndex.search(condition.getQ(), PAGE_SIZE);
+                fuzzy = true;
+            }
+            books = findSummaries(ids);
+        } else {
+            // 起動直後でインデックスの構築中は、DBの検索用のトークンで検索する
+            Set<String> tokens = BookTextNormalizer.bigrams(BookTextNormalizer.normalize(condition.getQ()));
+            books = tokens.isEmpty() ? new ArrayList<>()
+                    : bookRepository.findPageByTokens(tokens, tokens.size(), PageRequest.of(0, PAGE_SIZE));
+        }
+
+        BookListPage page = new BookListPage();
+        page.setSort(condition.getSort() != null ? condition.getSort() : BookSortKey.ID);
+        page.setCondition(condition);
+        page.setFuzzy(fuzzy && !books.isEmpty());
+
+        form.setBooks(books);
+        form.setPage(page);
+    }
+
+    /**
+     * 指定したIDの書籍の一覧表示用の項目をまとめて取得し、IDの順に並べる。
+     *
+     * @param ids 書籍のID
+     * @return 書籍の一覧
+     */
+    private List<BookSummary> findSummaries(List<Long> ids) {
+        List<BookSummary> books = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            Map<Long, BookSummary> summaries = bookRepository.findSummariesByIdIn(ids).stream()
+                    .collect(Collectors.toMap(BookSummary::getId, Function.identity()));
+            ids.stream().map(summaries::get).filter(b -> b != null).forEach(books::add);
+        }
+        return books;
+    }
+
+    /**
+     * カーソルにソート項目の値が指定されているか否かを返却する。<br />
+     * IDでソートする場合、ソート項目の値は不要。
+     *
+     * @param sort ソート項目
+     * @param condition 書籍一覧の表示条件
+     * @return ソート項目の値が指定されている場合、true
+     */
+    private boolean hasKey(BookSortKey sort, BookListCondition condition) {
+        return sort == BookSortKey.ID || condition.getKey() != null;
+    }
+
+    /**
+     * 先頭ページを取得する。
+     *
+     * @param sort ソート項目
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    private List<BookSummary> findFirstPage(BookSortKey sort, Pageable pageable) {
+        switch (sort) {
+        case TITLE:
+            return bookRepository.findPageOrderByTitle(pageable);
+        case AUTHOR:
+            return bookRepository.findPageOrderByAuthor(pageable);
+        default:
+            return bookRepository.findPageOrderById(pageable);
+        }
+    }
+
+    /**
+     * カーソルより後のページを取得する。
+     *
+     * @param sort ソート項目
+     * @param key 起点となる書籍のソート項目の値
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧
+     */
+    private List<BookSummary> findPageAfter(BookSortKey sort, String key, long id, Pageable pageable) {
+        switch (sort) {
+        case TITLE:
+            return bookRepository.findPageAfterTitle(key, id, pageable);
+        case AUTHOR:
+            return bookRepository.findPageAfterAuthor(key, id, pageable);
+        default:
+            return bookRepository.findPageAfterId(id, pageable);
+        }
+    }
+
+    /**
+     * カーソルより前のページを降順で取得する。
+     *
+     * @param sort ソート項目
+     * @param key 起点となる書籍のソート項目の値
+     * @param id 起点となる書籍のID
+     * @param pageable 取得件数
+     * @return 書籍の一覧(降順)
+     */
+    private List<BookSummary> findPageBefore(BookSortKey sort, String key, long id, Pageable pageable) {
+        switch (sort) {
+        case TITLE:
+            return bookRepository.findPageBeforeTitle(key, id, pageable);
+        case AUTHOR:
+            return bookRepository.findPageBeforeAuthor(key, id, pageable);
+        default:
+            return bookRepository.findPageBeforeId(id, pageable);
+        }
+    }
+
+    /**
+     * 指定したIDに該当する書籍を取得し、フォーム情報を返却する。<br />
+     * 書籍一覧は先頭ページを設定する。
      *
      * @param id 書籍のID
      * @return フォーム情報
      * @throws BookNotFoundException 書籍が取得できない場合に発生する
      */
-    @Transactional(readOnly = true)
     public BookManageForm readOneBook(long id) throws BookNotFoundException {
+        return readOneBook(id, new BookListCondition());
+    }
+
+    /**
+     * 指定したIDに該当する書籍を取得し、フォーム情報を返却する。<br />
+     * 書籍一覧は表示条件に該当する1ページ分のみ設定する。<br />
+     * initFormと同様にトランザクションは開始しない。
+     * DB接続を保持したまま一覧のキャッシュの取得を待つと、取得中のスレッドがDB接続を得られず、
+     * 接続プールが枯渇した時点で互いに待ち続けるため。
+     *
+     * @param id 書籍のID
+     * @param condition 書籍一覧の表示条件
+     * @return フォーム情報
+     * @throws BookNotFoundException 書籍が取得できない場合に発生する
+     */
+    public BookManageForm readOneBook(long id, BookListCondition condition) throws BookNotFoundException {
         // IDでエンティティを取得する
         Book book = bookRepository.findById(id).orElseThrow(() -> new BookNotFoundException(id));
 
-        // 一覧を取得する
-        List<Book> books = bookRepository.findAll();
-        BookManageForm form = new BookManageForm(false, books);
+        // 一覧を1ページ分取得する
+        BookManageForm form = new BookManageForm();
+        form.setNewBook(false);
+        readBookList(form, condition);
 
         // エンティティの内容をフォームに反映する
-        ModelMapper modelMapper = new ModelMapper();
-        modelMapper.map(book, form);
+        BookFormMapper.copyToForm(book, form);
 
         return form;
     }
 
     /**
-     * 指定したIDに該当する書籍をフォーム情報の内容に更新する。
+     * 指定したIDに該当する書籍をフォーム情報の内容に更新する。<br />
+     * フォームのバージョンと一致する場合のみ、エンティティを読み込まずに1回のUPDATE文で更新する。
+     * 更新件数が0件の場合のみ存在を確認し、存在しない場合と楽観排他のエラーを区別する。
      *
      * @param id 書籍のID
      * @param form フォーム情報
-     * @return 更新後の書籍
+     * @return 更新後の書籍(作成日時・作成ユーザは設定しない)
      * @throws BookNotFoundException 書籍が取得できない場合に発生する
      */
     @Transactional(readOnly = false)
     public Book updateBook(long id, BookManageForm form) throws BookNotFoundException {
-        // IDでエンティティを取得する
-        Book book = bookRepository.findById(id).orElseThrow(() -> new BookNotFoundException(id));
+        // フォームの内容で更新内容を作成する(一括更新ではエンティティのコールバックが呼ばれないため、明示的に呼び出す)
+        Book book = Book.builder()
+                .id(id)
+                .title(form.getTitle())
+                .author(form.getAuthor())
+                .build();
+        book.setVersion(form.getVersion());
+        book.preUpdate();
 
-        // 楽観排他
-        if (book.getVersion() != form.getVersion()) {
+        // 楽観排他を兼ねて更新する
+        if (bookRepository.updateIfVersionMatches(book) == 0) {
+            if (!bookRepository.existsById(id)) {
+                throw new BookNotFoundException(id);
+            }
             throw new ObjectOptimisticLockingFailureException(Book.class, id);
         }
+        bookRepository.replaceSearchTokens(id, book.getSearchTokens());
 
-        // フォームの内容をエンティティに更新する
-        ModelMapper modelMapper = new ModelMapper();
-        modelMapper.map(form, book);
-
-        // エンティティの更新
-        return bookRepository.save(book);
+        book.setVersion(form.getVersion() + 1);
+        eventPublisher.publishEvent(BookChangedEvent.of(BookChangedEvent.Type.UPDATED, book));
+        return book;
     }
 
     /**
@@ -105,26 +380,56 @@ public class BookManageService {
     @Transactional(readOnly = false)
     public Book createBook(BookManageForm form) {
         // フォーム情報を使って、エンティティを生成する
-        ModelMapper modelMapper = new ModelMapper();
-        Book book = modelMapper.map(form, Book.class);
+        Book book = BookFormMapper.toBook(form);
 
         // エンティティを登録する
-        return bookRepository.save(book);
+        Book created = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.of(BookChangedEvent.Type.CREATED, created));
+        return created;
     }
 
     /**
-     * 指定したIDに該当する書籍を削除する。
+     * 指定したIDに該当する書籍を削除する。<br />
+     * エンティティを読み込まずに1回のDELETE文で削除し、削除件数で存在を確認する。
      *
      * @param id 書籍のID
      * @throws BookNotFoundException 書籍が取得できない場合に発生する
      */
     @Transactional(readOnly = false)
     public void deleteBook(long id) throws BookNotFoundException {
-        if (bookRepository.existsById(id)) {
-            bookRepository.deleteById(id);
-        } else {
+        if (bookRepository.deleteIfExists(id) == 0) {
             throw new BookNotFoundException(id);
         }
+        deleted(id);
+    }
+
+    /**
+     * 指定したIDに該当する書籍を、バージョンが一致する場合のみ削除する。<br />
+     * 削除件数が0件の場合のみ存在を確認し、存在しない場合と楽観排他のエラーを区別する。
+     *
+     * @param id 書籍のID
+     * @param version バージョン
+     * @throws BookNotFoundException 書籍が取得できない場合に発生する
+     */
+    @Transactional(readOnly = false)
+    public void deleteBook(long id, long version) throws BookNotFoundException {
+        if (bookRepository.deleteIfVersionMatches(id, version) == 0) {
+            if (!bookRepository.existsById(id)) {
+                throw new BookNotFoundException(id);
+            }
+            throw new ObjectOptimisticLockingFailureException(Book.class, id);
+        }
+        deleted(id);
+    }
+
+    /**
+     * 削除した書籍の検索用のトークンを削除し、削除のイベントを発行する。
+     *
+     * @param id 書籍のID
+     */
+    private void deleted(long id) {
+        bookRepository.deleteSearchTokens(id);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(id));
     }
 
 }
@@ -0,0 +1,28 @@
+package com.example.bookmanage.service;
+
+import java.util.List;
+
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.form.BookListPage;
+
+import lombok.Value;
+
+/**
+ * キャッシュした書籍一覧の1ページ分<br />
+ * 
+ * 複数のリクエストで共有するため、取得後に内容を変更しないこと。
+ */
+@Value
+public class CachedBookList {
+
+    /**
+     * 書籍の一覧
+     */
+    private List<BookSummary> books;
+
+    /**
+     * ページ情報
+     */
+    private BookListPage page;
+
+}
@@ -0,0 +1,215 @@
+package com.example.bookmanage.web;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import com.example.bookmanage.form.BookManageForm;
+
+/**
+ * 書籍のCSVを1行ずつフォーム情報に変換するIterator<br />
+ * 
+ * 1行目はヘッダ行とし、"title"・"author"の列を読み込む(その他の列は無視する)。
+ * RFC 4180形式のダブルクォートによる囲み、エスケープ("")、囲み内の改行に対応している。
+ * 入力を先読みしないため、CSV全体をメモリに読み込まずに処理できる。
+ */
+public class BookCsvReader implements Iterator<BookManageForm> {
+
+    /**
+     * タイトルの列名
+     */
+    static final String TITLE = "title";
+
+    /**
+     * 著者の列名
+     */
+    static final String AUTHOR = "author";
+
+    /**
+     * BOM
+     */
+    private static final char BOM = '\uFEFF';
+
+    /**
+     * 入力
+     */
+    private final Reader reader;
+
+    /**
+     * タイトルの列番号
+     */
+    private final int titleIndex;
+
+    /**
+     * 著者の列番号
+     */
+    private final int authorIndex;
+
+    /**
+     * 先読みした1文字(未読の場合は-2)
+     */
+    private int peeked = -2;
+
+    /**
+     * 次のレコード
+     */
+    private List<String> next;
+
+    /**
+     * コンストラクタ<br />
+     * ヘッダ行を読み込み、タイトル・著者の列番号を決定する。
+     * 
+     * @param reader 入力
+     * @throws IllegalArgumentException ヘッダ行にタイトル・著者の列が存在しない場合に発生する
+     */
+    public BookCsvReader(Reader reader) {
+        this.reader = reader;
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new IllegalArgumentException("csv header is not found.");
+        }
+        this.titleIndex = indexOf(header, TITLE);
+        this.authorIndex = indexOf(header, AUTHOR);
+        this.next = readRecord();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public BookManageForm next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        List<String> record = next;
+        next = readRecord();
+
+        BookManageForm form = new BookManageForm();
+        form.setNewBook(true);
+        form.setTitle(get(record, titleIndex));
+        form.setAuthor(get(record, authorIndex));
+        return form;
+    }
+
+    /**
+     * ヘッダ行から列番号を取得する。
+     *
+     * @param header ヘッダ行
+     * @param name 列名
+     * @return 列番号
+     */
+    private static int indexOf(List<String> header, String name) {
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (i == 0 && !column.isEmpty() && column.charAt(0) == BOM) {
+                column = column.substring(1);
+            }
+            if (column.equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(String.format("csv header does not contain '%s'.", name));
+    }
+
+    /**
+     * レコードから列の値を取得する。列が存在しない場合、nullを返却する。
+     *
+     * @param record レコード
+     * @param index 列番号
+     * @return 列の値
+     */
+    private static String get(List<String> record, int index) {
+        return index < record.size() ? record.get(index) : null;
+    }
+
+    /**
+     * 1レコードを読み込む。空行は読み飛ばす。
+     *
+     * @return レコード(入力の終わりに達した場合はnull)
+     */
+    private List<String> readRecord() {
+        try {
+            List<String> record = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean empty = true;
+            int c;
+            while ((c = read()) != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            field.append((char) read());
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                    continue;
+                }
+                if (c == '"') {
+                    quoted = true;
+                    empty = false;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                    empty = false;
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    if (!empty || field.length() > 0) {
+                        record.add(field.toString());
+                        return record;
+                    }
+                } else {
+                    field.append((char) c);
+                    empty = false;
+                }
+            }
+            if (empty && field.length() == 0) {
+                return null;
+            }
+            record.add(field.toString());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 1文字読み込む。
+     *
+     * @return 文字(入力の終わりに達した場合は-1)
+     * @throws IOException 入力エラー
+     */
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    /**
+     * 次の1文字を先読みする。
+     *
+     * @return 文字(入力の終わりに達した場合は-1)
+     * @throws IOException 入力エラー
+     */
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+}
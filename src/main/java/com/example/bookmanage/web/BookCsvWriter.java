@@ -0,0 +1,100 @@
+package com.example.bookmanage.web;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import com.example.bookmanage.domain.Book;
+
+/**
+ * 書籍をCSVで出力するWriter<br />
+ * 
+ * RFC 4180形式で出力する。カンマ・ダブルクォート・改行を含む値はダブルクォートで囲む。
+ * 出力したCSVは、BookCsvReaderでそのまま読み込むことができる。
+ */
+public class BookCsvWriter {
+
+    /**
+     * ヘッダ行
+     */
+    static final String[] HEADER = {
+            "id", BookCsvReader.TITLE, BookCsvReader.AUTHOR, "version",
+            "created_user", "created_date_time", "updated_user", "updated_date_time"
+    };
+
+    /**
+     * 改行
+     */
+    private static final String CRLF = "\r\n";
+
+    /**
+     * 出力先
+     */
+    private final Writer writer;
+
+    /**
+     * コンストラクタ
+     *
+     * @param writer 出力先
+     */
+    public BookCsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * ヘッダ行を出力する。
+     */
+    public void writeHeader() {
+        writeRecord((Object[]) HEADER);
+    }
+
+    /**
+     * 書籍を1行出力する。
+     *
+     * @param book 書籍
+     */
+    public void write(Book book) {
+        writeRecord(book.getId(), book.getTitle(), book.getAuthor(), book.getVersion(),
+                book.getCreatedUser(), book.getCreatedDateTime(), book.getUpdatedUser(), book.getUpdatedDateTime());
+    }
+
+    /**
+     * 1レコードを出力する。
+     *
+     * @param values 値
+     */
+    private void writeRecord(Object... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(values[i]);
+            }
+            writer.write(CRLF);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 1項目を出力する。
+     *
+     * @param value 値
+     * @throws IOException 出力エラー
+     */
+    private void writeField(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = String.valueOf(value);
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\r') < 0 && text.indexOf('\n') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.example.bookmanage.web;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import com.example.bookmanage.form.BookListCondition;
+import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.service.BookCatalogVersion;
+
+/**
+ * 書籍管理画面のETag<br />
+ * 
+ * 一覧はカタログのバージョン、詳細は書籍のバージョン(@Version)とカタログのバージョンからETagを作る。
+ * 書籍の行は読み込まないため、ETagが一致すればDBの検索と画面の描画を行わずに304を返却できる。<br />
+ * 画面にはログインユーザーとCSRFトークンも埋め込まれるため、これらのハッシュもETagに含める。
+ * 起動ごとの値も含め、再起動(画面の変更)やノード間でカタログのバージョンが一致しても誤って304を返却しないようにする。<br />
+ * キーワード検索の結果は検索インデックスの構築状況によって変わるため、ETagを作らない。<br />
+ * 更新時のIf-Matchには詳細のETagを指定し、そのうち書籍のバージョンのみを楽観排他に使用する。
+ */
+@Component
+public class BookETags {
+
+    /**
+     * 画面の応答に設定するCache-Control<br />
+     * ユーザーごとの画面のため共有キャッシュには保存させず、表示のたびに再検証させる。
+     */
+    static final String CACHE_CONTROL = "private, no-cache";
+
+    /**
+     * If-Matchに指定されたバージョンが解釈できない場合の値<br />
+     * バージョンは0から始まるため、どの書籍とも一致しない。
+     */
+    static final long UNMATCHED_VERSION = -1;
+
+    /**
+     * 詳細のETagから書籍のIDとバージョンを取り出すパターン
+     */
+    private static final Pattern BOOK_ETAG = Pattern.compile("\"b(\\d+)v(\\d+)-[^\"]*\"");
+
+    /**
+     * 起動ごとの値
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    /**
+     * 書籍全体(カタログ)のバージョン
+     */
+    private BookCatalogVersion catalogVersion;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    private BookRepository repository;
+
+    /**
+     * コンストラクタ
+     *
+     * @param catalogVersion 書籍全体(カタログ)のバージョン
+     * @param repository 書籍のリポジトリ
+     */
+    @Autowired
+    public BookETags(BookCatalogVersion catalogVersion, BookRepository repository) {
+        this.catalogVersion = catalogVersion;
+        this.repository = repository;
+    }
+
+    /**
+     * 書籍一覧のETagを返却する。
+     *
+     * @param condition 書籍一覧の表示条件
+     * @param principal 認証情報
+     * @param request リクエスト
+     * @return ETag(キーワード検索の場合、null)
+     */
+    public String forList(BookListCondition condition, Principal principal, ServletWebRequest request) {
+        if (StringUtils.hasText(condition.getQ())) {
+            return null;
+        }
+        return "l-" + epoch + "-" + catalogVersion.current() + "-" + viewer(principal, request);
+    }
+
+    /**
+     * 書籍の詳細のETagを返却する。
+     *
+     * @param id 書籍のID
+     * @param condition 書籍一覧の表示条件
+     * @param principal 認証情報
+     * @param request リクエスト
+     * @return ETag(書籍が存在しない場合、キーワード検索の場合、null)
+     */
+    public String forBook(long id, BookListCondition condition, Principal principal, ServletWebRequest request) {
+        if (StringUtils.hasText(condition.getQ())) {
+            return null;
+        }
+        // 詳細と一緒に表示する一覧のため、書籍のバージョンより先にカタログのバージョンを取得する
+        long catalog = catalogVersion.current();
+        return repository.findVersionById(id)
+                .map(version -> "b" + id + "v" + version + "-" + epoch + "-" + catalog + "-" + viewer(principal, request))
+                .orElse(null);
+    }
+
+    /**
+     * If-Matchに指定された詳細のETagから、書籍のバージョンを返却する。<br />
+     * 弱いETagは使用しない。指定したIDの書籍のETagが含まれない場合、どのバージョンとも一致しない値を返却する。
+     *
+     * @param id 書籍のID
+     * @param ifMatch If-Matchの値
+     * @return 書籍のバージョン(If-Matchが指定されていない場合、"*"の場合、null)
+     */
+    public Long versionOf(long id, String ifMatch) {
+        if (!StringUtils.hasText(ifMatch) || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        Matcher matcher = BOOK_ETAG.matcher(ifMatch);
+        while (matcher.find()) {
+            int start = matcher.start();
+            boolean weak = start >= 2 && ifMatch.startsWith("W/", start - 2);
+            if (!weak && Long.parseLong(matcher.group(1)) == id) {
+                return Long.parseLong(matcher.group(2));
+            }
+        }
+        return UNMATCHED_VERSION;
+    }
+
+    /**
+     * ETagがIf-None-Matchと一致するか判定する。<br />
+     * ETagがある場合は、応答にETagとCache-Controlを設定する。
+     * リダイレクト元からのメッセージ(フラッシュ属性)を表示する場合は、判定しない。
+     *
+     * @param etag ETag(nullの場合、判定しない)
+     * @param request リクエスト
+     * @return 一致した場合、true(304を返却する)
+     */
+    public boolean checkNotModified(String etag, ServletWebRequest request) {
+        if (etag == null || !CollectionUtils.isEmpty(RequestContextUtils.getInputFlashMap(request.getRequest()))) {
+            return false;
+        }
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        return request.checkNotModified(etag);
+    }
+
+    /**
+     * 画面を表示するユーザーを表すハッシュを返却する。
+     *
+     * @param principal 認証情報
+     * @param request リクエスト
+     * @return ユーザー名、CSRFトークン、ロケールのハッシュ
+     */
+    private String viewer(Principal principal, ServletWebRequest request) {
+        CsrfToken csrf = (CsrfToken) request.getAttribute(CsrfToken.class.getName(),
+                RequestAttributes.SCOPE_REQUEST);
+        String source = (principal == null ? "" : principal.getName())
+                + "\n" + (csrf == null ? "" : csrf.getToken())
+                + "\n" + request.getLocale();
+        return DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+}
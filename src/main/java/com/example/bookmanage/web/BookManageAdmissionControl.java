@@ -0,0 +1,283 @@
+package com.example.bookmanage.web;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.example.bookmanage.exception.BookManageOverloadedException;
+import com.example.bookmanage.form.BookListCondition;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 書籍管理サービスの受付制御(Aspect)<br />
+ * 
+ * DB接続プールに空きがない場合、接続の待ち時間を見込み、上限を超える場合はサービスを実行せずに
+ * BookManageOverloadedExceptionを発生させる(BookManageExceptionHandlerが503を返却する)。
+ * 接続待ちでTomcatのスレッドが滞留する代わりに、すぐに失敗させて再試行を促す。
+ * 書籍の詳細のETag(書籍のバージョンをDBから取得する)も、取得前に同じ判定を行う。
+ * 一覧の表示(initForm)はキャッシュにある場合DBに接続しないため、検索の場合と、
+ * 書籍一覧のキャッシュにない一覧を取得する場合(BookListCacheの取得処理の実行前)のみ判定する。
+ * 1つのリクエストで判定を通過した後は、以降のサービスの呼び出しでは判定しない。
+ * 
+ * 見込みの待ち時間は、(接続待ちのスレッド数 + 1) × 接続の平均使用時間 ÷ プールの最大接続数とする。
+ * 平均使用時間はhikaricp.connections.usageのタイマーから、直近の区間の値を求める。
+ * 受け付けなかった回数はbookmanage.db-admission.rejectedのカウンタで参照できる。
+ * 
+ * bookmanage.db-admission.max-waitに待ち時間の上限(デフォルト500ms、負の値で無効)を設定する。
+ * DataSourceがHikariCPでない場合は制御しない。
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BookManageAdmissionControl {
+
+    /**
+     * 接続の使用時間のタイマー名(HikariCPのメトリクス)
+     */
+    static final String USAGE_METER = "hikaricp.connections.usage";
+
+    /**
+     * 受け付けなかった回数のカウンタ名
+     */
+    static final String REJECTED_METER = "bookmanage.db-admission.rejected";
+
+    /**
+     * 判定を通過したことを記録するリクエストの属性名
+     */
+    static final String ADMITTED_ATTRIBUTE = BookManageAdmissionControl.class.getName() + ".ADMITTED";
+
+    /**
+     * 平均使用時間を求める区間(ナノ秒)
+     */
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * DataSource
+     */
+    private DataSource dataSource;
+
+    /**
+     * メトリクスの登録先
+     */
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 待ち時間の上限(ミリ秒、負の値の場合は制御しない)
+     */
+    private final long maxWaitMillis;
+
+    /**
+     * 受け付けなかった回数
+     */
+    private final Counter rejected;
+
+    /**
+     * HikariCPのDataSource(初回の判定時に取得する)
+     */
+    private volatile HikariDataSource hikari;
+
+    /**
+     * 前回の区間の終了時刻(ナノ秒)
+     */
+    private long sampledAt;
+
+    /**
+     * 前回の区間の終了時点の使用回数
+     */
+    private long sampledCount;
+
+    /**
+     * 前回の区間の終了時点の合計使用時間(ミリ秒)
+     */
+    private double sampledTotalMillis;
+
+    /**
+     * 直近の区間の平均使用時間(ミリ秒)
+     */
+    private double usageMillis;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param dataSource DataSource
+     * @param meterRegistry メトリクスの登録先
+     * @param maxWait 待ち時間の上限(負の値の場合は制御しない)
+     */
+    @Autowired
+    public BookManageAdmissionControl(DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${bookmanage.db-admission.max-wait:500ms}") Duration maxWait) {
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.maxWaitMillis = maxWait.toMillis();
+        this.rejected = Counter.builder(REJECTED_METER)
+                .description("DB接続の待ち時間が上限を超える見込みのため受け付けなかった回数")
+                .register(meterRegistry);
+        this.sampledAt = System.nanoTime() - SAMPLE_INTERVAL_NANOS;
+    }
+
+    /**
+     * 書籍管理サービス(一覧の表示を除く)、書籍の詳細のETagの実行前に、DB接続の見込みの待ち時間を判定する。
+     *
+     * @param pjp JoinPoint
+     * @return JoinPoint実行時の戻り値
+     * @throws Throwable JoinPoint実行時の例外
+     * @throws BookManageOverloadedException 見込みの待ち時間が上限を超える場合に発生する
+     */
+    @Around("execution(public * com.example.bookmanage.service.BookManageService.*(..))"
+            + " && !execution(public * com.example.bookmanage.service.BookManageService.initForm(..))"
+            + " || execution(public * com.example.bookmanage.web.BookETags.forBook(..))")
+    public Object admit(ProceedingJoinPoint pjp) throws Throwable {
+        check();
+        return pjp.proceed();
+    }
+
+    /**
+     * 一覧の表示の実行前に、検索の場合のみDB接続の見込みの待ち時間を判定する。<br />
+     * 検索以外の一覧はキャッシュから取得し、キャッシュにない場合はadmitOnCacheMissで判定する。
+     * (最優先のAspectのため、引数はバインドせずにJoinPointから取得する)
+     *
+     * @param pjp JoinPoint
+     * @return JoinPoint実行時の戻り値
+     * @throws Throwable JoinPoint実行時の例外
+     * @throws BookManageOverloadedException 見込みの待ち時間が上限を超える場合に発生する
+     */
+    @Around("execution(public * com.example.bookmanage.service.BookManageService.initForm(..))")
+    public Object admitSearch(ProceedingJoinPoint pjp) throws Throwable {
+        Object[] args = pjp.getArgs();
+        if (args.length > 0 && StringUtils.hasText(((BookListCondition) args[0]).getQ())) {
+            check();
+        }
+        return pjp.proceed();
+    }
+
+    /**
+     * 書籍一覧のキャッシュの取得処理を置き換え、キャッシュにない一覧をDBから取得する前にのみ判定する。<br />
+     * キャッシュにある一覧は、接続プールに空きがない場合も返却する。
+     *
+     * @param pjp JoinPoint
+     * @return JoinPoint実行時の戻り値
+     * @throws Throwable JoinPoint実行時の例外
+     * @throws BookManageOverloadedException 見込みの待ち時間が上限を超える場合に発生する
+     */
+    @Around("execution(public * com.example.bookmanage.service.BookListCache.get(..))")
+    public Object admitOnCacheMiss(ProceedingJoinPoint pjp) throws Throwable {
+        Object[] args = pjp.getArgs();
+        Supplier<?> loader = (Supplier<?>) args[1];
+        Supplier<Object> admitted = () -> {
+            check();
+            return loader.get();
+        };
+        return pjp.proceed(new Object[] { args[0], admitted });
+    }
+
+    /**
+     * DB接続の見込みの待ち時間を判定する。同じリクエストで判定を通過した後は判定しない。
+     *
+     * @throws BookManageOverloadedException 見込みの待ち時間が上限を超える場合に発生する
+     */
+    private void check() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (maxWaitMillis < 0 || (attributes != null
+                && attributes.getAttribute(ADMITTED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null)) {
+            return;
+        }
+        long expectedWaitMillis = expectedWaitMillis();
+        if (expectedWaitMillis > maxWaitMillis) {
+            rejected.increment();
+            throw new BookManageOverloadedException(expectedWaitMillis, maxWaitMillis);
+        }
+        if (attributes != null) {
+            attributes.setAttribute(ADMITTED_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * 現在のDB接続プールの状態から、見込みの待ち時間を返却する。
+     * 
+     * @return 見込みの待ち時間(ミリ秒、プールが開始していない場合やHikariCPでない場合は0)
+     */
+    long expectedWaitMillis() {
+        HikariDataSource hikari = hikari();
+        HikariPoolMXBean pool = hikari == null ? null : hikari.getHikariPoolMXBean();
+        if (pool == null || pool.getIdleConnections() > 0) {
+            return 0;
+        }
+        return (long) expectedWaitMillis(pool.getThreadsAwaitingConnection(), hikari.getMaximumPoolSize(),
+                usageMillis(hikari.getPoolName()));
+    }
+
+    /**
+     * 空きがない場合の見込みの待ち時間を返却する。<br />
+     * 接続が平均使用時間ごとに最大接続数ずつ返却されるとして、先に待っているスレッドの後に取得できるまでの時間とする。
+     * 
+     * @param pending 接続待ちのスレッド数
+     * @param poolSize プールの最大接続数
+     * @param usageMillis 接続の平均使用時間(ミリ秒)
+     * @return 見込みの待ち時間(ミリ秒)
+     */
+    static double expectedWaitMillis(int pending, int poolSize, double usageMillis) {
+        return (pending + 1) * usageMillis / Math.max(1, poolSize);
+    }
+
+    /**
+     * HikariCPのDataSourceを返却する。
+     * 
+     * @return HikariCPのDataSource(HikariCPでない場合はnull)
+     */
+    private HikariDataSource hikari() {
+        HikariDataSource result = hikari;
+        if (result == null) {
+            result = DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+            hikari = result;
+        }
+        return result;
+    }
+
+    /**
+     * 直近の区間の接続の平均使用時間を返却する。<br />
+     * 区間内に返却された接続がない場合は、前の区間の値を返却する。
+     * 
+     * @param poolName プール名
+     * @return 接続の平均使用時間(ミリ秒)
+     */
+    private synchronized double usageMillis(String poolName) {
+        long now = System.nanoTime();
+        if (now - sampledAt < SAMPLE_INTERVAL_NANOS) {
+            return usageMillis;
+        }
+        Timer usage = meterRegistry.find(USAGE_METER).tag("pool", poolName).timer();
+        if (usage == null) {
+            return usageMillis;
+        }
+        long count = usage.count();
+        double totalMillis = usage.totalTime(TimeUnit.MILLISECONDS);
+        if (count > sampledCount) {
+            usageMillis = (totalMillis - sampledTotalMillis) / (count - sampledCount);
+        }
+        sampledAt = now;
+        sampledCount = count;
+        sampledTotalMillis = totalMillis;
+        return usageMillis;
+    }
+
+}
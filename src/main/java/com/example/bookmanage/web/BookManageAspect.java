@@ -3,23 +3,50 @@ package com.example.bookmanage.web;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StopWatch;
 
-import lombok.extern.slf4j.Slf4j;
+import com.example.bookmanage.metrics.MethodTimers;
+import com.example.bookmanage.metrics.RequestTimings;
 
 /**
  * 書籍管理システムのAspect
  * 
- * コントローラとサービスのメソッドの実行時間をログ出力する。
+ * コントローラとサービスのメソッドの実行時間を、メソッドごとのタイマーに記録する。
+ * 計測結果は/actuator/methodtimingsで参照できる。
+ * サービスの実行時間は、処理中のリクエストの実行時間の内訳(Server-Timingヘッダ)にも加算する。
  */
-@Slf4j
 @Aspect
 @Component
 public class BookManageAspect {
 
     /**
-     * web層(Controller,ExceptionHandler)の実行時間をログ出力する。
+     * web層のタグ
+     */
+    static final String WEB = "web";
+
+    /**
+     * service層のタグ
+     */
+    static final String SERVICE = "service";
+
+    /**
+     * メソッドごとの実行時間のタイマー
+     */
+    private MethodTimers methodTimers;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param methodTimers メソッドごとの実行時間のタイマー
+     */
+    @Autowired
+    public BookManageAspect(MethodTimers methodTimers) {
+        this.methodTimers = methodTimers;
+    }
+
+    /**
+     * web層(Controller,ExceptionHandler)の実行時間を記録する。
      *
      * @param pjp JoinPoint
      * @return JoinPoint実行時の戻り値
@@ -27,20 +54,11 @@ public class BookManageAspect {
      */
     @Around("execution(* com.example.bookmanage.web.*.*(..))")
     public Object inWebLayer(ProceedingJoinPoint pjp) throws Throwable {
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        Object result;
-        try {
-            result = pjp.proceed();
-        } finally {
-            stopWatch.stop();
-            log.trace("{} : {} ms", pjp.getSignature(), stopWatch.getTotalTimeMillis());
-        }
-        return result;
+        return proceed(WEB, pjp, null);
     }
 
     /**
-     * service層(Service)の実行時間をログ出力する。
+     * service層(Service)の実行時間を記録する。
      *
      * @param pjp JoinPoint
      * @return JoinPoint実行時の戻り値
@@ -48,16 +66,32 @@ public class BookManageAspect {
      */
     @Around("execution(* com.example.bookmanage.service.*.*(..))")
     public Object inServiceLayer(ProceedingJoinPoint pjp) throws Throwable {
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        Object result;
+        return proceed(SERVICE, pjp, RequestTimings.current());
+    }
+
+    /**
+     * JoinPointを実行し、例外が発生した場合も含めて実行時間を記録する。
+     * 
+     * @param layer 層
+     * @param pjp JoinPoint
+     * @param timings 実行時間を加算するリクエストの実行時間の内訳(加算しない場合はnull)
+     * @return JoinPoint実行時の戻り値
+     * @throws Throwable JoinPoint実行時の例外
+     */
+    private Object proceed(String layer, ProceedingJoinPoint pjp, RequestTimings timings) throws Throwable {
+        long start = System.nanoTime();
+        if (timings != null) {
+            timings.enterService();
+        }
         try {
-            result = pjp.proceed();
+            return pjp.proceed();
         } finally {
-            stopWatch.stop();
-            log.trace("{} : {} ms", pjp.getSignature(), stopWatch.getTotalTimeMillis());
+            long nanos = System.nanoTime() - start;
+            methodTimers.record(layer, pjp, nanos);
+            if (timings != null) {
+                timings.exitService(nanos);
+            }
         }
-        return result;
     }
 
 }
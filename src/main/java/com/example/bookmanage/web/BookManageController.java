@@ -4,9 +4,12 @@ import java.security.Principal;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,11 +18,19 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.bookmanage.exception.BookManageValidationException;
 import com.example.bookmanage.exception.BookNotFoundException;
+import com.example.bookmanage.form.BookBulkForm;
+import com.example.bookmanage.form.BookListCondition;
 import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.metrics.QueryBudget;
+import com.example.bookmanage.metrics.SlowQueryLog;
+import com.example.bookmanage.service.BookBatchService;
 import com.example.bookmanage.service.BookManageService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -46,6 +57,11 @@ public class BookManageController {
      */
     private static final String REDIRECT_TO_BOOKS = "redirect:/" + BOOKS;
 
+    /**
+     * 管理者用画面へのリダイレクトのURL
+     */
+    private static final String REDIRECT_TO_ADMIN = "redirect:/admin";
+
     /**
      * 書籍管理システムのサービス
      */
@@ -56,15 +72,38 @@ public class BookManageController {
      */
     private MessageSource messageSource;
 
+    /**
+     * 書籍管理画面のETag
+     */
+    private BookETags etags;
+
+    /**
+     * 書籍の一括更新・一括削除のサービス
+     */
+    private BookBatchService batchService;
+
+    /**
+     * 実行時間がしきい値を超えたSQLの記録
+     */
+    private SlowQueryLog slowQueryLog;
+
     /**
      * コンストラクタ
      * 
      * @param service 書籍管理システムのサービス
+     * @param messageSource メッセージソース
+     * @param etags 書籍管理画面のETag
+     * @param batchService 書籍の一括更新・一括削除のサービス
+     * @param slowQueryLog 実行時間がしきい値を超えたSQLの記録
      */
     @Autowired
-    public BookManageController(BookManageService service, MessageSource messageSource) {
+    public BookManageController(BookManageService service, MessageSource messageSource, BookETags etags,
+            BookBatchService batchService, SlowQueryLog slowQueryLog) {
         this.service = service;
         this.messageSource = messageSource;
+        this.etags = etags;
+        this.batchService = batchService;
+        this.slowQueryLog = slowQueryLog;
     }
 
     /**
@@ -125,17 +164,36 @@ public class BookManageController {
     // ------------------------------------------------------------------------
 
     /**
-     * 書籍一覧を読み込む。
+     * 書籍一覧を読み込む。<br />
+     * If-None-MatchがETagと一致する場合、サービスを呼び出さずに304を返却する。
      * 
-     * @return モデルビュー
+     * @param principal 認証情報
+     * @param condition 書籍一覧の表示条件
+     * @param request リクエスト
+     * @return モデルビュー(304を返却する場合、null)
      */
     @GetMapping(value = "/books")
-    public ModelAndView readBooks(Principal principal) {
+    @QueryBudget(1)
+    public ModelAndView readBooks(Principal principal, BookListCondition condition, ServletWebRequest request) {
+        if (etags.checkNotModified(etags.forList(condition, principal, request), request)) {
+            return null;
+        }
+        return toBookList(principal, condition);
+    }
+
+    /**
+     * 書籍一覧を設定したモデルビューを返却する。
+     * 
+     * @param principal 認証情報
+     * @param condition 書籍一覧の表示条件
+     * @return モデルビュー
+     */
+    private ModelAndView toBookList(Principal principal, BookListCondition condition) {
         // 認証情報を取得
         Authentication authentication = (Authentication) principal;
         String userName = authentication.getName();
 
-        BookManageForm form = service.initForm();
+        BookManageForm form = service.initForm(condition);
         ModelAndView modelAndView = toBookPages();
         modelAndView.addObject("bookManageForm", form);
         modelAndView.addObject("userName", userName);
@@ -152,83 +210,126 @@ public class BookManageController {
     }
 
     /**
-     * 指定したIDに該当する書籍を読み込む。
+     * 指定したIDに該当する書籍を読み込む。<br />
+     * If-None-MatchがETagと一致する場合、サービスを呼び出さずに304を返却する。
+     * SQLはETagのバージョン、書籍、一覧の取得の3回。
      *
      * @param id 書籍のID
-     * @return モデルビュー
+     * @param principal 認証情報
+     * @param condition 書籍一覧の表示条件
+     * @param request リクエスト
+     * @return モデルビュー(304を返却する場合、null)
      * @throws Throwable ビジネス例外以外の例外が発生した場合、throwされる
      */
     @GetMapping(value = "/books/{id}")
-    public ModelAndView readOneBook(@PathVariable long id) throws Throwable {
+    @QueryBudget(3)
+    public ModelAndView readOneBook(@PathVariable long id, Principal principal, BookListCondition condition,
+            ServletWebRequest request) throws Throwable {
+        if (etags.checkNotModified(etags.forBook(id, condition, principal, request), request)) {
+            return null;
+        }
         ModelAndView modelAndView = toBookPages();
         try {
-            BookManageForm form = service.readOneBook(id);
+            BookManageForm form = service.readOneBook(id, condition);
             modelAndView.addObject("bookId", id);
             modelAndView.addObject("bookManageForm", form);
             return modelAndView;
         } catch (Throwable t) {
-            return handleException(t);
+            return handleException(t, condition);
         }
     }
 
     /**
-     * フォーム情報から書籍を新規登録する。
+     * フォーム情報から書籍を新規登録する。<br />
+     * SQLは採番(起動直後は2回)、書籍の登録、検索用トークンの登録(バッチ)の4回。
      *
      * @param form フォーム情報
      * @param result Validatorの結果
+     * @param condition 書籍一覧の表示条件
      * @return モデルビュー
      * @throws Throwable ビジネス例外以外の例外が発生した場合、throwされる
      */
     @PostMapping(value = "/books")
-    public ModelAndView createOneBook(@Validated @ModelAttribute BookManageForm form, BindingResult result)
-            throws Throwable {
+    @QueryBudget(4)
+    public ModelAndView createOneBook(@Validated @ModelAttribute BookManageForm form, BindingResult result,
+            BookListCondition condition) throws Throwable {
         try {
             validateInputFormData(form, result);
 
             service.createBook(form);
         } catch (Throwable t) {
-            return handleException(form, t);
+            return handleException(form, t, condition);
         }
         return new ModelAndView(REDIRECT_TO_BOOKS);
     }
 
     /**
-     * 指定したIDの書籍をフォーム情報の内容に更新する。
+     * 指定したIDの書籍をフォーム情報の内容に更新する。<br />
+     * If-Matchに詳細のETagが指定された場合、フォームのバージョンの代わりにETagのバージョンで楽観排他を行い、
+     * 一致しない場合は412を返却する。
+     * SQLは書籍の更新、検索用トークンの削除と登録(バッチ)の3回(エラーの場合は更新、存在の確認、一覧の取得の3回)。
      *
      * @param id 書籍のID
      * @param form フォーム情報
      * @param result Validatorの結果
+     * @param condition 書籍一覧の表示条件
+     * @param ifMatch If-Matchの値
      * @return モデルビュー
      * @throws Throwable ビジネス例外以外の例外が発生した場合、throwされる
      */
     @PutMapping(value = "/books/{id}")
+    @QueryBudget(3)
     public ModelAndView updateOneBook(@PathVariable long id, @Validated @ModelAttribute BookManageForm form,
-            BindingResult result) throws Throwable {
+            BindingResult result, BookListCondition condition,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws Throwable {
+        Long matchVersion = etags.versionOf(id, ifMatch);
         try {
             validateInputFormData(form, result);
 
+            if (matchVersion != null) {
+                form.setVersion(matchVersion);
+            }
             service.updateBook(id, form);
         } catch (Exception e) {
-            ModelAndView mav = handleException(form, e);
+            ModelAndView mav = handleException(form, e, condition);
             mav.addObject("bookId", id);
+            if (matchVersion != null && e instanceof ObjectOptimisticLockingFailureException) {
+                mav.setStatus(HttpStatus.PRECONDITION_FAILED);
+            }
             return mav;
         }
         return new ModelAndView(REDIRECT_TO_BOOKS);
     }
 
     /**
-     * 指定したIDの書籍を削除する。
+     * 指定したIDの書籍を削除する。<br />
+     * If-Matchに詳細のETagが指定された場合、ETagのバージョンで楽観排他を行い、
+     * 一致しない場合は412を返却する。
+     * SQLは書籍と検索用トークンの削除の2回(エラーの場合は削除、存在の確認、一覧の取得の3回)。
      *
      * @param id 書籍のID
+     * @param condition 書籍一覧の表示条件
+     * @param ifMatch If-Matchの値
      * @return モデルビュー
      * @throws Throwable ビジネス例外以外の例外が発生した場合、throwされる
      */
     @DeleteMapping(value = "/books/{id}")
-    public ModelAndView deleteOneBook(@PathVariable long id) throws Throwable {
+    @QueryBudget(3)
+    public ModelAndView deleteOneBook(@PathVariable long id, BookListCondition condition,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws Throwable {
+        Long matchVersion = etags.versionOf(id, ifMatch);
         try {
-            service.deleteBook(id);
+            if (matchVersion != null) {
+                service.deleteBook(id, matchVersion);
+            } else {
+                service.deleteBook(id);
+            }
         } catch (Throwable t) {
-            return handleException(t);
+            ModelAndView mav = handleException(t, condition);
+            if (matchVersion != null && t instanceof ObjectOptimisticLockingFailureException) {
+                mav.setStatus(HttpStatus.PRECONDITION_FAILED);
+            }
+            return mav;
         }
         return new ModelAndView(REDIRECT_TO_BOOKS);
     }
@@ -238,18 +339,84 @@ public class BookManageController {
     // ------------------------------------------------------------------------
 
     /**
-     * 管理者用画面へのアクセスした時の処理。
+     * 管理者用画面へのアクセスした時の処理。<br />
+     * 実行時間がしきい値を超えたSQLも表示するため、ETagにはSQLの記録のバージョンを含める。
      *
      * @param principal 認証情報
-     * @return モデルビュー
+     * @param condition 書籍一覧の表示条件
+     * @param request リクエスト
+     * @return モデルビュー(304を返却する場合、null)
      */
     @GetMapping("/admin")
-    public ModelAndView admin(Principal principal) {
-        ModelAndView modelAndView = readBooks(principal);
+    @QueryBudget(1)
+    public ModelAndView admin(Principal principal, BookListCondition condition, ServletWebRequest request) {
+        String etag = etags.forList(condition, principal, request);
+        if (etags.checkNotModified(etag == null ? null : etag + "-s" + slowQueryLog.version(), request)) {
+            return null;
+        }
+        ModelAndView modelAndView = toBookList(principal, condition);
         modelAndView.setViewName("admin");
+        modelAndView.addObject("slowQueries", slowQueryLog.entries());
         return modelAndView;
     }
 
+    /**
+     * 著者と作成日の範囲に該当する書籍の著者を一括変更する。
+     *
+     * @param form 一括操作のフォーム情報
+     * @param result Validatorの結果
+     * @param redirectAttributes リダイレクト先に渡す属性
+     * @return 管理者用画面へのリダイレクト
+     */
+    @PostMapping("/admin/rename-author")
+    @QueryBudget(4)
+    public ModelAndView renameAuthor(@Validated @ModelAttribute BookBulkForm form, BindingResult result,
+            RedirectAttributes redirectAttributes) {
+        if (result.hasErrors() || !StringUtils.hasText(form.getAuthor())
+                || !StringUtils.hasText(form.getNewAuthor())) {
+            return redirectToAdminWithError(redirectAttributes);
+        }
+        int count = batchService.renameAuthor(form);
+        log.info("rename author : {} books ({} -> {})", count, form.getAuthor(), form.getNewAuthor());
+        redirectAttributes.addFlashAttribute("infoMessage",
+                messageSource.getMessage("admin.renamed", new Object[] { count }, null));
+        return new ModelAndView(REDIRECT_TO_ADMIN);
+    }
+
+    /**
+     * 作成ユーザと作成日の範囲に該当する書籍を一括削除する。
+     *
+     * @param form 一括操作のフォーム情報
+     * @param result Validatorの結果
+     * @param redirectAttributes リダイレクト先に渡す属性
+     * @return 管理者用画面へのリダイレクト
+     */
+    @PostMapping("/admin/purge")
+    @QueryBudget(3)
+    public ModelAndView purge(@Validated @ModelAttribute BookBulkForm form, BindingResult result,
+            RedirectAttributes redirectAttributes) {
+        if (result.hasErrors() || !StringUtils.hasText(form.getCreatedUser())) {
+            return redirectToAdminWithError(redirectAttributes);
+        }
+        int count = batchService.purgeByCreatedUser(form);
+        log.info("purge books : {} books (created by {})", count, form.getCreatedUser());
+        redirectAttributes.addFlashAttribute("infoMessage",
+                messageSource.getMessage("admin.purged", new Object[] { count }, null));
+        return new ModelAndView(REDIRECT_TO_ADMIN);
+    }
+
+    /**
+     * 入力内容のエラーメッセージを設定し、管理者用画面にリダイレクトする。
+     *
+     * @param redirectAttributes リダイレクト先に渡す属性
+     * @return 管理者用画面へのリダイレクト
+     */
+    private ModelAndView redirectToAdminWithError(RedirectAttributes redirectAttributes) {
+        redirectAttributes.addFlashAttribute("errorMessage",
+                messageSource.getMessage("error.validation", null, null));
+        return new ModelAndView(REDIRECT_TO_ADMIN);
+    }
+
     // ------------------------------------------------------------------------
     // エラー処理
     // ------------------------------------------------------------------------
@@ -285,13 +452,14 @@ public class BookManageController {
      * ビジネス例外の場合、エラーメッセージを設定したモデルビューを返却する。
      *
      * @param t 例外
+     * @param condition 書籍一覧の表示条件
      * @return モデルビュー
      * @throws Throwable ビジネス例外以外の例外が発生した場合、throwされる
      */
-    private ModelAndView handleException(Throwable t) throws Throwable {
+    private ModelAndView handleException(Throwable t, BookListCondition condition) throws Throwable {
         BookManageForm form = new BookManageForm();
         form.setNewBook(true);
-        return handleException(form, t);
+        return handleException(form, t, condition);
     }
 
     /**
@@ -300,25 +468,27 @@ public class BookManageController {
      *
      * @param form フォーム情報
      * @param t 例外
+     * @param condition 書籍一覧の表示条件
      * @return モデルビュー
      * @throws Throwable ビジネス例外以外の例外が発生した場合、throwされる
      */
-    private ModelAndView handleException(BookManageForm form, Throwable t) throws Throwable {
+    private ModelAndView handleException(BookManageForm form, Throwable t, BookListCondition condition)
+            throws Throwable {
         if (t instanceof BookNotFoundException) {
             // 書籍が取得出来ない場合
             String message = messageSource.getMessage("error.booknotfound", null, null);
             log.warn(message, t);
-            return toBookPageForError(form, message);
+            return toBookPageForError(form, message, condition);
         } else if (t instanceof ObjectOptimisticLockingFailureException) {
             // 楽観排他でエラーが発生した場合
             String message = messageSource.getMessage("error.optlockfailure", null, null);
             log.warn(message, t);
-            return toBookPageForError(form, message);
+            return toBookPageForError(form, message, condition);
         } else if (t instanceof BookManageValidationException) {
             // 入力内容のエラーが発生した場合
             String message = messageSource.getMessage("error.validation", null, null);
             log.warn(message, t);
-            return toBookPageForError(form, message);
+            return toBookPageForError(form, message, condition);
         }
 
         throw t;
@@ -326,16 +496,19 @@ public class BookManageController {
 
     /**
      * エラーメッセージを設定したモデルビューを返却する。<br />
-     * 書籍一覧の設定も行う。
+     * 書籍一覧は表示条件に該当する1ページ分のみ設定する。
      *
      * @param form フォーム情報
      * @param errorMessage エラーメッセージ
+     * @param condition 書籍一覧の表示条件
      * @return モデルビュー
      */
-    private ModelAndView toBookPageForError(BookManageForm form, String errorMessage) {
-        // 書籍一覧を取得し直す
-        BookManageForm initForm = service.initForm();
+    private ModelAndView toBookPageForError(BookManageForm form, String errorMessage,
+            BookListCondition condition) {
+        // 表示中のページの書籍一覧を取得し直す
+        BookManageForm initForm = service.initForm(condition);
         form.setBooks(initForm.getBooks());
+        form.setPage(initForm.getPage());
         ModelAndView modelAndView = toBookPages();
         modelAndView.addObject("bookManageForm", form);
         modelAndView.addObject("errorMessage", errorMessage);
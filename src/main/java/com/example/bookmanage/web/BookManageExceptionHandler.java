@@ -1,7 +1,15 @@
 package com.example.bookmanage.web;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.example.bookmanage.exception.BookManageOverloadedException;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -25,4 +33,22 @@ public class BookManageExceptionHandler {
         return "error";
     }
 
+    /**
+     * DB接続の待ち時間が上限を超える見込みのため、処理を受け付けなかった場合の例外を処理する。<br />
+     * 503とRetry-Afterヘッダを設定し、エラー画面のHTML名を返却する。
+     * 
+     * @param e 例外
+     * @param response レスポンス
+     * @param model モデル
+     * @return エラー画面のHTML名
+     */
+    @ExceptionHandler(value = {BookManageOverloadedException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String handleOverloaded(BookManageOverloadedException e, HttpServletResponse response, Model model) {
+        log.warn(e.getMessage());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        model.addAttribute("overloaded", true);
+        return "error";
+    }
+
 }
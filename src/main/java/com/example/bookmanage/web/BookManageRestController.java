@@ -0,0 +1,314 @@
+package com.example.bookmanage.web;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.search.BookSuggestIndex;
+import com.example.bookmanage.search.BookSuggestions;
+import com.example.bookmanage.service.BookBatchResult;
+import com.example.bookmanage.service.BookBatchService;
+import com.example.bookmanage.service.BookChange;
+import com.example.bookmanage.service.BookExportService;
+import com.example.bookmanage.service.BookImportResult;
+import com.example.bookmanage.service.BookImportService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 書籍管理システムのRESTコントローラ<br />
+ * 
+ * 画面を介さずに、スクリプトなどから書籍をまとめて扱うためのAPIを提供する。
+ */
+@Slf4j
+@RestController
+public class BookManageRestController {
+
+    /**
+     * CSVのメディアタイプ
+     */
+    static final String TEXT_CSV = "text/csv";
+
+    /**
+     * 一括出力でレスポンスをflushする件数の間隔
+     */
+    private static final int FLUSH_INTERVAL = 500;
+
+    /**
+     * 書籍の一括登録のサービス
+     */
+    private BookImportService importService;
+
+    /**
+     * 書籍の一括出力のサービス
+     */
+    private BookExportService exportService;
+
+    /**
+     * 書籍の一括更新・一括削除のサービス
+     */
+    private BookBatchService batchService;
+
+    /**
+     * JSONのObjectMapper
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * 入力補完用のインデックス
+     */
+    private BookSuggestIndex suggestIndex;
+
+    /**
+     * コンストラクタ
+     * 
+     * @param importService 書籍の一括登録のサービス
+     * @param exportService 書籍の一括出力のサービス
+     * @param batchService 書籍の一括更新・一括削除のサービス
+     * @param objectMapper JSONのObjectMapper
+     * @param suggestIndex 入力補完用のインデックス
+     */
+    @Autowired
+    public BookManageRestController(BookImportService importService, BookExportService exportService,
+            BookBatchService batchService, ObjectMapper objectMapper, BookSuggestIndex suggestIndex) {
+        this.importService = importService;
+        this.exportService = exportService;
+        this.batchService = batchService;
+        this.objectMapper = objectMapper;
+        this.suggestIndex = suggestIndex;
+    }
+
+    /**
+     * キーワードに前方一致するタイトル・著者の候補を返却する。<br />
+     * 入力のたびに呼び出されるため、DBにはアクセスせずメモリ上のインデックスから返却する。
+     *
+     * @param q キーワード
+     * @param limit 最大件数
+     * @return 候補
+     */
+    @GetMapping(value = "/books/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public BookSuggestions suggest(@RequestParam(name = "q", defaultValue = "") String q,
+            @RequestParam(name = "limit", defaultValue = "" + BookSuggestIndex.MAX_SUGGESTIONS) int limit) {
+        return suggestIndex.suggest(q, Math.min(Math.max(limit, 0), BookSuggestIndex.MAX_SUGGESTIONS));
+    }
+
+    /**
+     * リクエストボディのCSVから書籍を一括登録する。<br />
+     * CSVは1行ずつ読み込みながら登録するため、リクエストボディ全体をメモリに保持しない。
+     *
+     * @param request リクエスト
+     * @return 一括登録の結果
+     * @throws IOException リクエストボディの読み込みに失敗した場合に発生する
+     */
+    @PostMapping(value = "/books/import", consumes = TEXT_CSV, produces = MediaType.APPLICATION_JSON_VALUE)
+    public BookImportResult importBooks(HttpServletRequest request) throws IOException {
+        Charset charset = StringUtils.hasText(request.getCharacterEncoding())
+                ? Charset.forName(request.getCharacterEncoding())
+                : StandardCharsets.UTF_8;
+        return importBooks(request.getInputStream(), charset);
+    }
+
+    /**
+     * 入力ストリームのCSVから書籍を一括登録する。
+     *
+     * @param in 入力ストリーム
+     * @param charset 文字コード
+     * @return 一括登録の結果
+     * @throws IOException 入力ストリームの読み込みに失敗した場合に発生する
+     */
+    BookImportResult importBooks(InputStream in, Charset charset) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
+            return importService.importBooks(new BookCsvReader(reader));
+        }
+    }
+
+    /**
+     * 書籍を一括更新する。<br />
+     * 全件を1つのトランザクションで処理し、1件ごとの結果(更新・存在しない・バージョン不一致など)を返却する。
+     *
+     * @param changes 変更内容(ID、更新前のバージョン、タイトル、著者)
+     * @return 変更内容と同じ順の結果
+     */
+    @PostMapping(value = "/books/batch/update", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<BookBatchResult> updateBooks(@RequestBody List<BookChange> changes) {
+        return batchService.updateBooks(changes);
+    }
+
+    /**
+     * 書籍を一括削除する。<br />
+     * 全件を1つのトランザクションで処理し、1件ごとの結果(削除・存在しない)を返却する。
+     *
+     * @param ids 書籍のID
+     * @return IDと同じ順の結果
+     */
+    @PostMapping(value = "/books/batch/delete", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<BookBatchResult> deleteBooks(@RequestBody List<Long> ids) {
+        return batchService.deleteBooks(ids);
+    }
+
+    /**
+     * 全件をCSVまたはJSONで出力する。<br />
+     * 1件ずつレスポンスに書き込むため、件数に関わらずメモリ使用量は一定で、先頭の行からすぐに送信される。
+     *
+     * @param format 出力形式(csv、json)
+     * @return 出力内容を書き込むStreamingResponseBody
+     */
+    @GetMapping(value = "/books/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "csv") String format) {
+        StreamingResponseBody body;
+        MediaType mediaType;
+        if ("csv".equals(format)) {
+            body = this::exportCsv;
+            mediaType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+        } else if ("json".equals(format)) {
+            body = this::exportJson;
+            mediaType = MediaType.APPLICATION_JSON;
+        } else {
+            throw new IllegalArgumentException(String.format("unsupported format. (format = %s)", format));
+        }
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books." + format + "\"")
+                .body(body);
+    }
+
+    /**
+     * 全件をCSVで出力する。<br />
+     * Excelで開けるようにBOMを付与する。
+     *
+     * @param out 出力先
+     * @throws IOException 出力エラー
+     */
+    private void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        BookCsvWriter csv = new BookCsvWriter(writer);
+        csv.writeHeader();
+        writer.flush();
+        exportService.exportBooks(flushing(csv::write, writer));
+        writer.flush();
+    }
+
+    /**
+     * 全件をJSONの配列で出力する。
+     *
+     * @param out 出力先
+     * @throws IOException 出力エラー
+     */
+    private void exportJson(OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.writeStartArray();
+        json.flush();
+        exportService.exportBooks(flushing(book -> writeJson(json, book), json));
+        json.writeEndArray();
+        json.flush();
+    }
+
+    /**
+     * 書籍をJSONのオブジェクトとして出力する。
+     *
+     * @param json 出力先
+     * @param book 書籍
+     */
+    private void writeJson(JsonGenerator json, Book book) {
+        try {
+            json.writeStartObject();
+            json.writeNumberField("id", book.getId());
+            json.writeStringField("title", book.getTitle());
+            json.writeStringField("author", book.getAuthor());
+            json.writeNumberField("version", book.getVersion());
+            json.writeStringField("createdUser", book.getCreatedUser());
+            writeDateTimeField(json, "createdDateTime", book.getCreatedDateTime());
+            json.writeStringField("updatedUser", book.getUpdatedUser());
+            writeDateTimeField(json, "updatedDateTime", book.getUpdatedDateTime());
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 日時をObjectMapperの設定に従って出力する。nullの場合はnullを出力する。
+     *
+     * @param json 出力先
+     * @param name 項目名
+     * @param value 日時
+     * @throws IOException 出力エラー
+     */
+    private void writeDateTimeField(JsonGenerator json, String name, LocalDateTime value) throws IOException {
+        if (value == null) {
+            json.writeNullField(name);
+        } else {
+            json.writeObjectField(name, value);
+        }
+    }
+
+    /**
+     * 書籍を出力し、一定件数ごとに出力先をflushするConsumerを返却する。
+     *
+     * @param consumer 書籍の出力処理
+     * @param flushable flushする出力先
+     * @return Consumer
+     */
+    private Consumer<Book> flushing(Consumer<Book> consumer, Flushable flushable) {
+        long[] count = new long[1];
+        return book -> {
+            consumer.accept(book);
+            if (++count[0] % FLUSH_INTERVAL == 0) {
+                try {
+                    flushable.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * CSVの形式が不正な場合や、一括処理の件数が多すぎる場合の処理。
+     *
+     * @param e 例外
+     * @return エラーメッセージ
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleIllegalArgument(IllegalArgumentException e) {
+        log.warn("invalid request!", e);
+        return e.getMessage();
+    }
+
+}
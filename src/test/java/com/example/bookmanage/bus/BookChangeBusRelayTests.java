@@ -0,0 +1,79 @@
+package com.example.bookmanage.bus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.search.BookSearchIndex;
+import com.example.bookmanage.service.BookCatalogVersion;
+
+/**
+ * BookChangeBusRelayのテストプログラム<br />
+ * 同じチャネルに参加した別のノードから変更を通知して確認する。
+ */
+@SpringBootTest
+class BookChangeBusRelayTests {
+
+    /**
+     * 変更通知のバス(自ノード)
+     */
+    @Autowired
+    private BookChangeBus bus;
+
+    /**
+     * 書籍の検索インデックス
+     */
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    /**
+     * カタログのバージョン
+     */
+    @Autowired
+    private BookCatalogVersion catalogVersion;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    @Autowired
+    private BookRepository repository;
+
+    @Test
+    void 他のノードの変更が検索インデックスとカタログのバージョンに反映されることの確認() {
+        LoopbackBookChangeBus otherNode = ((LoopbackBookChangeBus) bus).join();
+        long version = catalogVersion.current();
+
+        otherNode.publish(BookChangedEvent.of(BookChangedEvent.Type.CREATED,
+                Book.builder().id(9999L).title("別ノードで登録したタイトル").author("著者").build()));
+
+        assertThat(searchIndex.search("別ノード", 10)).containsExactly(9999L);
+        assertThat(catalogVersion.current()).isGreaterThan(version);
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void 他のノードの一括登録がIDのみの通知から検索インデックスに反映されることの確認() {
+        LoopbackBookChangeBus otherNode = ((LoopbackBookChangeBus) bus).join();
+        String keyword = "別ノード一括" + System.nanoTime();
+        long[] ids = repository.saveAll(Arrays.asList(
+                Book.builder().title(keyword + " 1").author("著者").build(),
+                Book.builder().title(keyword + " 2").author("著者").build()))
+                .stream().mapToLong(Book::getId).toArray();
+        long version = catalogVersion.current();
+
+        otherNode.publish(new BooksImportedEvent(ids, false));
+
+        assertThat(searchIndex.search(keyword, 10)).containsExactlyInAnyOrder(ids[0], ids[1]);
+        assertThat(catalogVersion.current()).isEqualTo(version + 1);
+    }
+
+}
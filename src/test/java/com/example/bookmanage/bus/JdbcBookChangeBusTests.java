@@ -0,0 +1,128 @@
+package com.example.bookmanage.bus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BooksImportedEvent;
+
+/**
+ * JdbcBookChangeBusのテストプログラム<br />
+ * 同じDBを使用する2つのノードを作成して確認する。
+ */
+@SpringBootTest
+class JdbcBookChangeBusTests {
+
+    /**
+     * JdbcTemplate
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * TransactionTemplate
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * ノードA
+     */
+    private JdbcBookChangeBus nodeA;
+
+    /**
+     * ノードB
+     */
+    private JdbcBookChangeBus nodeB;
+
+    /**
+     * ノードAが受信した変更
+     */
+    private List<BookChangedEvent> receivedA;
+
+    /**
+     * ノードBが受信した変更
+     */
+    private List<BookChangedEvent> receivedB;
+
+    @BeforeEach
+    void setup() {
+        nodeA = new JdbcBookChangeBus(jdbcTemplate, "node-a", Duration.ofMinutes(1), Duration.ofHours(1),
+                Clock.systemDefaultZone());
+        nodeB = new JdbcBookChangeBus(jdbcTemplate, "node-b", Duration.ofMinutes(1), Duration.ofHours(1),
+                Clock.systemDefaultZone());
+        nodeA.start();
+        nodeB.start();
+        receivedA = new ArrayList<>();
+        receivedB = new ArrayList<>();
+        nodeA.subscribe(receivedA::add);
+        nodeB.subscribe(receivedB::add);
+    }
+
+    @Test
+    void publish_コミットした変更が他のノードのみに通知されることの確認() {
+        Book book = Book.builder().id(1L).title("タイトル").author("著者").build();
+        transactionTemplate.execute(status -> {
+            nodeA.publish(BookChangedEvent.of(BookChangedEvent.Type.UPDATED, book));
+            nodeA.publish(BookChangedEvent.deleted(2));
+            return null;
+        });
+
+        nodeA.poll();
+        nodeB.poll();
+
+        assertThat(receivedA).isEmpty();
+        assertThat(receivedB).containsExactly(
+                BookChangedEvent.of(BookChangedEvent.Type.UPDATED, book).toRemote(),
+                BookChangedEvent.deleted(2).toRemote());
+
+        // 受信済みの変更は再度通知されない
+        nodeB.poll();
+        assertThat(receivedB).hasSize(2);
+    }
+
+    @Test
+    void publish_一括登録がIDのみの1件の変更履歴として通知されることの確認() {
+        List<BooksImportedEvent> imported = new ArrayList<>();
+        nodeB.subscribeImports(imported::add);
+        long[] ids = {10, 11, 12};
+        Integer before = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_change_log", Integer.class);
+
+        transactionTemplate.execute(status -> {
+            nodeA.publish(new BooksImportedEvent(ids, false));
+            return null;
+        });
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_change_log", Integer.class))
+                .isEqualTo(before + 1);
+        nodeB.poll();
+        assertThat(imported).containsExactly(new BooksImportedEvent(ids, true));
+        assertThat(receivedB).isEmpty();
+    }
+
+    @Test
+    void publish_ロールバックした変更が通知されないことの確認() {
+        transactionTemplate.execute(status -> {
+            nodeA.publish(BookChangedEvent.deleted(3));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        nodeB.poll();
+
+        assertThat(receivedB).isEmpty();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.example.bookmanage.bus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+
+/**
+ * LoopbackBookChangeBusのテストプログラム
+ */
+class LoopbackBookChangeBusTests {
+
+    /**
+     * ノードA
+     */
+    private LoopbackBookChangeBus nodeA;
+
+    /**
+     * ノードAが受信した変更
+     */
+    private List<BookChangedEvent> receivedA;
+
+    /**
+     * ノードBが受信した変更
+     */
+    private List<BookChangedEvent> receivedB;
+
+    @BeforeEach
+    void setup() {
+        nodeA = new LoopbackBookChangeBus();
+        LoopbackBookChangeBus nodeB = nodeA.join();
+        receivedA = new ArrayList<>();
+        receivedB = new ArrayList<>();
+        nodeA.subscribe(receivedA::add);
+        nodeB.subscribe(receivedB::add);
+    }
+
+    @Test
+    void publish_トランザクション外の場合_他のノードにすぐに通知されることの確認() {
+        nodeA.publish(BookChangedEvent.deleted(1));
+
+        assertThat(receivedB).containsExactly(BookChangedEvent.deleted(1));
+        assertThat(receivedA).isEmpty();
+    }
+
+    @Test
+    void publish_トランザクション内の場合_コミット後に通知されることの確認() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            nodeA.publish(BookChangedEvent.deleted(1));
+            assertThat(receivedB).isEmpty();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            assertThat(receivedB).containsExactly(BookChangedEvent.deleted(1));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void isBroadcasting_他のノードが参加している場合のみtrueとなることの確認() {
+        assertTrue(nodeA.isBroadcasting());
+        assertFalse(new LoopbackBookChangeBus().isBroadcasting());
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.example.bookmanage.form;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import com.example.bookmanage.domain.Book;
+
+/**
+ * BookFormMapperのテストプログラム<br />
+ * 置き換える前のModelMapperと同じ結果になることを確認する。
+ */
+class BookFormMapperTests {
+
+    /**
+     * テストデータのタイトル
+     */
+    private static final String TEST_TITLE = "変換のタイトル";
+
+    /**
+     * テストデータの著者名
+     */
+    private static final String TEST_AUTHOR = "変換の著者名";
+
+    /**
+     * テストデータのバージョン
+     */
+    private static final long TEST_VERSION = 3;
+
+    @Test
+    void copyToForm_ModelMapperと同じ項目が反映されることの確認() {
+        // テストデータ生成
+        Book book = Book.builder().id(1L).title(TEST_TITLE).author(TEST_AUTHOR).build();
+        book.setVersion(TEST_VERSION);
+
+        // ModelMapperとBookFormMapperで変換する
+        BookManageForm expected = BookManageForm.builder().newBook(false).build();
+        new ModelMapper().map(book, expected);
+        BookManageForm actual = BookManageForm.builder().newBook(false).build();
+        BookFormMapper.copyToForm(book, actual);
+
+        // 変換結果を評価する
+        assertEquals(expected, actual);
+        assertEquals(TEST_TITLE, actual.getTitle());
+        assertEquals(TEST_VERSION, actual.getVersion());
+    }
+
+    @Test
+    void toBook_ModelMapperと同じ項目が設定されることの確認() {
+        // テストデータ生成
+        BookManageForm form = BookManageForm.builder()
+                .title(TEST_TITLE)
+                .author(TEST_AUTHOR)
+                .newBook(true)
+                .version(TEST_VERSION)
+                .build();
+
+        // ModelMapperとBookFormMapperで変換する
+        Book expected = new ModelMapper().map(form, Book.class);
+        Book actual = BookFormMapper.toBook(form);
+
+        // 変換結果を評価する
+        assertEquals(expected, actual);
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertNull(actual.getId());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.example.bookmanage.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import com.example.bookmanage.service.BookCatalogVersion;
+import com.example.bookmanage.web.BookManageAspect;
+
+/**
+ * MethodTimersのテストプログラム
+ */
+class MethodTimersTests {
+
+    /**
+     * メソッドごとの実行時間のタイマー
+     */
+    private MethodTimers methodTimers;
+
+    /**
+     * BookManageAspectを適用したカタログのバージョン
+     */
+    private BookCatalogVersion catalogVersion;
+
+    @BeforeEach
+    void setup() {
+        methodTimers = new MethodTimers();
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new BookCatalogVersion());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new BookManageAspect(methodTimers));
+        catalogVersion = factory.getProxy();
+    }
+
+    @Test
+    void record_メソッドごとに記録されることの確認() {
+        catalogVersion.current();
+        catalogVersion.current();
+        catalogVersion.increment();
+
+        List<MethodTiming> timings = methodTimers.snapshot();
+
+        assertEquals(2, timings.size());
+        assertEquals(2, find(timings, "current()").getCount());
+        assertEquals(1, find(timings, "increment()").getCount());
+    }
+
+    @Test
+    void snapshot_件数とパーセンタイルが返却されることの確認() {
+        catalogVersion.current();
+        catalogVersion.increment();
+        catalogVersion.increment();
+
+        List<MethodTiming> timings = methodTimers.snapshot();
+
+        assertEquals(2, timings.size());
+        MethodTiming increment = find(timings, "increment()");
+        assertEquals("service", increment.getLayer());
+        assertEquals("BookCatalogVersion", increment.getType());
+        assertEquals(2, increment.getCount());
+        assertTrue(increment.getTotalMillis() > 0);
+        assertArrayEquals(new String[] { "p50", "p99", "p999" }, increment.getPercentiles().keySet().toArray());
+        assertTrue(timings.get(0).getTotalMillis() >= timings.get(1).getTotalMillis());
+    }
+
+    @Test
+    void reset_記録済みの実行時間が破棄されることの確認() {
+        catalogVersion.current();
+        methodTimers.snapshot();
+        catalogVersion.current();
+
+        methodTimers.reset();
+        catalogVersion.current();
+
+        assertEquals(1, find(methodTimers.snapshot(), "current()").getCount());
+    }
+
+    /**
+     * 集計結果からメソッド名が一致するものを取得する。
+     * 
+     * @param timings 集計結果
+     * @param method メソッド名
+     * @return 集計結果
+     */
+    private static MethodTiming find(List<MethodTiming> timings, String method) {
+        return timings.stream().filter(t -> t.getMethod().equals(method)).findFirst().get();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.example.bookmanage.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * SQLの実行回数(クエリ予算)を確認するテスト用のユーティリティ<br />
+ *
+ * MockMvcでは、RequestTimingFilterを設定したうえでwithinQueryBudget()を指定し、
+ * コントローラのメソッドの@QueryBudget以内であることを確認する。
+ * サービスなどリクエスト以外では、assertQueryBudget()で処理中のSQLの実行回数を確認する。
+ */
+public final class QueryBudgets {
+
+    /**
+     * インスタンス化しない。
+     */
+    private QueryBudgets() {
+    }
+
+    /**
+     * SQLの実行回数が、コントローラのメソッドの@QueryBudget以内であることを確認するResultMatcherを返却する。
+     *
+     * @return ResultMatcher
+     */
+    public static ResultMatcher withinQueryBudget() {
+        return result -> {
+            RequestTimings timings = (RequestTimings) result.getRequest().getAttribute(RequestTimings.ATTRIBUTE);
+            assertNotNull(timings, "RequestTimingFilter is not applied");
+            assertTrue(result.getHandler() instanceof HandlerMethod, "handler is not a controller method");
+            HandlerMethod handler = (HandlerMethod) result.getHandler();
+            QueryBudget budget = handler.getMethodAnnotation(QueryBudget.class);
+            assertNotNull(budget, () -> "@QueryBudget is not specified : " + handler);
+            assertTrue(timings.getDbCount() <= budget.value(), () -> String.format(
+                    "query budget exceeded : %s (%d queries, budget %d)", handler, timings.getDbCount(),
+                    budget.value()));
+        };
+    }
+
+    /**
+     * 処理中に実行したSQLの回数が予算以内であることを確認する。
+     *
+     * @param budget SQLの実行回数の上限
+     * @param executable 処理
+     * @throws Throwable 処理で発生した例外
+     */
+    public static void assertQueryBudget(int budget, Executable executable) throws Throwable {
+        int count = countQueries(executable);
+        assertTrue(count <= budget,
+                () -> String.format("query budget exceeded : %d queries, budget %d", count, budget));
+    }
+
+    /**
+     * 処理中に実行したSQLの回数を返却する。
+     *
+     * @param executable 処理
+     * @return SQLの実行回数
+     * @throws Throwable 処理で発生した例外
+     */
+    public static int countQueries(Executable executable) throws Throwable {
+        RequestTimings timings = RequestTimings.start();
+        try {
+            executable.execute();
+        } finally {
+            RequestTimings.end();
+        }
+        return timings.getDbCount();
+    }
+
+}
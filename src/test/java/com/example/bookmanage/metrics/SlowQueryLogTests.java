@@ -0,0 +1,109 @@
+package com.example.bookmanage.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * SlowQueryLogとTimedDataSourceのテストプログラム
+ */
+class SlowQueryLogTests {
+
+    /**
+     * 委譲先のDB
+     */
+    private EmbeddedDatabase database;
+
+    /**
+     * 実行時間がしきい値を超えたSQLの記録(しきい値0で全てのSQLを記録する)
+     */
+    private SlowQueryLog slowQueryLog;
+
+    /**
+     * TimedDataSourceを使用するJdbcTemplate
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        new JdbcTemplate(database).execute("CREATE TABLE item (id BIGINT PRIMARY KEY, name VARCHAR(100))");
+
+        slowQueryLog = new SlowQueryLog(Duration.ZERO, 2, true);
+        jdbcTemplate = new JdbcTemplate(new TimedDataSource(database, () -> slowQueryLog));
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowQueryLog.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    void record_SQLとバインドパラメータと呼び出し元が記録されることの確認() {
+        jdbcTemplate.update("INSERT INTO item (id, name) VALUES (?, ?)", 1L, "name");
+
+        List<SlowQuery> entries = slowQueryLog.entries();
+
+        assertEquals(1, entries.size());
+        SlowQuery entry = entries.get(0);
+        assertEquals("INSERT INTO item (id, name) VALUES (?, ?)", entry.getSql());
+        assertEquals(Arrays.asList("1", "'name'"), entry.getParameters());
+        assertEquals("SlowQueryLogTests.record_SQLとバインドパラメータと呼び出し元が記録されることの確認", entry.getCaller());
+        assertTrue(entry.getMillis() >= 0);
+    }
+
+    @Test
+    void record_実行計画が非同期で取得されることの確認() throws InterruptedException {
+        jdbcTemplate.queryForList("SELECT name FROM item WHERE id = ?", String.class, 1L);
+
+        SlowQuery entry = slowQueryLog.entries().get(0);
+        for (int i = 0; i < 100 && entry.getPlan() == null; i++) {
+            Thread.sleep(50);
+        }
+
+        // EXPLAINの結果に、主キーのインデックスを使用することが含まれる
+        assertNotNull(entry.getPlan());
+        assertTrue(entry.getPlan().toUpperCase().contains("PRIMARY_KEY"), entry.getPlan());
+        assertTrue(slowQueryLog.version() >= 2);
+    }
+
+    @Test
+    void entries_保持する件数を超えた場合は古いものから上書きされることの確認() {
+        jdbcTemplate.queryForList("SELECT name FROM item WHERE id = ?", String.class, 1L);
+        jdbcTemplate.queryForList("SELECT name FROM item WHERE id = ?", String.class, 2L);
+        jdbcTemplate.queryForList("SELECT name FROM item WHERE id = ?", String.class, 3L);
+
+        List<SlowQuery> entries = slowQueryLog.entries();
+
+        // 新しい順に2件
+        assertEquals(2, entries.size());
+        assertEquals(Arrays.asList("3"), entries.get(0).getParameters());
+        assertEquals(Arrays.asList("2"), entries.get(1).getParameters());
+    }
+
+    @Test
+    void isSlow_しきい値が負の値の場合は記録しないことの確認() {
+        SlowQueryLog disabled = new SlowQueryLog(Duration.ofMillis(-1), 2, false);
+        try {
+            assertFalse(disabled.isSlow(Long.MAX_VALUE));
+            assertTrue(slowQueryLog.isSlow(0));
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+}
@@ -2,13 +2,26 @@ package com.example.bookmanage.repository;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.search.BookTextNormalizer;
 
 /**
  * BookRepositoryのテストプログラム<br />
@@ -53,6 +66,24 @@ class BookRepositoryTests {
     @Autowired
     private BookRepository repository;
 
+    /**
+     * エンティティマネージャのファクトリ
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * トランザクションのテンプレート
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * JdbcTemplate(検索用のトークンの件数の確認用)
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     /**
      * 新規登録した書籍のエンティティ
      */
@@ -104,4 +135,151 @@ class BookRepositoryTests {
         assertNotEquals(updBook.getUpdatedUser(), newBook.getUpdatedUser());
     }
 
+    @Test
+    @WithMockUser(username = "user")
+    void 検索用のトークンで全角半角とかなの違いを区別せずに検索できることの確認() {
+        // テストデータ生成(全角英字・半角カナ・カタカナを含む)
+        Book book = repository.saveAndFlush(Book.builder()
+                .title("ＳＰＲＩＮＧ入門　ｶﾞｲﾄﾞ")
+                .author("ヤマダ タロウ")
+                .build());
+
+        // 検索用の項目が正規化されていることを検証
+        assertEquals("spring入門 がいど", book.getTitleSearch());
+        assertEquals("やまだ たろう", book.getAuthorSearch());
+
+        // 正規化したキーワードのトークンで検索できることを検証
+        Set<String> tokens = BookTextNormalizer.bigrams(BookTextNormalizer.normalize("Spring ガイド やまだ"));
+        List<BookSummary> books = repository.findPageByTokens(tokens, tokens.size(), PageRequest.of(0, 10));
+        assertEquals(1, books.size());
+        assertEquals(book.getId(), books.get(0).getId());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void バージョンが一致する場合のみ1回のUPDATEで更新され_トークンが置き換えられることの確認() {
+        // テストデータ生成
+        Book book = repository.saveAndFlush(Book.builder()
+                .title("条件付き更新の本")
+                .author("更新前の著者")
+                .build());
+
+        // 更新内容を作成する
+        Book update = Book.builder()
+                .id(book.getId())
+                .title("条件付き更新の本")
+                .author("更新後の著者")
+                .build();
+        update.setVersion(book.getVersion());
+        update.preUpdate();
+
+        // バージョンが一致する場合は1件更新され、異なる場合は更新されないことを検証
+        int updated = transactionTemplate.execute(status -> {
+            int count = repository.updateIfVersionMatches(update);
+            repository.replaceSearchTokens(update.getId(), update.getSearchTokens());
+            return count;
+        });
+        assertEquals(1, updated);
+        assertEquals(0, (int) transactionTemplate.execute(status -> repository.updateIfVersionMatches(update)));
+
+        // 更新内容とバージョンが反映されていることを検証
+        Book read = repository.findById(book.getId()).get();
+        assertEquals("更新後の著者", read.getAuthor());
+        assertEquals("更新後の著者", read.getAuthorSearch());
+        assertEquals(book.getVersion() + 1, read.getVersion());
+        assertEquals(book.getCreatedDateTime(), read.getCreatedDateTime());
+
+        // 置き換えたトークンで検索でき、古いトークンでは検索できないことを検証
+        Set<String> tokens = BookTextNormalizer.bigrams(BookTextNormalizer.normalize("更新後"));
+        assertEquals(1, repository.findPageByTokens(tokens, tokens.size(), PageRequest.of(0, 10)).size());
+        tokens = BookTextNormalizer.bigrams(BookTextNormalizer.normalize("更新前"));
+        assertEquals(0, repository.findPageByTokens(tokens, tokens.size(), PageRequest.of(0, 10)).size());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void 削除件数で存在が確認でき_トークンも削除されることの確認() {
+        // テストデータ生成
+        Book book = repository.saveAndFlush(Book.builder()
+                .title("削除の確認用の本")
+                .author("削除の確認用の著者")
+                .build());
+        String countTokens = "SELECT COUNT(*) FROM book_search_token WHERE book_id = ?";
+        assertNotEquals(0, (long) jdbcTemplate.queryForObject(countTokens, Long.class, book.getId()));
+
+        // バージョンが異なる場合は削除されないことを検証
+        assertEquals(0, (int) transactionTemplate.execute(
+                status -> repository.deleteIfVersionMatches(book.getId(), book.getVersion() + 1)));
+
+        // 削除件数が返却され、2回目は0件になることを検証
+        int deleted = transactionTemplate.execute(status -> {
+            int count = repository.deleteIfExists(book.getId());
+            repository.deleteSearchTokens(book.getId());
+            return count;
+        });
+        assertEquals(1, deleted);
+        assertEquals(0, (int) transactionTemplate.execute(status -> repository.deleteIfExists(book.getId())));
+
+        // 書籍とトークンが削除されていることを検証
+        assertFalse(repository.findById(book.getId()).isPresent());
+        assertEquals(0, (long) jdbcTemplate.queryForObject(countTokens, Long.class, book.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void 取得した書籍が2次キャッシュから取得され_更新で古いバージョンが返却されないことの確認() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Book book = repository.saveAndFlush(Book.builder()
+                .title(TEST_TITLE_NEW)
+                .author(TEST_AUTHOR_NEW)
+                .build());
+
+        // 2回目以降の取得は2次キャッシュにヒットすることを検証
+        repository.findById(book.getId());
+        long hits = statistics.getSecondLevelCacheHitCount();
+        Book cached = repository.findById(book.getId()).get();
+        assertEquals(hits + 1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(book.getVersion(), cached.getVersion());
+
+        // 更新後は新しいバージョンが取得されることを検証
+        cached.setTitle(TEST_TITLE_UPD);
+        Book updated = repository.saveAndFlush(cached);
+        Book reloaded = repository.findById(book.getId()).get();
+        assertEquals(updated.getVersion(), reloaded.getVersion());
+        assertEquals(TEST_TITLE_UPD, reloaded.getTitle());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void SQLで更新中に読み込まれた変更前の書籍が2次キャッシュに登録されないことの確認() {
+        Book book = repository.saveAndFlush(Book.builder()
+                .title(TEST_TITLE_NEW)
+                .author(TEST_AUTHOR_NEW)
+                .build());
+        Book update = Book.builder()
+                .id(book.getId())
+                .title(TEST_TITLE_UPD)
+                .author(TEST_AUTHOR_UPD)
+                .build();
+        update.setVersion(book.getVersion());
+        update.preUpdate();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        transactionTemplate.execute(status -> {
+            assertEquals(1, repository.updateIfVersionMatches(update));
+
+            // コミット前に別のトランザクションで読み込んだ変更前の書籍は、キャッシュに登録されないことを検証
+            long puts = statistics.getSecondLevelCachePutCount();
+            Book read = CompletableFuture.supplyAsync(() -> repository.findById(book.getId()).get()).join();
+            assertEquals(TEST_TITLE_NEW, read.getTitle());
+            assertEquals(puts, statistics.getSecondLevelCachePutCount());
+            return null;
+        });
+
+        // コミット後は変更後の書籍が取得されることを検証
+        assertEquals(TEST_TITLE_UPD, repository.findById(book.getId()).get().getTitle());
+        assertEquals(TEST_TITLE_UPD, repository.findById(book.getId()).get().getTitle());
+    }
+
 }
@@ -0,0 +1,79 @@
+package com.example.bookmanage.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.repository.BookRepository;
+
+/**
+ * BookFuzzyIndexのテストプログラム
+ */
+class BookFuzzyIndexTests {
+
+    /**
+     * 書籍のあいまい検索用のインデックス
+     */
+    private BookFuzzyIndex index;
+
+    /**
+     * インデックスの更新処理
+     */
+    private BookIndexer indexer;
+
+    @BeforeEach
+    void setup() {
+        BookRepository repository = mock(BookRepository.class);
+        when(repository.streamSummariesOrderById()).thenReturn(Stream.of(
+                new BookSummary(1L, "Effective Java", "Joshua Bloch", 0),
+                new BookSummary(2L, "Java Concurrency in Practice", "Brian Goetz", 0),
+                new BookSummary(3L, "吾輩は猫である", "夏目漱石", 0),
+                new BookSummary(4L, "Refactoring", "Martin Fowler", 0)));
+        index = new BookFuzzyIndex();
+        indexer = new BookIndexer(repository, Collections.singletonList(index));
+        indexer.rebuild();
+    }
+
+    @Test
+    void search_綴りを誤った語で書籍が取得できることの確認() {
+        assertThat(index.search("Jsohua", 10)).containsExactly(1L);
+        assertThat(index.search("goets", 10)).containsExactly(2L);
+        assertThat(index.search("fowlr refactorin", 10)).containsExactly(4L);
+        assertThat(index.search("夏目嗽石", 10)).containsExactly(3L);
+        assertThat(index.search("jav", 10)).containsExactly(1L, 2L);
+        assertThat(index.search("xyzzy", 10)).isEmpty();
+    }
+
+    @Test
+    void search_編集距離の小さい書籍が上位になることの確認() {
+        indexer.onBookChanged(BookChangedEvent.of(BookChangedEvent.Type.CREATED,
+                Book.builder().id(5L).title("Practise").author("Someone").build()));
+
+        assertThat(index.search("practise", 10)).containsExactly(5L, 2L);
+    }
+
+    @Test
+    void onBookChanged_削除した書籍の語が索引から除かれることの確認() {
+        indexer.onBookChanged(BookChangedEvent.deleted(4L));
+
+        assertThat(index.search("fowler", 10)).isEmpty();
+    }
+
+    @Test
+    void distance_編集距離が計算されることの確認() {
+        assertEquals(0, BookFuzzyIndex.distance("java".codePoints().toArray(), "java".codePoints().toArray(), 2));
+        assertEquals(2, BookFuzzyIndex.distance("kitten".codePoints().toArray(), "sittin".codePoints().toArray(), 2));
+        assertEquals(3, BookFuzzyIndex.distance("kitten".codePoints().toArray(), "sitting".codePoints().toArray(), 2));
+    }
+
+}
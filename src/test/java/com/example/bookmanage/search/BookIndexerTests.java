@@ -0,0 +1,75 @@
+package com.example.bookmanage.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.repository.BookRepository;
+
+/**
+ * BookIndexerのテストプログラム
+ */
+class BookIndexerTests {
+
+    @Test
+    void rebuild_DBの全件を1回だけ読み込んですべてのインデックスを構築することの確認() {
+        BookRepository repository = mock(BookRepository.class);
+        when(repository.streamSummariesOrderById()).thenReturn(Stream.of(
+                new BookSummary(1L, "吾輩は猫である", "夏目漱石", 0),
+                new BookSummary(2L, "Effective Java", "Joshua Bloch", 0)));
+        BookSearchIndex searchIndex = new BookSearchIndex();
+        BookFuzzyIndex fuzzyIndex = new BookFuzzyIndex();
+        BookSuggestIndex suggestIndex = new BookSuggestIndex();
+        BookIndexer indexer = new BookIndexer(repository, Arrays.asList(searchIndex, fuzzyIndex, suggestIndex));
+
+        indexer.rebuild();
+
+        verify(repository, times(1)).streamSummariesOrderById();
+        assertTrue(searchIndex.isReady());
+        assertTrue(fuzzyIndex.isReady());
+        assertTrue(suggestIndex.isReady());
+        assertThat(searchIndex.search("夏目", 10)).containsExactly(1L);
+        assertThat(fuzzyIndex.search("efective", 10)).containsExactly(2L);
+        assertThat(suggestIndex.suggest("effe", 10).getTitles()).containsExactly("Effective Java");
+
+        // 変更は共有する内容を1回更新し、すべてのインデックスに反映する
+        indexer.onBookChanged(BookChangedEvent.updated(1L, "こころ", "夏目漱石", 1L));
+        assertThat(searchIndex.search("猫", 10)).isEmpty();
+        assertThat(searchIndex.search("こころ", 10)).containsExactly(1L);
+        assertThat(suggestIndex.suggest("吾輩", 10).getTitles()).isEmpty();
+        assertThat(suggestIndex.suggest("ここ", 10).getTitles()).containsExactly("こころ");
+    }
+
+    @Test
+    void onBookChanged_発生順と異なる順で届いた古い変更が反映されないことの確認() {
+        BookRepository repository = mock(BookRepository.class);
+        when(repository.streamSummariesOrderById()).thenReturn(Stream.of(
+                new BookSummary(1L, "吾輩は猫である", "夏目漱石", 0)));
+        BookSearchIndex searchIndex = new BookSearchIndex();
+        BookIndexer indexer = new BookIndexer(repository, Collections.singletonList(searchIndex));
+        indexer.rebuild();
+
+        // バージョン2の変更の後に届いたバージョン1の変更は反映しない
+        indexer.onBookChanged(BookChangedEvent.updated(1L, "三四郎", "夏目漱石", 2L));
+        indexer.onBookChanged(BookChangedEvent.updated(1L, "こころ", "夏目漱石", 1L));
+        assertThat(searchIndex.search("三四郎", 10)).containsExactly(1L);
+        assertThat(searchIndex.search("こころ", 10)).isEmpty();
+
+        // 削除の後に届いた登録・更新は反映しない
+        indexer.onBookChanged(BookChangedEvent.deleted(1L));
+        indexer.onBookChanged(BookChangedEvent.updated(1L, "それから", "夏目漱石", 3L));
+        assertThat(searchIndex.search("夏目", 10)).isEmpty();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.example.bookmanage.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.repository.BookRepository;
+
+/**
+ * BookSearchIndexのテストプログラム
+ */
+class BookSearchIndexTests {
+
+    /**
+     * 書籍の検索インデックス
+     */
+    private BookSearchIndex index;
+
+    /**
+     * インデックスの更新処理
+     */
+    private BookIndexer indexer;
+
+    @BeforeEach
+    void setup() {
+        BookRepository repository = mock(BookRepository.class);
+        when(repository.streamSummariesOrderById()).thenReturn(Stream.of(
+                new BookSummary(1L, "吾輩は猫である", "夏目漱石", 0),
+                new BookSummary(2L, "こころ", "夏目漱石", 0),
+                new BookSummary(3L, "Spring Boot入門", "山田太郎", 0),
+                new BookSummary(4L, "猫の事務所", "宮沢賢治", 0)));
+        index = new BookSearchIndex();
+        indexer = new BookIndexer(repository, Collections.singletonList(index));
+        indexer.rebuild();
+    }
+
+    @Test
+    void search_キーワードをすべて含む書籍が取得できることの確認() {
+        assertThat(index.search("夏目", 10)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search("spring 入門", 10)).containsExactly(3L);
+        assertThat(index.search("SPRING", 10)).containsExactly(3L);
+        assertThat(index.search("猫 賢治", 10)).containsExactly(4L);
+        assertThat(index.search("存在しない", 10)).isEmpty();
+        assertThat(index.search(" ", 10)).isEmpty();
+    }
+
+    @Test
+    void search_タイトルに一致した書籍が上位になることの確認() {
+        indexer.onBookChanged(BookChangedEvent.of(BookChangedEvent.Type.CREATED,
+                Book.builder().id(5L).title("漱石の生涯").author("伝記作家").build()));
+
+        assertThat(index.search("漱石", 10)).containsExactly(5L, 1L, 2L);
+        assertThat(index.search("夏目", 1)).containsExactly(1L);
+    }
+
+    @Test
+    void search_全角半角とかなの違いを区別せずに検索できることの確認() {
+        indexer.onBookChanged(BookChangedEvent.of(BookChangedEvent.Type.CREATED,
+                Book.builder().id(5L).title("ﾃﾞｰﾀベース設計").author("ＳＱＬ研究会").build()));
+
+        assertThat(index.search("データベース", 10)).containsExactly(5L);
+        assertThat(index.search("でーたべーす", 10)).containsExactly(5L);
+        assertThat(index.search("sql", 10)).containsExactly(5L);
+    }
+
+    @Test
+    void onBookChanged_更新と削除が反映されることの確認() {
+        indexer.onBookChanged(BookChangedEvent.updated(2L, "三四郎", "夏目漱石", 1L));
+        assertThat(index.search("こころ", 10)).isEmpty();
+        assertThat(index.search("三四郎", 10)).containsExactly(2L);
+
+        indexer.onBookChanged(BookChangedEvent.deleted(1L));
+        assertThat(index.search("夏目", 10)).containsExactly(2L);
+        assertThat(index.search("猫", 10)).containsExactly(4L);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.example.bookmanage.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.repository.BookRepository;
+
+/**
+ * BookSuggestIndexのテストプログラム
+ */
+class BookSuggestIndexTests {
+
+    /**
+     * 入力補完用のインデックス
+     */
+    private BookSuggestIndex index;
+
+    /**
+     * インデックスの更新処理
+     */
+    private BookIndexer indexer;
+
+    @BeforeEach
+    void setup() {
+        BookRepository repository = mock(BookRepository.class);
+        when(repository.streamSummariesOrderById()).thenReturn(Stream.of(
+                new BookSummary(1L, "Java入門", "山田太郎", 0),
+                new BookSummary(2L, "JavaScript入門", "山田太郎", 0),
+                new BookSummary(3L, "Java実践", "山本花子", 0),
+                new BookSummary(4L, "Javaの実践", "鈴木一郎", 0)));
+        index = new BookSuggestIndex();
+        indexer = new BookIndexer(repository, Collections.singletonList(index));
+        indexer.rebuild();
+    }
+
+    @Test
+    void suggest_前方一致する候補が件数の多い順_同数の場合は文字順に取得できることの確認() {
+        BookSuggestions suggestions = index.suggest("ｊａｖａ", 10);
+        assertThat(suggestions.getTitles()).containsExactly("JavaScript入門", "Javaの実践", "Java入門", "Java実践");
+        assertThat(suggestions.getAuthors()).isEmpty();
+
+        assertThat(index.suggest("山", 10).getAuthors()).containsExactly("山田太郎", "山本花子");
+        assertThat(index.suggest("java", 2).getTitles()).containsExactly("JavaScript入門", "Javaの実践");
+        assertThat(index.suggest("", 10).getTitles()).isEmpty();
+    }
+
+    @Test
+    void onBookChanged_更新と削除で候補の順位が変わることの確認() {
+        indexer.onBookChanged(BookChangedEvent.updated(2L, "JavaScript入門", "山本花子", 1L));
+        assertThat(index.suggest("山", 10).getAuthors()).containsExactly("山本花子", "山田太郎");
+
+        indexer.onBookChanged(BookChangedEvent.deleted(1L));
+        assertThat(index.suggest("山", 10).getAuthors()).containsExactly("山本花子");
+        assertThat(index.suggest("java入", 10).getTitles()).isEmpty();
+    }
+
+}
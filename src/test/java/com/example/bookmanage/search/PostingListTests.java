@@ -0,0 +1,95 @@
+package com.example.bookmanage.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PostingListのテストプログラム
+ */
+class PostingListTests {
+
+    @Test
+    void addAll_removeAll_途中への追加と削除が反映されることの確認() {
+        // 複数のブロックにまたがる件数を末尾に追加する
+        PostingList list = new PostingList();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long id = 2; id <= 2000; id += 2) {
+            list.add(id);
+            expected.add(id);
+        }
+
+        // ブロックをまたぐ奇数のIDをまとめて追加し、一部をまとめて削除する
+        long[] odds = new long[1000];
+        for (int i = 0; i < odds.length; i++) {
+            odds[i] = i * 2 + 1;
+            expected.add(odds[i]);
+        }
+        list.addAll(odds, odds.length);
+        long[] removed = {1, 2, 500, 1001, 1999, 2000, 3000};
+        assertEquals(6, list.removeAll(removed, removed.length));
+        for (long id : removed) {
+            expected.remove(id);
+        }
+
+        assertEquals(expected.size(), list.size());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), list.toArray());
+    }
+
+    @Test
+    void add_remove_retainAll_ランダムな操作の結果が集合と一致することの確認() {
+        Random random = new Random(1);
+        PostingList list = new PostingList();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int op = 0; op < 20000; op++) {
+            long id = 1 + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), list.remove(id));
+            } else {
+                list.add(id);
+                expected.add(id);
+            }
+            assertEquals(expected.size(), list.size());
+        }
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), list.toArray());
+
+        // 積集合が集合の共通部分と一致する
+        long[] candidates = new long[500];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = i * 7 + 1;
+        }
+        int count = list.retainAll(candidates, candidates.length);
+        long[] retained = new long[500];
+        int expectedCount = 0;
+        for (int i = 0; i < 500; i++) {
+            if (expected.contains(i * 7 + 1L)) {
+                retained[expectedCount++] = i * 7 + 1L;
+            }
+        }
+        assertEquals(expectedCount, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(retained[i], candidates[i]);
+        }
+    }
+
+    @Test
+    void changes_削除した後に追加したIDは変更なしとして反映されることの確認() {
+        PostingList list = new PostingList();
+        list.add(1);
+        list.add(3);
+
+        PostingList.Changes changes = new PostingList.Changes();
+        changes.remove(1);
+        changes.remove(3);
+        changes.add(3);
+        changes.add(2);
+        assertTrue(changes.hasAdditions());
+        changes.applyTo(list);
+
+        assertArrayEquals(new long[] {2, 3}, list.toArray());
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.example.bookmanage.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SuggestTrieのテストプログラム
+ */
+class SuggestTrieTests {
+
+    @Test
+    void add_remove_分岐のない区間が1つのノードにまとめられることの確認() {
+        SuggestTrie trie = new SuggestTrie();
+        trie.add("abcdef", "abcdef");
+        assertEquals(2, trie.nodeCount());
+
+        // 分岐点でノードを分割する
+        trie.add("abcxyz", "abcxyz");
+        trie.add("abc", "abc");
+        assertEquals(4, trie.nodeCount());
+        assertThat(trie.complete("ab", 10)).containsExactly("abc", "abcdef", "abcxyz");
+        assertThat(trie.complete("abcd", 10)).containsExactly("abcdef");
+        assertThat(trie.complete("abd", 10)).isEmpty();
+
+        // 削除で分岐がなくなったノードを結合する
+        trie.remove("abcxyz");
+        trie.remove("abc");
+        assertEquals(2, trie.nodeCount());
+        assertThat(trie.complete("abc", 10)).containsExactly("abcdef");
+        trie.remove("abcdef");
+        assertEquals(1, trie.nodeCount());
+        assertEquals(0, trie.size());
+    }
+
+    @Test
+    void remove_削除と件数の減少の後も上位候補が全件から求めた結果と一致することの確認() {
+        SuggestTrie trie = new SuggestTrie();
+        Map<String, Integer> counts = new TreeMap<>();
+        Random random = new Random(1);
+        for (int step = 0; step < 5000; step++) {
+            String key = randomKey(random);
+            if (random.nextInt(3) == 0 && counts.containsKey(key)) {
+                trie.remove(key);
+                if (counts.merge(key, -1, Integer::sum) == 0) {
+                    counts.remove(key);
+                }
+            } else {
+                trie.add(key, key);
+                counts.merge(key, 1, Integer::sum);
+            }
+            if (step % 50 == 0) {
+                assertTopK(trie, counts);
+            }
+        }
+
+        // すべて削除する
+        for (Map.Entry<String, Integer> entry : new ArrayList<>(counts.entrySet())) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                trie.remove(entry.getKey());
+            }
+            counts.remove(entry.getKey());
+            assertTopK(trie, counts);
+        }
+        assertEquals(1, trie.nodeCount());
+    }
+
+    /**
+     * 候補が重なりやすいよう、3文字の中から1～4文字のキーを生成する。
+     *
+     * @param random 乱数
+     * @return キー
+     */
+    private static String randomKey(Random random) {
+        StringBuilder key = new StringBuilder();
+        int length = 1 + random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            key.append("あいう".charAt(random.nextInt(3)));
+        }
+        return key.toString();
+    }
+
+    /**
+     * すべての前方一致のキーワードで、補完候補が全件から求めた上位と一致することを確認する。
+     *
+     * @param trie トライ木
+     * @param counts キーごとの件数
+     */
+    private static void assertTopK(SuggestTrie trie, Map<String, Integer> counts) {
+        assertEquals(counts.size(), trie.size());
+        for (String key : counts.keySet()) {
+            for (int length = 1; length <= key.length(); length++) {
+                String prefix = key.substring(0, length);
+                List<String> expected = counts.entrySet().stream()
+                        .filter(e -> e.getKey().startsWith(prefix))
+                        .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                                .thenComparing(Map.Entry::getKey))
+                        .limit(SuggestTrie.TOP_K)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList());
+                assertEquals(expected, trie.complete(prefix, SuggestTrie.TOP_K), prefix);
+            }
+        }
+    }
+
+}
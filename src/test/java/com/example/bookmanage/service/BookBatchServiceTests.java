@@ -0,0 +1,223 @@
+package com.example.bookmanage.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.example.bookmanage.BookmanageApplication;
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.form.BookBulkForm;
+import com.example.bookmanage.search.BookSearchIndex;
+import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.service.BookBatchResult.Status;
+
+/**
+ * BookBatchServiceのテストプログラム
+ */
+@SpringBootTest(classes = BookmanageApplication.class)
+class BookBatchServiceTests {
+
+    /**
+     * テストデータのタイトル
+     */
+    private static final String TEST_TITLE = "一括更新タイトル";
+
+    /**
+     * テストデータの著者名
+     */
+    private static final String TEST_AUTHOR = "一括更新著者名";
+
+    /**
+     * 存在しない書籍のID
+     */
+    private static final long MISSING_ID = Long.MAX_VALUE;
+
+    /**
+     * 書籍の一括更新・一括削除のサービス
+     */
+    @Autowired
+    private BookBatchService service;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    @Autowired
+    private BookRepository repository;
+
+    /**
+     * 書籍の検索インデックス
+     */
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    /**
+     * 2次キャッシュを確認するためのEntityManagerFactory
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @WithMockUser(username = "admin")
+    void updateBooks_チャンクサイズを超える件数が更新され1件ごとの結果が返却されることの確認() {
+        // チャンクサイズ(50件)をまたぐ件数のテストデータを生成
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            books.add(Book.builder().title(TEST_TITLE + i).author(TEST_AUTHOR).build());
+        }
+        books = repository.saveAll(books);
+
+        // 先頭はバージョン不一致、末尾は入力不備、それ以外は更新する変更内容を生成
+        List<BookChange> changes = new ArrayList<>();
+        for (Book book : books) {
+            changes.add(new BookChange(book.getId(), book.getVersion(), book.getTitle() + "改", TEST_AUTHOR));
+        }
+        changes.get(0).setVersion(books.get(0).getVersion() + 1);
+        changes.get(59).setTitle("");
+        changes.add(new BookChange(MISSING_ID, 0, TEST_TITLE, TEST_AUTHOR));
+        changes.add(new BookChange(books.get(1).getId(), books.get(1).getVersion(), TEST_TITLE, TEST_AUTHOR));
+
+        // updateBooksを呼び出す
+        List<BookBatchResult> results = service.updateBooks(changes);
+
+        // 1件ごとの結果を評価する
+        assertEquals(changes.size(), results.size());
+        assertEquals(Status.VERSION_CONFLICT, results.get(0).getStatus());
+        for (int i = 1; i < 59; i++) {
+            assertEquals(Status.UPDATED, results.get(i).getStatus());
+        }
+        assertEquals(Status.INVALID, results.get(59).getStatus());
+        assertEquals(Status.NOT_FOUND, results.get(60).getStatus());
+        assertEquals(Status.VERSION_CONFLICT, results.get(61).getStatus());
+
+        // 更新内容とバージョンを評価する
+        Book updated = repository.findById(books.get(55).getId()).get();
+        assertEquals(TEST_TITLE + "55改", updated.getTitle());
+        assertEquals(books.get(55).getVersion() + 1, updated.getVersion());
+        assertEquals(TEST_TITLE + "0", repository.findById(books.get(0).getId()).get().getTitle());
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void deleteBooks_存在する書籍が削除され1件ごとの結果が返却されることの確認() {
+        // テストデータを生成
+        Book first = repository.save(Book.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+        Book second = repository.save(Book.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+
+        // deleteBooksを呼び出す
+        List<BookBatchResult> results = service.deleteBooks(
+                Arrays.asList(first.getId(), MISSING_ID, second.getId(), first.getId()));
+
+        // 1件ごとの結果を評価する
+        assertEquals(Status.DELETED, results.get(0).getStatus());
+        assertEquals(Status.NOT_FOUND, results.get(1).getStatus());
+        assertEquals(Status.DELETED, results.get(2).getStatus());
+        assertEquals(Status.NOT_FOUND, results.get(3).getStatus());
+        assertFalse(repository.existsById(first.getId()));
+        assertFalse(repository.existsById(second.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void deleteBooks_削除していない書籍の2次キャッシュが破棄されないことの確認() {
+        // テストデータを生成し、2次キャッシュに格納する
+        Book cached = repository.save(Book.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+        Book deleted = repository.save(Book.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+        Cache cache = entityManagerFactory.getCache();
+        repository.findById(cached.getId());
+        repository.findById(deleted.getId());
+        assertTrue(cache.contains(Book.class, cached.getId()));
+
+        service.deleteBooks(Arrays.asList(deleted.getId()));
+
+        // 削除していない書籍は2次キャッシュに残り、削除した書籍は2次キャッシュから返却されない
+        // (削除した書籍のエントリは、解除済みのソフトロックとして残る)
+        assertTrue(cache.contains(Book.class, cached.getId()));
+        assertFalse(repository.findById(deleted.getId()).isPresent());
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void renameAuthor_該当する書籍の著者とバージョンと更新ユーザが更新され検索できることの確認() {
+        // テストデータを生成
+        Book book = repository.save(Book.builder().title("改名確認の本").author("改名前の著者").build());
+        Book other = repository.save(Book.builder().title("改名確認の本").author("別の著者").build());
+
+        // renameAuthorを呼び出す(作成日の範囲は今日のみ)
+        BookBulkForm form = BookBulkForm.builder()
+                .author("改名前の著者")
+                .newAuthor("改名後の著者")
+                .createdFrom(LocalDate.now())
+                .createdTo(LocalDate.now())
+                .build();
+        assertEquals(1, service.renameAuthor(form));
+
+        // 更新内容と共通項目を評価する
+        Book renamed = repository.findById(book.getId()).get();
+        assertEquals("改名後の著者", renamed.getAuthor());
+        assertEquals(book.getVersion() + 1, renamed.getVersion());
+        assertNotNull(renamed.getUpdatedDateTime());
+        assertEquals("admin", renamed.getUpdatedUser());
+        assertEquals("別の著者", repository.findById(other.getId()).get().getAuthor());
+
+        // 検索インデックスとトークンに変更後の著者が反映されていることを評価する
+        assertTrue(searchIndex.search("改名後", 10).contains(book.getId()));
+        assertTrue(repository.findPageByTokens(Arrays.asList("改名", "名後"), 2,
+                PageRequest.of(0, 10)).stream()
+                .anyMatch(summary -> summary.getId().equals(book.getId())));
+    }
+
+    @Test
+    @WithMockUser(username = "importer")
+    void purgeByCreatedUser_作成ユーザと作成日の範囲に該当する書籍のみ削除されることの確認() {
+        // テストデータを生成
+        Book book = repository.save(Book.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+
+        // 作成日の範囲外の場合は削除されないことを評価する
+        BookBulkForm form = BookBulkForm.builder()
+                .createdUser("importer")
+                .createdTo(LocalDate.now().minusDays(1))
+                .build();
+        assertEquals(0, service.purgeByCreatedUser(form));
+        assertTrue(repository.existsById(book.getId()));
+
+        // 作成日の範囲を省略した場合は削除されることを評価する
+        form.setCreatedTo(null);
+        assertEquals(1, service.purgeByCreatedUser(form));
+        assertFalse(repository.existsById(book.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void renameAuthor_対象外の書籍の2次キャッシュが破棄されないことの確認() {
+        // テストデータを生成し、2次キャッシュに格納する
+        Book cached = repository.save(Book.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+        Book renamed = repository.save(Book.builder().title(TEST_TITLE).author("キャッシュ確認の著者").build());
+        Cache cache = entityManagerFactory.getCache();
+        repository.findById(cached.getId());
+        repository.findById(renamed.getId());
+        assertTrue(cache.contains(Book.class, cached.getId()));
+
+        BookBulkForm form = BookBulkForm.builder()
+                .author("キャッシュ確認の著者")
+                .newAuthor("キャッシュ確認の著者(変更後)")
+                .build();
+        assertEquals(1, service.renameAuthor(form));
+
+        // 対象外の書籍は2次キャッシュに残り、変更した書籍は変更後の著者が取得できる
+        assertTrue(cache.contains(Book.class, cached.getId()));
+        assertEquals("キャッシュ確認の著者(変更後)", repository.findById(renamed.getId()).get().getAuthor());
+    }
+
+}
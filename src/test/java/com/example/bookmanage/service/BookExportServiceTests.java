@@ -0,0 +1,63 @@
+package com.example.bookmanage.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.example.bookmanage.BookmanageApplication;
+import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.repository.BookRepository;
+
+/**
+ * BookExportServiceのテストプログラム
+ */
+@SpringBootTest(classes = BookmanageApplication.class)
+class BookExportServiceTests {
+
+    /**
+     * 書籍の一括出力のサービス
+     */
+    @Autowired
+    private BookExportService service;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    @Autowired
+    private BookRepository repository;
+
+    /**
+     * エンティティマネージャのファクトリ
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @WithMockUser(username = "admin")
+    void exportBooks_全件が出力され_書籍が2次キャッシュに登録されないことの確認() {
+        // テストデータ生成
+        Book book = repository.saveAndFlush(Book.builder()
+                .title("一括出力タイトル")
+                .author("一括出力著者名")
+                .build());
+        entityManagerFactory.getCache().evict(Book.class, book.getId());
+
+        // exportBooksを呼び出す
+        List<Long> ids = new ArrayList<>();
+        long count = service.exportBooks(exported -> ids.add(exported.getId()));
+
+        // 全件が出力され、2次キャッシュに登録されていないことを評価する
+        assertEquals(repository.count(), count);
+        assertTrue(ids.contains(book.getId()));
+        assertFalse(entityManagerFactory.getCache().contains(Book.class, book.getId()));
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.example.bookmanage.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.example.bookmanage.BookmanageApplication;
+import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.search.BookSearchIndex;
+
+/**
+ * BookImportServiceのテストプログラム
+ */
+@SpringBootTest(classes = BookmanageApplication.class)
+class BookImportServiceTests {
+
+    /**
+     * テストデータのタイトル
+     */
+    private static final String TEST_TITLE = "一括登録タイトル";
+
+    /**
+     * テストデータの著者名
+     */
+    private static final String TEST_AUTHOR = "一括登録著者名";
+
+    /**
+     * 書籍の一括登録のサービス
+     */
+    @Autowired
+    private BookImportService service;
+
+    /**
+     * 書籍のリポジトリ
+     */
+    @Autowired
+    private BookRepository repository;
+
+    /**
+     * 書籍全体のバージョン
+     */
+    @Autowired
+    private BookCatalogVersion catalogVersion;
+
+    /**
+     * 書籍の検索インデックス
+     */
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Test
+    @WithMockUser(username = "admin")
+    void importBooks_チャンクサイズを超える件数が登録されることの確認() {
+        // チャンクサイズ(50件)をまたぐ件数のテストデータを生成
+        int count = 120;
+        List<BookManageForm> forms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            forms.add(BookManageForm.builder()
+                    .title(TEST_TITLE + i)
+                    .author(TEST_AUTHOR)
+                    .build());
+        }
+        long before = repository.count();
+
+        // importBooksを呼び出す
+        BookImportResult result = service.importBooks(forms.iterator());
+
+        // 結果と登録件数を評価する
+        assertEquals(result.getImportedCount(), count);
+        assertEquals(result.getRejectedCount(), 0);
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(repository.count(), before + count);
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void importBooks_入力内容に不備がある行は登録されずエラーメッセージが設定されることの確認() {
+        // 2行目のタイトルが未入力のテストデータを生成
+        List<BookManageForm> forms = Arrays.asList(
+                BookManageForm.builder().title(TEST_TITLE).author(TEST_AUTHOR).build(),
+                BookManageForm.builder().title("").author(TEST_AUTHOR).build(),
+                BookManageForm.builder().title(TEST_TITLE).author(TEST_AUTHOR).build());
+        long before = repository.count();
+
+        // importBooksを呼び出す
+        BookImportResult result = service.importBooks(forms.iterator());
+
+        // 結果と登録件数を評価する
+        assertEquals(result.getImportedCount(), 2);
+        assertEquals(result.getRejectedCount(), 1);
+        assertEquals(result.getErrors().size(), 1);
+        assertEquals(result.getErrors().get(0), "2: タイトルを入力してください。");
+        assertEquals(repository.count(), before + 2);
+    }
+
+    @Test
+    @WithMockUser(username = "admin")
+    void importBooks_一括登録した書籍がコミット後にまとめて検索インデックスに反映されることの確認() {
+        // チャンクサイズ(50件)をまたぐ件数のテストデータを生成
+        int count = 120;
+        String keyword = "一括反映" + System.nanoTime();
+        List<BookManageForm> forms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            forms.add(BookManageForm.builder()
+                    .title(keyword + " " + i)
+                    .author(TEST_AUTHOR)
+                    .build());
+        }
+        long version = catalogVersion.current();
+
+        // importBooksを呼び出す
+        service.importBooks(forms.iterator());
+
+        // 全件が検索インデックスに反映され、バージョンは1回だけ進むことを評価する
+        assertEquals(searchIndex.search(keyword, count + 1).size(), count);
+        assertEquals(catalogVersion.current(), version + 1);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.example.bookmanage.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.form.BookListCondition;
+import com.example.bookmanage.form.BookListPage;
+import com.example.bookmanage.form.BookSortKey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * BookListCacheのテストプログラム
+ */
+class BookListCacheTests {
+
+    /**
+     * カタログのバージョン
+     */
+    private BookCatalogVersion catalogVersion;
+
+    /**
+     * メトリクスの登録先
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * 書籍一覧のキャッシュ
+     */
+    private BookListCache cache;
+
+    /**
+     * 一覧の取得処理の呼び出し回数
+     */
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setup() {
+        catalogVersion = new BookCatalogVersion();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new BookListCache(catalogVersion, meterRegistry, 100);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_同じバージョンと表示条件の場合_キャッシュから取得されることの確認() {
+        CachedBookList first = cache.get(new BookListCondition(), this::load);
+        CachedBookList second = cache.get(new BookListCondition(), this::load);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(0.5, meterRegistry.get("book.list.cache.hit.ratio").gauge().value());
+        assertEquals(1, meterRegistry.get("book.list.cache.load").timer().count());
+    }
+
+    @Test
+    void get_表示条件が異なる場合_別々に取得されることの確認() {
+        cache.get(new BookListCondition(), this::load);
+        cache.get(BookListCondition.builder().sort(BookSortKey.TITLE).build(), this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_書籍が変更された場合_再取得されることの確認() {
+        cache.get(new BookListCondition(), this::load);
+        catalogVersion.onBookChanged(BookChangedEvent.deleted(1));
+        cache.get(new BookListCondition(), this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 一覧を取得する。
+     *
+     * @return 書籍一覧
+     */
+    private CachedBookList load() {
+        loads.incrementAndGet();
+        return new CachedBookList(Collections.emptyList(), new BookListPage());
+    }
+
+}
@@ -1,27 +1,49 @@
 package com.example.bookmanage.service;
 
+import static com.example.bookmanage.metrics.QueryBudgets.assertQueryBudget;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.test.context.support.WithMockUser;
 
 import com.example.bookmanage.BookmanageApplication;
 import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookChangedEvent;
+import com.example.bookmanage.domain.BookSummary;
 import com.example.bookmanage.exception.BookNotFoundException;
+import com.example.bookmanage.form.BookListCondition;
 import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.form.BookSortKey;
 import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.search.BookFuzzyIndex;
+import com.example.bookmanage.search.BookSearchIndex;
 
 /**
  * BookManageServiceのテストプログラム
@@ -66,11 +88,52 @@ class BookManageServiceTests {
     @Mock
     private BookRepository repository;
 
+    /**
+     * 書籍の検索インデックス
+     */
+    @Mock
+    private BookSearchIndex searchIndex;
+
+    /**
+     * 書籍のあいまい検索用のインデックス
+     */
+    @Mock
+    private BookFuzzyIndex fuzzyIndex;
+
+    /**
+     * 書籍一覧のキャッシュ
+     */
+    @Mock
+    private BookListCache listCache;
+
+    /**
+     * イベントの発行者
+     */
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * SQLの実行回数を確認するための書籍管理システムのサービス(モックを使用しない)
+     */
+    @Autowired
+    private BookManageService bookManageService;
+
+    /**
+     * 2次キャッシュを破棄するためのEntityManagerFactory
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     /**
      * テストデータの書籍
      */
     private Book testBook;
 
+    /**
+     * テストデータの書籍(一覧表示用)
+     */
+    private BookSummary testSummary;
+
     @BeforeEach
     void setup() {
         // テストデータの生成
@@ -80,12 +143,17 @@ class BookManageServiceTests {
                 .author(TEST_AUTHOR)
                 .build();
         testBook.setVersion(TEST_VERSION);
+        testSummary = new BookSummary(TEST_ID, TEST_TITLE, TEST_AUTHOR, TEST_VERSION);
+
+        // 一覧のキャッシュは常にミスしたものとして取得処理を呼び出す
+        when(listCache.get(any(BookListCondition.class), any())).thenAnswer(
+                invocation -> invocation.<Supplier<CachedBookList>>getArgument(1).get());
     }
 
     @Test
     void initForm_戻り値の変数とメソッドの呼び出しの確認() {
         // モック
-        when(repository.findAll()).thenReturn(Arrays.asList(testBook));
+        when(repository.findPageOrderById(any(Pageable.class))).thenReturn(Arrays.asList(testSummary));
 
         // initFormの呼び出し
         BookManageForm form = service.initForm();
@@ -98,22 +166,114 @@ class BookManageServiceTests {
         assertNotNull(form.getBooks());
         assertEquals(form.getBooks().size(), 1);
 
-        // booksにrepository.findAllの結果が設定されているか評価する
-        Book book = form.getBooks().get(0);
+        // booksにrepository.findPageOrderByIdの結果が設定されているか評価する
+        BookSummary book = form.getBooks().get(0);
         assertEquals(book.getTitle(), TEST_TITLE);
         assertEquals(book.getAuthor(), TEST_AUTHOR);
         assertEquals(book.getId(), TEST_ID);
         assertEquals(book.getVersion(), TEST_VERSION);
 
+        // 1ページに収まる場合、前後のページが存在しないことを評価する
+        assertEquals(form.getPage().getSort(), BookSortKey.ID);
+        assertNull(form.getPage().getPreviousId());
+        assertNull(form.getPage().getNextId());
+
         // repositoryのメソッドの呼び出しを確認
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPageOrderById(any(Pageable.class));
+        verify(repository, never()).findAll();
+    }
+
+    @Test
+    void initForm_1ページに収まらない場合_次ページのカーソルが設定されることの確認() {
+        // モック(1ページの件数より1件多く返却する)
+        List<BookSummary> books = createBooks(1, BookManageService.PAGE_SIZE + 1);
+        when(repository.findPageOrderByTitle(any(Pageable.class))).thenReturn(books);
+
+        // initFormの呼び出し
+        BookManageForm form = service.initForm(BookListCondition.builder().sort(BookSortKey.TITLE).build());
+
+        // 1ページ分の書籍が設定され、最後の書籍が次ページのカーソルになることを評価する
+        assertEquals(form.getBooks().size(), BookManageService.PAGE_SIZE);
+        BookSummary last = books.get(BookManageService.PAGE_SIZE - 1);
+        assertEquals(form.getPage().getNextId(), last.getId());
+        assertEquals(form.getPage().getNextKey(), last.getTitle());
+        assertNull(form.getPage().getPreviousId());
+    }
+
+    @Test
+    void initForm_前ページを指定した場合_昇順に並べ替えられることの確認() {
+        // モック(降順で返却する)
+        List<BookSummary> books = createBooks(1, 3);
+        Collections.reverse(books);
+        when(repository.findPageBeforeId(eq(4L), any(Pageable.class))).thenReturn(books);
+
+        // initFormの呼び出し
+        BookManageForm form = service.initForm(BookListCondition.builder().before(4L).build());
+
+        // 昇順に並べ替えられ、先頭ページのため前ページが存在しないことを評価する
+        assertEquals(form.getBooks().get(0).getId(), 1L);
+        assertEquals(form.getBooks().get(2).getId(), 3L);
+        assertNull(form.getPage().getPreviousId());
+        assertEquals(form.getPage().getNextId(), 3L);
+    }
+
+    /**
+     * IDが連番の書籍の一覧を生成する。
+     *
+     * @param from 先頭のID
+     * @param count 件数
+     * @return 書籍の一覧
+     */
+    private List<BookSummary> createBooks(long from, int count) {
+        List<BookSummary> books = new ArrayList<>();
+        for (long id = from; id < from + count; id++) {
+            books.add(new BookSummary(id, String.format("%s%03d", TEST_TITLE, id), TEST_AUTHOR, 0));
+        }
+        return books;
+    }
+
+    @Test
+    void initForm_検索キーワードを指定した場合_検索結果の順に一覧が設定されることの確認() {
+        // モック
+        BookSummary other = new BookSummary(TEST_ID + 1, "other", TEST_AUTHOR, TEST_VERSION);
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("test", BookManageService.PAGE_SIZE)).thenReturn(Arrays.asList(TEST_ID + 1, TEST_ID));
+        when(repository.findSummariesByIdIn(Arrays.asList(TEST_ID + 1, TEST_ID)))
+                .thenReturn(Arrays.asList(testSummary, other));
+
+        // initFormを呼び出す
+        BookManageForm form = service.initForm(BookListCondition.builder().q("test").build());
+
+        // 検索結果の順に並び、ページングのカーソルが設定されないことを確認
+        assertThat(form.getBooks()).containsExactly(other, testSummary);
+        assertNull(form.getPage().getNextId());
+        assertNull(form.getPage().getPreviousId());
+
+        // 一覧のページ取得が呼び出されないことを確認
+        verify(repository, never()).findPageOrderById(any(Pageable.class));
+    }
+
+    @Test
+    void initForm_検索キーワードに一致する書籍がない場合_あいまい検索の結果が設定されることの確認() {
+        // モック
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("tset", BookManageService.PAGE_SIZE)).thenReturn(Collections.emptyList());
+        when(fuzzyIndex.search("tset", BookManageService.PAGE_SIZE)).thenReturn(Arrays.asList(TEST_ID));
+        when(repository.findSummariesByIdIn(Arrays.asList(TEST_ID))).thenReturn(Arrays.asList(testSummary));
+
+        // initFormを呼び出す
+        BookManageForm form = service.initForm(BookListCondition.builder().q("tset").build());
+
+        // あいまい検索の結果が設定されることを確認
+        assertThat(form.getBooks()).containsExactly(testSummary);
+        assertTrue(form.getPage().isFuzzy());
     }
 
     @Test
     void readOneBook_戻り値とメソッドの呼び出しの確認() {
         // モック
         when(repository.findById(TEST_ID)).thenReturn(Optional.of(testBook));
-        when(repository.findAll()).thenReturn(Arrays.asList(testBook));
+        when(repository.findPageOrderById(any(Pageable.class))).thenReturn(Arrays.asList(testSummary));
 
         try {
             // readOneBookを呼び出す
@@ -127,9 +287,10 @@ class BookManageServiceTests {
             assertNotNull(form.getBooks());
             assertEquals(form.getBooks().size(), 1);
 
-            // repositoryのメソッドの呼び出しを確認
-            verify(repository, times(1)).findAll();
+            // repositoryのメソッドの呼び出しを確認(一覧は1ページ分のみ取得する)
+            verify(repository, times(1)).findPageOrderById(any(Pageable.class));
             verify(repository, times(1)).findById(TEST_ID);
+            verify(repository, never()).findAll();
         } catch (BookNotFoundException e) {
             // Exceptionが発生したらエラー
             fail();
@@ -140,7 +301,6 @@ class BookManageServiceTests {
     void readOneBook_指定したIDのデータが取得できない場合_例外が発生することの確認() {
         // モック
         when(repository.findById(TEST_ID)).thenReturn(Optional.ofNullable(null));
-        when(repository.findAll()).thenReturn(Arrays.asList());
 
         try {
             // readOneBookを呼び出す
@@ -148,14 +308,44 @@ class BookManageServiceTests {
 
             // Exceptionが発生しない場合、エラー
             fail();
-        } catch (BookNotFoundException e) { }
+        } catch (BookNotFoundException e) {
+            // 書籍が存在しない場合、一覧は取得しないことを確認
+            verify(repository, never()).findPageOrderById(any(Pageable.class));
+        }
     }
 
     @Test
-    void updateBook_戻り値と保存処理の呼び出しの確認() {
+    void readOneBook_表示条件を指定した場合_該当するページの一覧が設定されることの確認() {
         // モック
         when(repository.findById(TEST_ID)).thenReturn(Optional.of(testBook));
-        when(repository.save(testBook)).thenReturn(testBook);
+        when(repository.findPageAfterAuthor(eq(TEST_AUTHOR), eq(TEST_ID), any(Pageable.class)))
+                .thenReturn(Arrays.asList(testSummary));
+        BookListCondition condition = BookListCondition.builder()
+                .sort(BookSortKey.AUTHOR)
+                .after(TEST_ID)
+                .key(TEST_AUTHOR)
+                .build();
+
+        try {
+            // readOneBookを呼び出す
+            BookManageForm form = service.readOneBook(TEST_ID, condition);
+
+            // 表示条件が引き継がれ、前ページが存在することを評価する
+            assertEquals(form.getBooks().size(), 1);
+            assertEquals(form.getPage().getCondition(), condition);
+            assertEquals(form.getPage().getPreviousId(), TEST_ID);
+            assertNull(form.getPage().getNextId());
+        } catch (BookNotFoundException e) {
+            // Exceptionが発生したらエラー
+            fail();
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void updateBook_戻り値と更新処理の呼び出しの確認() {
+        // モック(更新前のバージョンが指定された場合のみ更新される)
+        when(repository.updateIfVersionMatches(argThat(b -> b.getVersion() == TEST_VERSION))).thenReturn(1);
 
         // updateBookを呼び出す
         BookManageForm form = BookManageForm.builder()
@@ -168,11 +358,18 @@ class BookManageServiceTests {
             // updateBookを呼び出す
             Book book = service.updateBook(TEST_ID, form);
 
-            // 戻り値と同じ値か否かを評価
-            assertThat(book).isEqualTo(testBook);
-
-            // saveが呼び出されることを確認
-            verify(repository, times(1)).save(testBook);
+            // 戻り値の値を評価
+            assertEquals(TEST_ID, book.getId());
+            assertEquals(TEST_TITLE, book.getTitle());
+            assertEquals(TEST_VERSION + 1, book.getVersion());
+            assertEquals("user", book.getUpdatedUser());
+
+            // 1回のUPDATEが呼び出され、存在確認は行われないことを確認
+            verify(repository, times(1)).updateIfVersionMatches(any(Book.class));
+            verify(repository, never()).findById(TEST_ID);
+            verify(repository, never()).existsById(TEST_ID);
+            verify(repository, times(1)).replaceSearchTokens(eq(TEST_ID), eq(book.getSearchTokens()));
+            verify(eventPublisher, times(1)).publishEvent(any(BookChangedEvent.class));
         } catch (BookNotFoundException e) {
             // Exceptionが発生したら、エラー
             fail();
@@ -180,9 +377,11 @@ class BookManageServiceTests {
     }
 
     @Test
+    @WithMockUser(username = "user")
     void updateBook_DBのバージョンと異なるバージョンを指定した場合_例外が発生することの確認() {
         // モック
-        when(repository.findById(TEST_ID)).thenReturn(Optional.of(testBook));
+        when(repository.updateIfVersionMatches(any(Book.class))).thenReturn(0);
+        when(repository.existsById(TEST_ID)).thenReturn(true);
 
         // updateBookを呼び出す
         BookManageForm form = BookManageForm.builder()
@@ -203,12 +402,15 @@ class BookManageServiceTests {
         } catch (ObjectOptimisticLockingFailureException e) {
             // 楽観排他の場合、正常
         }
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
+    @WithMockUser(username = "user")
     void updateBook_指定したIDでデータが取得できない場合_例外が発生することの確認() {
         // モック
-        when(repository.findById(TEST_ID)).thenReturn(Optional.ofNullable(null));
+        when(repository.updateIfVersionMatches(any(Book.class))).thenReturn(0);
+        when(repository.existsById(TEST_ID)).thenReturn(false);
 
         // updateBookを呼び出す
         BookManageForm form = BookManageForm.builder()
@@ -251,14 +453,20 @@ class BookManageServiceTests {
     @Test
     void deleteBook_削除処理の呼び出しの確認() {
         // モック
-        when(repository.existsById(TEST_ID)).thenReturn(true);
+        when(repository.deleteIfExists(TEST_ID)).thenReturn(1);
 
         try {
             // deleteBookを呼び出す
             service.deleteBook(TEST_ID);
 
-            // deleteByIdが呼び出されることを確認
-            verify(repository, times(1)).deleteById(TEST_ID);
+            // 1回のDELETEとトークンの削除が呼び出され、エンティティは読み込まれないことを確認
+            verify(repository, times(1)).deleteIfExists(TEST_ID);
+            verify(repository, times(1)).deleteSearchTokens(TEST_ID);
+            verify(repository, never()).findById(TEST_ID);
+            verify(repository, never()).existsById(TEST_ID);
+
+            // 削除のイベントが発行されることを確認
+            verify(eventPublisher, times(1)).publishEvent(BookChangedEvent.deleted(TEST_ID));
         } catch (BookNotFoundException e) {
             // Exceptionが発生したら、エラー
             fail();
@@ -268,7 +476,7 @@ class BookManageServiceTests {
     @Test
     void deleteBook_指定したIDのデータが存在しない場合_例外が発生することの確認() {
         // モック
-        when(repository.existsById(TEST_ID)).thenReturn(false);
+        when(repository.deleteIfExists(TEST_ID)).thenReturn(0);
 
         try {
             // deleteBookを呼び出す
@@ -277,6 +485,124 @@ class BookManageServiceTests {
             // Exceptionが発生しないとエラー
             fail();
         } catch (BookNotFoundException e) { }
+        verify(repository, never()).deleteSearchTokens(TEST_ID);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void deleteBook_バージョンを指定してDBのバージョンと異なる場合_例外が発生することの確認() {
+        // モック
+        when(repository.deleteIfVersionMatches(TEST_ID, INVALID_TEST_VERSION)).thenReturn(0);
+        when(repository.existsById(TEST_ID)).thenReturn(true);
+
+        try {
+            // deleteBookを呼び出す
+            service.deleteBook(TEST_ID, INVALID_TEST_VERSION);
+
+            // Exceptionが発生しないとエラー
+            fail();
+        } catch (BookNotFoundException e) {
+            // データが存在しない場合、エラー
+            fail();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // 楽観排他の場合、正常
+        }
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void initForm_1ページ分の書籍の一覧を1回のSQLで取得することの確認() throws Throwable {
+        // 1ページ分の書籍を登録する
+        Book first = null;
+        for (int i = 0; i < 20; i++) {
+            Book created = bookManageService.createBook(BookManageForm.builder()
+                    .title(TEST_TITLE + i)
+                    .author(TEST_AUTHOR)
+                    .newBook(true)
+                    .build());
+            first = first == null ? created : first;
+        }
+
+        // キャッシュされていない表示条件で一覧を取得する(書籍ごとにSQLを実行しないこと)
+        BookListCondition condition = BookListCondition.builder()
+                .after(first.getId() - 1)
+                .build();
+        assertQueryBudget(1, () -> assertEquals(20, bookManageService.initForm(condition).getBooks().size()));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void readOneBook_書籍と一覧をそれぞれ1回のSQLで取得することの確認() throws Throwable {
+        Book created = bookManageService.createBook(BookManageForm.builder()
+                .title(TEST_TITLE)
+                .author(TEST_AUTHOR)
+                .newBook(true)
+                .build());
+
+        // 2次キャッシュを破棄し、キャッシュされていない表示条件で詳細を取得する
+        entityManagerFactory.getCache().evictAll();
+        BookListCondition condition = BookListCondition.builder()
+                .after(created.getId() - 1)
+                .build();
+        assertQueryBudget(2, () -> assertEquals(TEST_TITLE,
+                bookManageService.readOneBook(created.getId(), condition).getTitle()));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void updateBook_更新していない書籍の2次キャッシュが破棄されないことの確認() throws Throwable {
+        Book cached = createBook();
+        Book updated = createBook();
+        Cache cache = entityManagerFactory.getCache();
+        bookManageService.readOneBook(cached.getId());
+        bookManageService.readOneBook(updated.getId());
+        assertTrue(cache.contains(Book.class, cached.getId()));
+
+        bookManageService.updateBook(updated.getId(), BookManageForm.builder()
+                .title(TEST_TITLE)
+                .author(TEST_AUTHOR)
+                .version(updated.getVersion())
+                .build());
+
+        // 更新していない書籍は2次キャッシュに残り、更新した書籍は更新後のバージョンが取得できる
+        assertTrue(cache.contains(Book.class, cached.getId()));
+        assertEquals(updated.getVersion() + 1, bookManageService.readOneBook(updated.getId()).getVersion());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void deleteBook_削除していない書籍の2次キャッシュが破棄されないことの確認() throws Throwable {
+        Book cached = createBook();
+        Book deleted = createBook();
+        Book deletedWithVersion = createBook();
+        Cache cache = entityManagerFactory.getCache();
+        bookManageService.readOneBook(cached.getId());
+        bookManageService.readOneBook(deleted.getId());
+        bookManageService.readOneBook(deletedWithVersion.getId());
+        assertTrue(cache.contains(Book.class, cached.getId()));
+
+        bookManageService.deleteBook(deleted.getId());
+        bookManageService.deleteBook(deletedWithVersion.getId(), deletedWithVersion.getVersion());
+
+        // 削除していない書籍は2次キャッシュに残り、削除した書籍は2次キャッシュから返却されない
+        assertTrue(cache.contains(Book.class, cached.getId()));
+        assertThrows(BookNotFoundException.class, () -> bookManageService.readOneBook(deleted.getId()));
+        assertThrows(BookNotFoundException.class,
+                () -> bookManageService.readOneBook(deletedWithVersion.getId()));
+    }
+
+    /**
+     * テストデータの書籍を登録する(モックを使用しない)。
+     *
+     * @return 登録した書籍
+     */
+    private Book createBook() {
+        return bookManageService.createBook(BookManageForm.builder()
+                .title(TEST_TITLE)
+                .author(TEST_AUTHOR)
+                .newBook(true)
+                .build());
     }
 
 }
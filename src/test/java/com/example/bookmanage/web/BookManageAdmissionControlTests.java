@@ -0,0 +1,199 @@
+package com.example.bookmanage.web;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.bookmanage.exception.BookManageOverloadedException;
+import com.example.bookmanage.form.BookListCondition;
+import com.example.bookmanage.repository.BookRepository;
+import com.example.bookmanage.form.BookListPage;
+import com.example.bookmanage.service.BookCatalogVersion;
+import com.example.bookmanage.service.BookListCache;
+import com.example.bookmanage.service.CachedBookList;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * BookManageAdmissionControlのテストプログラム
+ */
+class BookManageAdmissionControlTests {
+
+    /**
+     * 接続を使用する時間(ミリ秒)
+     */
+    private static final long USAGE_MILLIS = 50;
+
+    /**
+     * メトリクスの登録先
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * 最大接続数1のDataSource
+     */
+    private HikariDataSource dataSource;
+
+    /**
+     * サービスのJoinPoint
+     */
+    private ProceedingJoinPoint pjp;
+
+    @BeforeEach
+    void setup() throws Throwable {
+        meterRegistry = new SimpleMeterRegistry();
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:admission");
+        config.setPoolName("admission");
+        config.setMaximumPoolSize(1);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        dataSource = new HikariDataSource(config);
+        pjp = mock(ProceedingJoinPoint.class);
+        when(pjp.proceed()).thenReturn("proceeded");
+
+        // 接続の平均使用時間を記録する
+        holdingConnection(() -> Thread.sleep(USAGE_MILLIS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void expectedWaitMillis_接続待ちのスレッド数と最大接続数から見込みの待ち時間が求められることの確認() {
+        assertEquals(2.0, BookManageAdmissionControl.expectedWaitMillis(0, 10, 20.0));
+        assertEquals(40.0, BookManageAdmissionControl.expectedWaitMillis(19, 10, 20.0));
+    }
+
+    @Test
+    void admit_接続に空きがある場合_サービスが実行されることの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ZERO);
+
+        assertEquals("proceeded", control.admit(pjp));
+    }
+
+    @Test
+    void admit_見込みの待ち時間が上限を超える場合_サービスを実行せずに例外が発生することの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ofMillis(USAGE_MILLIS / 5));
+
+        holdingConnection(() -> {
+            BookManageOverloadedException e = assertThrows(BookManageOverloadedException.class,
+                    () -> control.admit(pjp));
+            assertEquals(1, e.getRetryAfterSeconds());
+        });
+        verify(pjp, never()).proceed();
+        assertEquals(1.0, meterRegistry.get(BookManageAdmissionControl.REJECTED_METER).counter().count());
+    }
+
+    @Test
+    void admit_見込みの待ち時間が上限以下の場合_サービスが実行されることの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ofSeconds(1));
+
+        holdingConnection(() -> assertEquals("proceeded", control.admit(pjp)));
+    }
+
+    @Test
+    void admit_上限が負の値の場合_制御しないことの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ofMillis(-1));
+
+        holdingConnection(() -> assertEquals("proceeded", control.admit(pjp)));
+    }
+
+    @Test
+    void admit_見込みの待ち時間が上限を超える場合_詳細のETagのためにDBを検索しないことの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ofMillis(USAGE_MILLIS / 5));
+        BookRepository repository = mock(BookRepository.class);
+        AspectJProxyFactory factory = new AspectJProxyFactory(new BookETags(new BookCatalogVersion(), repository));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(control);
+        BookETags etags = factory.getProxy();
+
+        holdingConnection(() -> assertThrows(BookManageOverloadedException.class,
+                () -> etags.forBook(1L, new BookListCondition(), null, null)));
+        verify(repository, never()).findVersionById(anyLong());
+    }
+
+    @Test
+    void admitOnCacheMiss_接続に空きがない場合もキャッシュにある一覧は返却されることの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ofMillis(USAGE_MILLIS / 5));
+        AspectJProxyFactory factory = new AspectJProxyFactory(
+                new BookListCache(new BookCatalogVersion(), meterRegistry, 10));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(control);
+        BookListCache listCache = factory.getProxy();
+        AtomicInteger loads = new AtomicInteger();
+        CachedBookList list = new CachedBookList(Collections.emptyList(), new BookListPage());
+        BookListCondition cached = new BookListCondition();
+        BookListCondition notCached = BookListCondition.builder().after(100L).build();
+        assertSame(list, listCache.get(cached, () -> {
+            loads.incrementAndGet();
+            return list;
+        }));
+
+        holdingConnection(() -> {
+            // キャッシュにある一覧は判定せずに返却し、キャッシュにない一覧は取得前に例外が発生する
+            assertSame(list, listCache.get(cached, () -> {
+                loads.incrementAndGet();
+                return list;
+            }));
+            assertThrows(BookManageOverloadedException.class, () -> listCache.get(notCached, () -> {
+                loads.incrementAndGet();
+                return list;
+            }));
+        });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void admit_同じリクエストで判定を通過した後は判定しないことの確認() throws Throwable {
+        BookManageAdmissionControl control = new BookManageAdmissionControl(dataSource, meterRegistry,
+                Duration.ofMillis(USAGE_MILLIS / 5));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            assertEquals("proceeded", control.admit(pjp));
+            holdingConnection(() -> assertEquals("proceeded", control.admit(pjp)));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    /**
+     * 唯一の接続を使用した状態で処理を実行する。
+     *
+     * @param action 処理
+     * @throws Throwable 処理で発生した例外
+     */
+    private void holdingConnection(Executable action) throws Throwable {
+        Connection connection = dataSource.getConnection();
+        try {
+            action.execute();
+        } finally {
+            connection.close();
+        }
+    }
+
+}
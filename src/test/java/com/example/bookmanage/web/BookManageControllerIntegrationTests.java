@@ -1,23 +1,39 @@
 package com.example.bookmanage.web;
 
+import static com.example.bookmanage.metrics.QueryBudgets.withinQueryBudget;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
+import java.nio.charset.StandardCharsets;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.web.servlet.MockMvc;
@@ -28,7 +44,10 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.context.WebApplicationContext;
 
 import com.example.bookmanage.BookmanageApplication;
+import com.example.bookmanage.domain.Book;
 import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.metrics.RequestTimingFilter;
+import com.example.bookmanage.repository.BookRepository;
 
 @SpringBootTest(classes = BookmanageApplication.class)
 class BookManageControllerIntegrationTests {
@@ -39,6 +58,9 @@ class BookManageControllerIntegrationTests {
     @Autowired
     private WebApplicationContext context;
 
+    @Autowired
+    private BookRepository repository;
+
     /**
      * Httpリクエスト・レスポンスを扱うためのMockオブジェクト
      */
@@ -46,8 +68,12 @@ class BookManageControllerIntegrationTests {
 
     @BeforeEach
     void setUp() throws Exception {
-        // MVCモックを生成
+        // MVCモックを生成(実行時間の内訳とSQLの実行回数を確認するため、RequestTimingFilterを設定する)
+        @SuppressWarnings("unchecked")
+        FilterRegistrationBean<RequestTimingFilter> requestTimingFilter = context.getBean("requestTimingFilter",
+                FilterRegistrationBean.class);
         mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(requestTimingFilter.getFilter())
                 .apply(springSecurity())
                 .alwaysDo(log())
                 .build();
@@ -116,6 +142,95 @@ class BookManageControllerIntegrationTests {
                 .andExpect(redirectedUrl("/books")); // /booksにリダイレクトするか否か
     }
 
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 一覧を表示した後に登録した書籍が一覧に表示されることの確認() throws Exception {
+        // 一覧を表示する(一覧がキャッシュされる)
+        mockMvc.perform(get("/books").param("sort", "TITLE"))
+                .andExpect(status().isOk());
+
+        // 先頭に表示されるタイトルで書籍を登録する
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("title", "0000キャッシュの確認用タイトル");
+        params.add("author", TEST_AUTHOR);
+        params.add("newBook", "true");
+        params.add("version", "0");
+        mockMvc.perform(post("/books").with(csrf()).params(params))
+                .andExpect(status().is3xxRedirection());
+
+        // 再度一覧を表示し、登録した書籍が表示されることを確認する
+        MvcResult result = mockMvc.perform(get("/books").param("sort", "TITLE"))
+                .andExpect(status().isOk())
+                .andReturn();
+        BookManageForm form = (BookManageForm) result.getModelAndView().getModel().get("bookManageForm");
+        assertEquals("0000キャッシュの確認用タイトル", form.getBooks().get(0).getTitle());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 一覧のETagが一致する場合に304が返却され登録後は200が返却されることの確認() throws Exception {
+        // CSRFトークンがETagに含まれるため、同じセッションでアクセスする
+        MockHttpSession session = new MockHttpSession();
+        String etag = mockMvc.perform(get("/books").session(session))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "private, no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        // 変更がなければ304が返却される
+        mockMvc.perform(get("/books").session(session).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // 書籍を登録する
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("title", "ETagの確認用タイトル");
+        params.add("author", TEST_AUTHOR);
+        params.add("newBook", "true");
+        params.add("version", "0");
+        mockMvc.perform(post("/books").session(session).with(csrf().asHeader()).params(params))
+                .andExpect(status().is3xxRedirection());
+
+        // 登録後は200が返却され、ETagが変わる
+        MvcResult result = mockMvc.perform(get("/books").session(session).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(etag, result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 存在しない書籍の詳細にはETagが設定されないことの確認() throws Exception {
+        MvcResult result = mockMvc.perform(get("/books/{id}", Long.MAX_VALUE))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNull(result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 登録した書籍がキーワードで検索できることの確認() throws Exception {
+        // 書籍を登録する
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("title", "全文検索の確認用タイトル");
+        params.add("author", TEST_AUTHOR);
+        params.add("newBook", "true");
+        params.add("version", "0");
+        mockMvc.perform(post("/books").with(csrf()).params(params))
+                .andExpect(status().is3xxRedirection());
+
+        // キーワードで検索する
+        MvcResult result = this.mockMvc.perform(get("/books").param("q", "全文検索 確認"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(view().name("books"))
+                .andReturn();
+
+        // 登録した書籍が検索結果に含まれることを確認する
+        BookManageForm form = (BookManageForm) result.getModelAndView().getModel().get("bookManageForm");
+        assertEquals(1, form.getBooks().size());
+        assertEquals("全文検索の確認用タイトル", form.getBooks().get(0).getTitle());
+    }
+
     @Test
     void 認証なしでbooksにアクセスしようとした場合の確認() throws Exception {
         // getリクエストでbooksにアクセス
@@ -155,6 +270,222 @@ class BookManageControllerIntegrationTests {
                 .andExpect(status().isForbidden()); // クライアントエラー(403)
     }
 
+    @Test
+    @WithMockUser(username = "admin", password="admin", authorities = "ROLE_ADMIN")
+    void 管理者権限があるユーザでCSVを一括登録した場合の確認() throws Exception {
+        // ヘッダ行と、囲み文字・空行を含むCSV
+        String csv = "id,title,author\r\n"
+                + ",\"" + TEST_TITLE + ",上巻\"," + TEST_AUTHOR + "\r\n"
+                + "\r\n"
+                + ",\"\"," + TEST_AUTHOR + "\r\n";
+
+        // postリクエストでbooks/importを指定する
+        mockMvc.perform(post("/books/import").with(csrf())
+                        .contentType("text/csv;charset=UTF-8")
+                        .content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importedCount").value(1))
+                .andExpect(jsonPath("$.rejectedCount").value(1));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", password="admin", authorities = "ROLE_ADMIN")
+    void 管理者権限があるユーザで一括削除した場合の確認() throws Exception {
+        // postリクエストでbooks/batch/deleteを指定する
+        mockMvc.perform(post("/books/batch/delete").with(csrf())
+                .contentType("application/json")
+                .content("[" + Long.MAX_VALUE + "]"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(Long.MAX_VALUE))
+                .andExpect(jsonPath("$[0].status").value("NOT_FOUND"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", password="admin", authorities = "ROLE_ADMIN")
+    void 管理者権限があるユーザで著者を一括変更した場合の確認() throws Exception {
+        // postリクエストでadmin/rename-authorを指定する
+        mockMvc.perform(post("/admin/rename-author").with(csrf())
+                .param("author", "存在しない著者")
+                .param("newAuthor", TEST_AUTHOR))
+                .andDo(print())
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/admin"))
+                .andExpect(flash().attribute("infoMessage", "0件の書籍の著者を変更しました。"))
+                .andExpect(withinQueryBudget());
+
+        // 変更後の著者が未入力の場合はエラーメッセージが設定される
+        mockMvc.perform(post("/admin/rename-author").with(csrf())
+                .param("author", "存在しない著者"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(flash().attributeExists("errorMessage"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 管理者権限がないユーザで一括更新しようとした場合の確認() throws Exception {
+        // postリクエストでbooks/batch/updateを指定する
+        mockMvc.perform(post("/books/batch/update").with(csrf())
+                .contentType("application/json")
+                .content("[]"))
+                .andDo(print())
+                .andExpect(status().isForbidden()); // クライアントエラー(403)
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 管理者権限がないユーザでCSVを一括登録しようとした場合の確認() throws Exception {
+        // postリクエストでbooks/importを指定する
+        mockMvc.perform(post("/books/import").with(csrf())
+                        .contentType("text/csv")
+                        .content("title,author\r\n"))
+                .andDo(print())
+                .andExpect(status().isForbidden()); // クライアントエラー(403)
+    }
+
+    @Test
+    @WithMockUser(username = "admin", password="admin", authorities = "ROLE_ADMIN")
+    void CSVで一括出力した内容を一括登録できることの確認() throws Exception {
+        // 書籍を登録しておく
+        mockMvc.perform(post("/books/import").with(csrf())
+                        .contentType("text/csv;charset=UTF-8")
+                        .content(("title,author\r\n\"" + TEST_TITLE + ",\"\"下巻\"\"\"," + TEST_AUTHOR + "\r\n")
+                                .getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk());
+
+        // getリクエストでbooks/exportを指定する(非同期で出力される)
+        MvcResult async = mockMvc.perform(get("/books/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(async))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"books.csv\""))
+                .andReturn();
+        byte[] csv = result.getResponse().getContentAsByteArray();
+        assertTrue(new String(csv, StandardCharsets.UTF_8).contains("\"" + TEST_TITLE + ",\"\"下巻\"\"\""));
+
+        // 出力したCSVをそのまま一括登録する
+        mockMvc.perform(post("/books/import").with(csrf())
+                        .contentType("text/csv;charset=UTF-8")
+                        .content(csv))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejectedCount").value(0));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", password="admin", authorities = "ROLE_ADMIN")
+    void JSONで一括出力した場合の確認() throws Exception {
+        // getリクエストでbooks/exportを指定する(非同期で出力される)
+        MvcResult async = mockMvc.perform(get("/books/export").param("format", "json"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(async))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$[0].createdDateTime").value(matchesPattern("\\d{4}-\\d{2}-\\d{2}T.+")))
+                .andExpect(jsonPath("$[0].updatedDateTime").value(matchesPattern("\\d{4}-\\d{2}-\\d{2}T.+")));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 管理者権限がないユーザで一括出力しようとした場合の確認() throws Exception {
+        // getリクエストでbooks/exportを指定する
+        mockMvc.perform(get("/books/export").param("format", "csv"))
+                .andDo(print())
+                .andExpect(status().isForbidden()); // クライアントエラー(403)
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 登録した書籍のタイトルが入力補完の候補に含まれることの確認() throws Exception {
+        // 書籍を登録する
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("title", "入力補完の確認用タイトル");
+        params.add("author", TEST_AUTHOR);
+        params.add("newBook", "true");
+        params.add("version", "0");
+        mockMvc.perform(post("/books").with(csrf()).params(params))
+                .andExpect(status().is3xxRedirection());
+
+        // getリクエストでbooks/suggestを指定する
+        mockMvc.perform(get("/books/suggest").param("q", "入力補完"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titles[0]").value("入力補完の確認用タイトル"))
+                .andExpect(jsonPath("$.authors").isEmpty());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", password="admin", authorities = "ROLE_ADMIN")
+    void メソッドごとの実行時間がactuatorで参照できることの確認() throws Exception {
+        // 一覧を表示して、コントローラとサービスの実行時間を記録する
+        mockMvc.perform(get("/books"))
+                .andExpect(status().isOk());
+
+        // getリクエストでactuator/methodtimingsを指定する
+        mockMvc.perform(get("/actuator/methodtimings"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.type == 'BookManageController' && @.method == 'readBooks(Principal,BookListCondition,ServletWebRequest)')].layer").value("web"))
+                .andExpect(jsonPath("$[?(@.type == 'BookManageService' && @.method == 'initForm(BookListCondition)')].count").isNotEmpty())
+                .andExpect(jsonPath("$[0].percentiles.p99").isNumber());
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", roles = "USER")
+    void 一覧表示でServerTimingヘッダが返却されることの確認() throws Exception {
+        // getリクエストでbooksを指定する
+        mockMvc.perform(get("/books"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", matchesPattern(
+                        "db;dur=[0-9.]+;desc=\"[0-9]+ queries\", service;dur=[0-9.]+, render;dur=[0-9.]+, total;dur=[0-9.]+")));
+    }
+
+    @Test
+    @WithMockUser(username = "user", password="user", authorities = "ROLE_USER")
+    void 書籍の一覧と登録と詳細と更新と削除のSQLの実行回数が予算内であることの確認() throws Exception {
+        // 一覧を表示する(キャッシュされていない表示条件を指定する)
+        mockMvc.perform(get("/books").param("sort", "AUTHOR"))
+                .andExpect(status().isOk())
+                .andExpect(withinQueryBudget());
+
+        // 書籍を登録する
+        mockMvc.perform(post("/books").with(csrf())
+                .param("title", "クエリ予算の確認用タイトル")
+                .param("author", TEST_AUTHOR)
+                .param("newBook", "true")
+                .param("version", "0"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(withinQueryBudget());
+        Book book = repository.findAll().stream()
+                .filter(b -> b.getTitle().equals("クエリ予算の確認用タイトル"))
+                .findFirst().get();
+
+        // 詳細を表示する
+        mockMvc.perform(get("/books/{id}", book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(withinQueryBudget());
+
+        // 更新する
+        mockMvc.perform(put("/books/{id}", book.getId()).with(csrf())
+                .param("title", "クエリ予算の確認用タイトル(更新)")
+                .param("author", TEST_AUTHOR)
+                .param("newBook", "false")
+                .param("version", String.valueOf(book.getVersion())))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(withinQueryBudget());
+
+        // 削除する
+        mockMvc.perform(delete("/books/{id}", book.getId()).with(csrf()))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(withinQueryBudget());
+    }
+
     @Test
     void ログアウトした場合の確認() throws Exception {
         // getリクエストでlogoutにアクセス
@@ -28,8 +28,13 @@ import org.springframework.web.servlet.view.InternalResourceViewResolver;
 
 import com.example.bookmanage.BookmanageApplication;
 import com.example.bookmanage.domain.Book;
+import com.example.bookmanage.domain.BookSummary;
+import com.example.bookmanage.exception.BookManageOverloadedException;
 import com.example.bookmanage.exception.BookNotFoundException;
+import com.example.bookmanage.form.BookListCondition;
 import com.example.bookmanage.form.BookManageForm;
+import com.example.bookmanage.form.BookSortKey;
+import com.example.bookmanage.metrics.SlowQueryLog;
 import com.example.bookmanage.service.BookManageService;
 
 /**
@@ -83,6 +88,11 @@ public class BookManageControllerUnitTests {
      */
     private Book testBook;
 
+    /**
+     * テストデータの書籍(一覧表示用)
+     */
+    private BookSummary testSummary;
+
     /**
      * 書籍管理システムのController
      */
@@ -95,12 +105,24 @@ public class BookManageControllerUnitTests {
     @Mock
     private BookManageService service;
 
+    /**
+     * 書籍管理画面のETagのモック
+     */
+    @Mock
+    private BookETags etags;
+
     /**
      * メッセージソースのモック
      */
     @Mock
     private MessageSource mockMessageSource;
 
+    /**
+     * 実行時間がしきい値を超えたSQLの記録のモック
+     */
+    @Mock
+    private SlowQueryLog slowQueryLog;
+
     /**
      * メッセージソースのコードを確認するためのCaptor
      */
@@ -121,6 +143,10 @@ public class BookManageControllerUnitTests {
                 .author(TEST_AUTHOR)
                 .build();
         testBook.setVersion(TEST_VERSION);
+        testSummary = new BookSummary(TEST_ID, TEST_TITLE, TEST_AUTHOR, TEST_VERSION);
+
+        // If-Matchは指定しない
+        when(etags.versionOf(anyLong(), any())).thenReturn(null);
 
         // [Circular view path]の例外が発生するため、ViewResolverを設定する
         String prefix = "/WEB-INF/pages/";
@@ -147,7 +173,7 @@ public class BookManageControllerUnitTests {
                 .newBook(true)
                 .books(Arrays.asList())
                 .build();
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         // 認証情報のモック
         Authentication mockPrincipal = mock(Authentication.class);
         when(mockPrincipal.getName()).thenReturn("user");
@@ -182,9 +208,9 @@ public class BookManageControllerUnitTests {
         // モックを登録
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         // 認証情報のモック
         Authentication mockPrincipal = mock(Authentication.class);
         when(mockPrincipal.getName()).thenReturn("user");
@@ -208,6 +234,67 @@ public class BookManageControllerUnitTests {
         assertEquals(form.getBooks().size(), 1);
     }
 
+    /**
+     * getリクエストでbooksにページのカーソルを指定し、
+     * 表示条件としてサービスに渡されることを確認する
+     * 
+     * @throws Exception MockMvcのメソッド呼び出し時に発生する
+     */
+    @Test
+    public void readBooks_カーソルを指定した時に表示条件がサービスに渡されることの確認() throws Exception {
+        // モックを登録
+        BookManageForm initForm = BookManageForm.builder()
+                .newBook(true)
+                .books(Arrays.asList(testSummary))
+                .build();
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
+        // 認証情報のモック
+        Authentication mockPrincipal = mock(Authentication.class);
+        when(mockPrincipal.getName()).thenReturn("user");
+
+        // getリクエストでbooksを指定する
+        this.mockMvc.perform(get("/books").principal(mockPrincipal)
+                        .param("sort", "TITLE")
+                        .param("after", String.valueOf(TEST_ID))
+                        .param("key", TEST_TITLE))
+                .andDo(print())
+                .andExpect(status().isOk()) // HTTPステータスが200か否か
+                .andExpect(view().name("books")); // ビュー名が"books"か否か
+
+        // サービスに渡された表示条件を評価する
+        ArgumentCaptor<BookListCondition> condition = ArgumentCaptor.forClass(BookListCondition.class);
+        verify(service).initForm(condition.capture());
+        assertEquals(condition.getValue().getSort(), BookSortKey.TITLE);
+        assertEquals(condition.getValue().getAfter(), TEST_ID);
+        assertNull(condition.getValue().getBefore());
+        assertEquals(condition.getValue().getKey(), TEST_TITLE);
+    }
+
+    /**
+     * getリクエストでbooksにETagと一致するIf-None-Matchを指定し、
+     * サービスが呼び出されないことを確認する
+     * 
+     * @throws Exception MockMvcのメソッド呼び出し時に発生する
+     */
+    @Test
+    public void readBooks_ETagが一致する時にサービスが呼び出されないことの確認() throws Exception {
+        // モックを登録
+        when(etags.forList(any(BookListCondition.class), any(), any())).thenReturn("etag");
+        when(etags.checkNotModified(eq("etag"), any())).thenReturn(true);
+        // 認証情報のモック
+        Authentication mockPrincipal = mock(Authentication.class);
+        when(mockPrincipal.getName()).thenReturn("user");
+
+        // getリクエストでbooksを指定する
+        MvcResult result = this.mockMvc.perform(get("/books").principal(mockPrincipal))
+                .andDo(print())
+                .andReturn();
+
+        // ビューが描画されず、サービスが呼び出されないことを評価する
+        assertNull(result.getModelAndView());
+        verifyNoInteractions(service);
+    }
+
     /**
      * getリクエストでbooks/{id}を指定し、存在しないidを指定した時のhttpステータスとビュー名とモデルに設定されている変数で成否を判定
      * 
@@ -221,9 +308,9 @@ public class BookManageControllerUnitTests {
                 .author(TEST_AUTHOR)
                 .newBook(false)
                 .version(TEST_VERSION)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
-        when(service.readOneBook(TEST_ID)).thenReturn(readOneForm);
+        when(service.readOneBook(eq(TEST_ID), any(BookListCondition.class))).thenReturn(readOneForm);
 
         // getリクエストでbooks/{id}を指定する
         MvcResult result = mockMvc.perform(get("/books/1")).andDo(print())
@@ -255,12 +342,12 @@ public class BookManageControllerUnitTests {
     @Test
     public void readOneBook_データが存在しないidを指定した時のステータスとビューとモデルの確認() throws Exception {
         // モックを登録
-        when(service.readOneBook(INVALID_TEST_ID)).thenThrow(new BookNotFoundException(INVALID_TEST_ID));
+        when(service.readOneBook(eq(INVALID_TEST_ID), any(BookListCondition.class))).thenThrow(new BookNotFoundException(INVALID_TEST_ID));
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         when(mockMessageSource.getMessage(any(), any(), any())).thenReturn(TEST_MESSAGE);
 
         // getリクエストでbooks/{id}を指定する
@@ -327,7 +414,7 @@ public class BookManageControllerUnitTests {
                 .build();
 
         // モックを登録
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         when(mockMessageSource.getMessage("error.validation", null, null)).thenReturn(TEST_MESSAGE);
 
         // postリクエストでbooksを指定する
@@ -401,12 +488,12 @@ public class BookManageControllerUnitTests {
                 .build();
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
 
         // モックを登録
         when(service.updateBook(INVALID_TEST_ID, inputForm)).thenThrow(new BookNotFoundException(INVALID_TEST_ID));
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         when(mockMessageSource.getMessage("error.booknotfound", null, null)).thenReturn(TEST_MESSAGE);
 
         // putリクエストでbooks/{id}を指定する
@@ -451,12 +538,12 @@ public class BookManageControllerUnitTests {
                 .build();
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
 
         // モックを登録
         when(service.updateBook(INVALID_TEST_ID, inputForm)).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, INVALID_TEST_ID));
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         when(mockMessageSource.getMessage(any(), any(), any())).thenReturn(TEST_MESSAGE);
 
         // putリクエストでbooks/{id}を指定する
@@ -490,6 +577,39 @@ public class BookManageControllerUnitTests {
         assertEquals(messageCode.getValue(), "error.optlockfailure");
     }
 
+    @Test
+    public void updateOneBook_IfMatchのバージョンが更新されている場合に412が返却されることの確認() throws Exception {
+        // テストデータ作成
+        BookManageForm initForm = BookManageForm.builder()
+                .newBook(true)
+                .books(Arrays.asList(testSummary))
+                .build();
+
+        // モックを登録(If-Matchのバージョンで楽観排他のエラーが発生する)
+        String ifMatch = "\"b" + TEST_ID + "v" + (TEST_VERSION - 1) + "-etag\"";
+        when(etags.versionOf(TEST_ID, ifMatch)).thenReturn(TEST_VERSION - 1);
+        when(service.updateBook(eq(TEST_ID), any(BookManageForm.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Book.class, TEST_ID));
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
+        when(mockMessageSource.getMessage(any(), any(), any())).thenReturn(TEST_MESSAGE);
+
+        // putリクエストでbooks/{id}を指定する
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("title", TEST_TITLE);
+        params.add("author", TEST_AUTHOR);
+        params.add("newBook", "false");
+        params.add("version", String.valueOf(TEST_VERSION));
+        mockMvc.perform(put("/books/1").params(params).header("If-Match", ifMatch))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed()) // HTTPステータスが412か否か
+                .andExpect(view().name("books")); // ビュー名が"books"か否か
+
+        // フォームのバージョンの代わりにIf-Matchのバージョンがサービスに渡されることを評価する
+        ArgumentCaptor<BookManageForm> form = ArgumentCaptor.forClass(BookManageForm.class);
+        verify(service).updateBook(eq(TEST_ID), form.capture());
+        assertEquals(TEST_VERSION - 1, form.getValue().getVersion());
+    }
+
     @Test
     public void updateOneBook_入力エラーが発生する場合のステータスとビューとモデルの確認() throws Exception {
         // テストデータ作成
@@ -501,11 +621,11 @@ public class BookManageControllerUnitTests {
                 .build();
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
 
         // モックを登録
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         when(mockMessageSource.getMessage(any(), any(), any())).thenReturn(TEST_MESSAGE);
 
         // putリクエストでbooks/{id}を指定する
@@ -561,9 +681,9 @@ public class BookManageControllerUnitTests {
         doThrow(new BookNotFoundException(INVALID_TEST_ID)).when(service).deleteBook(INVALID_TEST_ID);
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         when(mockMessageSource.getMessage("error.booknotfound", null, null)).thenReturn(TEST_MESSAGE);
 
         // deleteリクエストでbooks/{id}を指定する
@@ -614,6 +734,19 @@ public class BookManageControllerUnitTests {
                 .andExpect(view().name("error")); // ビュー名がerrorか否か
     }
 
+    @Test
+    void readOneBook_DB接続の待ち時間が上限を超える見込みの場合のステータスとヘッダとビュー名の確認() throws Exception {
+        when(service.readOneBook(eq(TEST_ID), any(BookListCondition.class)))
+                .thenThrow(new BookManageOverloadedException(1500, 500));
+
+        mockMvc.perform(get("/books/" + TEST_ID))
+                .andDo(print())
+                .andExpect(status().isServiceUnavailable()) // HTTPステータスが503か否か
+                .andExpect(header().string("Retry-After", "2")) // 見込みの待ち時間を切り上げた秒数か否か
+                .andExpect(view().name("error")) // ビュー名がerrorか否か
+                .andExpect(model().attribute("overloaded", true));
+    }
+
     @Test
     void login_ログイン画面にアクセスした場合のステータスとビュー名とモデルの確認() throws Exception {
         mockMvc.perform(get("/login"))
@@ -658,9 +791,9 @@ public class BookManageControllerUnitTests {
         // モックを登録
         BookManageForm initForm = BookManageForm.builder()
                 .newBook(true)
-                .books(Arrays.asList(testBook))
+                .books(Arrays.asList(testSummary))
                 .build();
-        when(service.initForm()).thenReturn(initForm);
+        when(service.initForm(any(BookListCondition.class))).thenReturn(initForm);
         // 認証情報のモック
         Authentication mockPrincipal = mock(Authentication.class);
         when(mockPrincipal.getName()).thenReturn("user");
@@ -670,6 +803,7 @@ public class BookManageControllerUnitTests {
                 .andDo(print())
                 .andExpect(status().isOk()) // HTTPステータスが200か否か
                 .andExpect(view().name("admin")) // ビュー名が"books"か否か
+                .andExpect(model().attributeExists("slowQueries")) // 実行時間の長いSQLが設定されているか否か
                 .andReturn();
 
         // モデルからformを取得する